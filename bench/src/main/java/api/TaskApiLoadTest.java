@@ -0,0 +1,243 @@
+package api;
+
+import bench.TaskGenerator;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import metrics.LatencyHistogram;
+import metrics.Metrics;
+import model.Task;
+import model.TaskList;
+import model.TaskRepository;
+import util.DataManager;
+
+/**
+ * Puts load on the task API over loopback and prints requests per second and
+ * latencies per kind of request. A single thread stands in for the JavaFX
+ * thread (the list and the repository live there, as in the app), so no window
+ * is needed.
+ *
+ * Usage: {@code java -cp bench/target/benchmarks.jar api.TaskApiLoadTest
+ * [tasks] [clients] [seconds] [write %]} (defaults 10000 tasks, 64 clients, 10 seconds, 10% writes), after a few
+ * seconds of warm-up that aren't counted. Each client is a
+ * virtual thread sending one request after another over its own keep-alive
+ * connection; reads are a filtered list, a task by id and the stats, writes are
+ * mostly edits with some adds and deletes.
+ *
+ * The clients speak just enough HTTP/1.1 by hand: with java.net.http.HttpClient
+ * on the same core the client's own overhead, not the server, was what got measured.
+ */
+public class TaskApiLoadTest {
+
+    private static final String[] KINDS = {"list", "get", "stats", "patch", "post", "delete"};
+    private static final int WARM_UP_SECONDS = 5; // On one core the JIT is busy for about that long
+
+    public static void main(String[] args) throws Exception {
+        int taskCount = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int writePercent = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+        // 1. The list and the repository on the stand-in JavaFX thread
+        ExecutorService uiThread = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "ui-stand-in"));
+        TaskList tasks = DataManager.createTaskList();
+        List<Task> generated = TaskGenerator.generate(taskCount, TaskGenerator.DEFAULT_SEED);
+        long[] ids = generated.stream().mapToLong(Task::getId).toArray();
+        TaskRepository repository = uiThread.submit(() -> {
+            tasks.addAll(generated);
+            return new TaskRepository(tasks, uiThread);
+        }).get();
+        TaskApiServer server = new TaskApiServer(repository, 0);
+        server.setWritable(true);
+        String base = "http://127.0.0.1:" + server.getPort();
+        System.out.println(taskCount + " tasks, " + clients + " clients, " + seconds + " s, "
+                + writePercent + "% writes against " + base);
+
+        // 2. The clients
+        LatencyHistogram[] latency = new LatencyHistogram[KINDS.length];
+        for (int i = 0; i < latency.length; i++) {
+            latency[i] = new LatencyHistogram();
+        }
+        AtomicLong failures = new AtomicLong();
+        long start = System.nanoTime() + WARM_UP_SECONDS * 1_000_000_000L;
+        long end = start + seconds * 1_000_000_000L;
+
+        try (ExecutorService clientThreads = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                clientThreads.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    Connection connection = null;
+                    while (System.nanoTime() < end) {
+                        int kind = pickKind(random, writePercent);
+                        long sent = System.nanoTime();
+                        try {
+                            if (connection == null) {
+                                connection = new Connection(server.getPort());
+                            }
+                            int status = send(connection, KINDS[kind], ids[random.nextInt(ids.length)], random);
+                            if (sent >= start) {
+                                latency[kind].recordSince(sent);
+                            }
+                            // A task deleted for good by another client is a fair 404
+                            if (status >= 400 && status != 404) {
+                                if (failures.incrementAndGet() <= 5) {
+                                    System.err.println(KINDS[kind] + " " + status + " " + connection.body);
+                                }
+                            }
+                        } catch (IOException e) {
+                            if (failures.incrementAndGet() <= 5) {
+                                System.err.println(KINDS[kind] + " failed: " + e);
+                            }
+                            if (connection != null) {
+                                connection.close();
+                                connection = null;
+                            }
+                        }
+                    }
+                    if (connection != null) {
+                        connection.close();
+                    }
+                    return null;
+                });
+            }
+        } // Waits for every client
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        // 3. Results
+        long total = 0;
+        System.out.printf("%-8s %10s %10s %10s %10s %10s%n", "request", "count", "p50 ms", "p90 ms", "p99 ms", "max ms");
+        for (int i = 0; i < KINDS.length; i++) {
+            LatencyHistogram h = latency[i];
+            total += h.getCount();
+            System.out.printf(Locale.ROOT, "%-8s %10d %10.2f %10.2f %10.2f %10.2f%n", KINDS[i], h.getCount(),
+                    h.getPercentileMillis(50), h.getPercentileMillis(90), h.getPercentileMillis(99), h.getMaxMillis());
+        }
+        Object batches = Metrics.values().get("repository.write.batches");
+        Object applied = Metrics.values().get("repository.write.applied");
+        System.out.printf(Locale.ROOT, "%d requests in %.1f s = %.0f requests/s, %d failed%n",
+                total, elapsed, total / elapsed, failures.get());
+        System.out.println("writes applied " + applied + " in " + batches + " batches on the UI thread");
+
+        // 4. The snapshot should now agree with the live list exactly
+        int liveSize = uiThread.submit(tasks::size).get();
+        int snapshotSize = uiThread.submit(() -> repository.snapshot().getTasks().size()).get();
+        System.out.println("live list " + liveSize + " tasks, latest snapshot " + snapshotSize
+                + (liveSize == snapshotSize ? " (consistent)" : " (MISMATCH)"));
+
+        server.stop();
+        uiThread.shutdown();
+        System.exit(failures.get() == 0 && liveSize == snapshotSize ? 0 : 1);
+    }
+
+    private static int pickKind(ThreadLocalRandom random, int writePercent) {
+        if (random.nextInt(100) < writePercent) {
+            int write = random.nextInt(10);
+            return write < 8 ? 3 : write < 9 ? 4 : 5; // Mostly edits
+        }
+        int read = random.nextInt(10);
+        return read < 4 ? 0 : read < 9 ? 1 : 2;
+    }
+
+    private static int send(Connection connection, String kind, long id, ThreadLocalRandom random)
+            throws IOException {
+        switch (kind) {
+            case "list":
+                String[] categories = {"Work", "Personal", "School", "Home", "Other"};
+                return connection.exchange("GET", "/tasks?status=pending&limit=20&category="
+                        + categories[random.nextInt(categories.length)], null);
+            case "get":
+                return connection.exchange("GET", "/tasks/" + id, null);
+            case "stats":
+                return connection.exchange("GET", "/stats", null);
+            case "patch":
+                return connection.exchange("PATCH", "/tasks/" + id,
+                        "{\"completed\": " + random.nextBoolean() + ", \"priority\": \"High\"}");
+            case "post":
+                return connection.exchange("POST", "/tasks",
+                        "{\"title\": \"Load test task\", \"category\": \"Work\", \"dueDate\": \"2030-01-01\"}");
+            default:
+                return connection.exchange("DELETE", "/tasks/" + id, null);
+        }
+    }
+
+    /**
+     * One keep-alive HTTP/1.1 connection to the server. The server always sends a
+     * Content-Length, so that is all the response parsing needed.
+     */
+    private static class Connection {
+        private final Socket socket;
+        private final OutputStream out;
+        private final InputStream in;
+        private final StringBuilder line = new StringBuilder();
+        String body; // Of the last response
+
+        Connection(int port) throws IOException {
+            socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            socket.setTcpNoDelay(true);
+            out = socket.getOutputStream();
+            in = new BufferedInputStream(socket.getInputStream());
+        }
+
+        int exchange(String method, String path, String json) throws IOException {
+            // 1. Request
+            byte[] content = json == null ? new byte[0] : json.getBytes(StandardCharsets.UTF_8);
+            String head = method + " " + path + " HTTP/1.1\r\nHost: 127.0.0.1\r\n"
+                    + (json == null ? "" : "Content-Type: application/json\r\n")
+                    + "Content-Length: " + content.length + "\r\n\r\n";
+            out.write(head.getBytes(StandardCharsets.US_ASCII));
+            out.write(content);
+            out.flush();
+
+            // 2. Status line and headers
+            String statusLine = readLine();
+            int status = Integer.parseInt(statusLine.substring(9, 12));
+            int length = 0;
+            String header;
+            while (!(header = readLine()).isEmpty()) {
+                if (header.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+                    length = Integer.parseInt(header.substring(15).trim());
+                }
+            }
+
+            // 3. Body
+            byte[] bytes = in.readNBytes(length);
+            if (bytes.length < length) {
+                throw new IOException("Connection closed mid-response");
+            }
+            body = new String(bytes, StandardCharsets.UTF_8);
+            return status;
+        }
+
+        private String readLine() throws IOException {
+            line.setLength(0);
+            int c;
+            while ((c = in.read()) != '\n') {
+                if (c < 0) {
+                    throw new IOException("Connection closed");
+                }
+                if (c != '\r') {
+                    line.append((char) c);
+                }
+            }
+            return line.toString();
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Done with it either way
+            }
+        }
+    }
+}
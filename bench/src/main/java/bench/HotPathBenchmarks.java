@@ -0,0 +1,195 @@
+package bench;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import index.QueryPlan;
+import index.TaskIndex;
+import index.TaskQuery;
+import index.TaskSummary;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import model.Task;
+import model.TaskList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import util.DataManager;
+import util.LocalDateAdapter;
+
+/**
+ * Benchmarks for the paths that get slow with many tasks: loading and saving
+ * the save file, the filter bar (through the index the way applyFilters runs
+ * it, and as a plain predicate over every task), recounting the summary labels,
+ * and reading and writing dates with LocalDateAdapter. Every benchmark runs at
+ * each size on tasks from {@link TaskGenerator} with its default seed.
+ *
+ * Each benchmark only sets up the state it uses, so a fork holds one list at a
+ * time. load and save use tasks.json in the working directory; run-benchmarks.sh
+ * starts JMH in an empty one.
+ *
+ * Run with {@code ./run-benchmarks.sh} (or {@code java -jar bench/target/benchmarks.jar [JMH options]}).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"}) // A fixed heap so every fork starts alike (1M tasks need a few GB)
+public class HotPathBenchmarks {
+
+    // What a user typically types into the filter bar: some text, one category, pending only
+    private static final TaskQuery FILTER = new TaskQuery("report", "Work", false, null, null);
+
+    /**
+     * The number of tasks, shared by every state below.
+     */
+    @State(Scope.Benchmark)
+    public abstract static class Sized {
+        @Param({"1000", "100000", "1000000"})
+        public int tasks;
+    }
+
+    @State(Scope.Benchmark)
+    public static class SaveFile extends Sized {
+        @Setup
+        public void setUp() throws IOException {
+            // This becomes the save file loadTasks reads
+            TaskGenerator.write(Path.of("tasks.json"), tasks, TaskGenerator.DEFAULT_SEED);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class GeneratedList extends Sized {
+        TaskList list;
+
+        @Setup
+        public void setUp() {
+            list = DataManager.createTaskList();
+            list.addAll(TaskGenerator.generate(tasks, TaskGenerator.DEFAULT_SEED));
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class IndexedList extends GeneratedList {
+        TaskIndex index;
+        ObservableList<Task> displayed;
+
+        @Setup
+        public void attach() {
+            index = new TaskIndex();
+            index.attach(list);
+            displayed = FXCollections.observableArrayList();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Summary extends GeneratedList {
+        TaskSummary summary;
+
+        @Setup
+        public void attach() {
+            summary = new TaskSummary();
+            summary.attach(list);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Dates extends Sized {
+        final LocalDateAdapter adapter = new LocalDateAdapter();
+        LocalDate[] dates;
+        String json;
+
+        @Setup
+        public void setUp() throws IOException {
+            // The due dates of a generated list, nulls included (as they are in a save file)
+            dates = TaskGenerator.generate(tasks, TaskGenerator.DEFAULT_SEED).stream()
+                    .map(Task::getDueDate).toArray(LocalDate[]::new);
+            json = writeDates(dates);
+        }
+    }
+
+    @Benchmark
+    public List<Task> load(SaveFile file) {
+        // Loaded rows go to the default task store and stay there; the fork's heap is sized for that
+        return DataManager.loadTasks();
+    }
+
+    @Benchmark
+    public TaskList save(GeneratedList state) {
+        DataManager.saveTasks(state.list);
+        DataManager.flushSaves(); // Time the whole write, not just handing it over
+        return state.list;
+    }
+
+    @Benchmark
+    public ObservableList<Task> filterIndex(IndexedList state) {
+        QueryPlan plan = state.index.prepare(FILTER);
+        BitSet matches = plan.evaluate(() -> false);
+        state.index.publish(matches, state.displayed);
+        return state.displayed;
+    }
+
+    @Benchmark
+    public int filterScan(GeneratedList state) {
+        int matches = 0;
+        for (Task task : state.list) {
+            if (FILTER.matches(task)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public int summaryRecount(Summary state) {
+        state.summary.recount();
+        return state.summary.totalProperty().get();
+    }
+
+    @Benchmark
+    public String dateWrite(Dates state) throws IOException {
+        return writeDates(state.dates);
+    }
+
+    @Benchmark
+    public int dateRead(Dates state) throws IOException {
+        int count = 0;
+        JsonReader reader = new JsonReader(new StringReader(state.json));
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (state.adapter.read(reader) != null) {
+                count++;
+            }
+        }
+        reader.endArray();
+        return count;
+    }
+
+    private static String writeDates(LocalDate[] dates) throws IOException {
+        LocalDateAdapter adapter = new LocalDateAdapter();
+        StringWriter text = new StringWriter(dates.length * 14);
+        JsonWriter writer = new JsonWriter(text);
+        writer.beginArray();
+        for (LocalDate date : dates) {
+            adapter.write(writer, date);
+        }
+        writer.endArray();
+        writer.flush();
+        return text.toString();
+    }
+}
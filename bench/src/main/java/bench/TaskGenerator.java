@@ -0,0 +1,121 @@
+package bench;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import model.Task;
+import model.TaskStore;
+import util.DataManager;
+
+/**
+ * Makes up a task list that looks like a real one, the same list for the same
+ * seed: mostly work and personal tasks, mostly medium priority, due dates
+ * bunched around today with a long tail, overdue tasks more often done than
+ * future ones, and a few percent in the trash.
+ *
+ * Run with {@code java -cp bench/target/benchmarks.jar bench.TaskGenerator <count> [seed] [file]}
+ * to write a save file (tasks.json by default) the app can open.
+ */
+public class TaskGenerator {
+
+    public static final long DEFAULT_SEED = 20240601L;
+
+    private static final String[] CATEGORIES = {"Work", "Personal", "School", "Home", "Other"};
+    private static final double[] CATEGORY_WEIGHTS = {0.40, 0.25, 0.18, 0.12, 0.05};
+    private static final String[] PRIORITIES = {"Low", "Medium", "High"};
+    private static final double[] PRIORITY_WEIGHTS = {0.30, 0.50, 0.20};
+
+    private static final String[] VERBS = {"Write", "Review", "Call", "Buy", "Fix", "Plan", "Send",
+            "Prepare", "Finish", "Book", "Clean", "Update", "Read", "Pay", "Submit"};
+    private static final String[] OBJECTS = {"report", "slides", "groceries", "dentist", "budget",
+            "assignment", "email to team", "car service", "tickets", "meeting notes", "invoice",
+            "kitchen", "lab write-up", "birthday gift", "project plan", "rent", "library books"};
+    private static final String[] WORDS = {"before", "the", "deadline", "check", "with", "notes",
+            "from", "last", "week", "and", "remember", "to", "ask", "about", "details", "chapter",
+            "draft", "final", "version", "print", "copies", "for", "group", "discussion"};
+
+    private static final double NO_DUE_DATE = 0.15;
+    private static final double WITH_DESCRIPTION = 0.60;
+    private static final double IN_TRASH = 0.03;
+
+    /**
+     * Creates {@code count} tasks in a store of their own.
+     */
+    public static List<Task> generate(int count, long seed) {
+        Random random = new Random(seed);
+        LocalDate today = LocalDate.now();
+        TaskStore store = new TaskStore(count);
+        List<Task> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // 1. Text: a short title, and a sentence or two of description on most tasks
+            String title = VERBS[random.nextInt(VERBS.length)] + " " + OBJECTS[random.nextInt(OBJECTS.length)];
+            if (random.nextInt(4) == 0) {
+                title += " #" + (1 + random.nextInt(50)); // Recurring chores get a number
+            }
+            String description = random.nextDouble() < WITH_DESCRIPTION ? sentence(random) : null;
+
+            // 2. Due date: around a week from now, a few weeks either way, sometimes months off
+            LocalDate dueDate = null;
+            if (random.nextDouble() >= NO_DUE_DATE) {
+                double days = random.nextGaussian() * 20 + 5;
+                if (random.nextInt(10) == 0) {
+                    days *= 6; // The long tail: far future plans and long forgotten tasks
+                }
+                dueDate = today.plusDays(Math.max(-365, Math.min(365, Math.round(days))));
+            }
+
+            // 3. Done: most overdue tasks, few future ones
+            double doneChance = dueDate == null ? 0.30 : dueDate.isBefore(today) ? 0.70 : 0.15;
+            boolean completed = random.nextDouble() < doneChance;
+            boolean deleted = random.nextDouble() < IN_TRASH;
+
+            int row = store.addRow(title, description, dueDate,
+                    pick(random, CATEGORIES, CATEGORY_WEIGHTS), pick(random, PRIORITIES, PRIORITY_WEIGHTS),
+                    completed, deleted);
+            if (deleted) {
+                store.setDeletedOn(row, today.minusDays(random.nextInt(60)));
+            }
+            tasks.add(new Task(store, row));
+        }
+        return tasks;
+    }
+
+    /**
+     * Writes a generated list as a JSON save file.
+     */
+    public static void write(Path file, int count, long seed) throws IOException {
+        DataManager.writeSnapshotFile(file, generate(count, seed), 0, false);
+    }
+
+    private static String pick(Random random, String[] values, double[] weights) {
+        double r = random.nextDouble();
+        for (int i = 0; i < values.length - 1; i++) {
+            r -= weights[i];
+            if (r < 0) {
+                return values[i];
+            }
+        }
+        return values[values.length - 1];
+    }
+
+    private static String sentence(Random random) {
+        StringBuilder text = new StringBuilder();
+        int words = 5 + random.nextInt(20);
+        for (int i = 0; i < words; i++) {
+            text.append(i == 0 ? "" : " ").append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        text.setCharAt(0, Character.toUpperCase(text.charAt(0)));
+        return text.append('.').toString();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : DEFAULT_SEED;
+        Path file = Path.of(args.length > 2 ? args[2] : "tasks.json");
+        write(file, count, seed);
+        System.out.println("Wrote " + count + " tasks (seed " + seed + ") to " + file);
+    }
+}
@@ -0,0 +1,296 @@
+package model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import metrics.Metrics;
+
+/**
+ * Hammers a {@link TaskRepository} from many threads and checks what must hold
+ * however the threads interleave. Exits with status 1 if anything broke.
+ *
+ * <ul>
+ *   <li>Accounts: writers move amounts between two tasks in one write, and the
+ *       window (a single thread stands in for the JavaFX thread) does the same
+ *       directly on the list. Every snapshot a reader sees must add up to the
+ *       starting total: no write is ever half visible.</li>
+ *   <li>Counters: writers increment them read-modify-write, with
+ *       {@link TaskRepository#submitIfUnchanged} and a retry on conflict, while
+ *       the window increments them directly too. At the end every counter must
+ *       hold exactly the increments that succeeded: no update is lost.</li>
+ *   <li>A writer reads its own write in the snapshot right after it; the
+ *       versions and counters a reader sees never go back.</li>
+ *   <li>Once quiet, the last snapshot is the live list.</li>
+ * </ul>
+ *
+ * Run with {@code java -cp bench/target/benchmarks.jar model.TaskRepositoryStressCheck
+ * [seconds] [writers] [readers]} (defaults 10, 8, 4).
+ */
+public class TaskRepositoryStressCheck {
+
+    private static final int ACCOUNTS = 16;
+    private static final int COUNTERS = 4; // Few, so writers collide on them a lot
+    private static final int OTHER_TASKS = 5_000;
+    private static final int START_BALANCE = 1_000;
+
+    private final ExecutorService uiThread = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "ui-stand-in"));
+    private TaskList tasks;
+    private TaskRepository repository;
+    private final long[] accountIds = new long[ACCOUNTS];
+    private final long[] counterIds = new long[COUNTERS];
+
+    private final ConcurrentLinkedQueue<String> failures = new ConcurrentLinkedQueue<>();
+    private final AtomicLong transfers = new AtomicLong();
+    private final AtomicLong increments = new AtomicLong(); // Committed through submitIfUnchanged
+    private final AtomicLong conflicts = new AtomicLong();
+    private final AtomicLong snapshotsRead = new AtomicLong();
+    private long windowIncrements; // ui-stand-in only
+    private long windowEdits;      // ui-stand-in only
+    private volatile boolean stopping;
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int writers = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int readers = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        boolean ok = new TaskRepositoryStressCheck().run(seconds, writers, readers);
+        System.exit(ok ? 0 : 1);
+    }
+
+    private boolean run(int seconds, int writers, int readers) throws Exception {
+        // 1. The list and the repository, on the stand-in JavaFX thread
+        uiThread.submit(this::setUp).get();
+
+        // 2. Writers (half transfer, half increment), readers, and the window's own edits every millisecond
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < writers; i++) {
+            threads.add(new Thread(i % 2 == 0 ? this::transferLoop : this::incrementLoop, "writer-" + i));
+        }
+        for (int i = 0; i < readers; i++) {
+            threads.add(new Thread(this::readLoop, "reader-" + i));
+        }
+        ScheduledExecutorService window = Executors.newSingleThreadScheduledExecutor();
+        window.scheduleAtFixedRate(() -> uiThread.execute(this::windowEdit), 1, 1, TimeUnit.MILLISECONDS);
+        long start = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        Thread.sleep(seconds * 1000L);
+        stopping = true;
+        window.shutdown();
+        window.awaitTermination(5, TimeUnit.SECONDS);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        // 3. Quiet now: one more write makes sure everything queued is applied and published
+        repository.submit(list -> null).get();
+        uiThread.submit(this::checkFinalState).get();
+        uiThread.shutdown();
+
+        System.out.printf("%.1f s, %d writers, %d readers: %d transfers, %d increments (%d conflicts retried),"
+                        + " %d window edits, %d snapshots checked%n",
+                elapsed, writers, readers, transfers.get(), increments.get(), conflicts.get(),
+                windowEdits, snapshotsRead.get());
+        System.out.println("batches: " + Metrics.values().get("repository.write.batches")
+                + " for " + Metrics.values().get("repository.write.applied") + " writes");
+        if (failures.isEmpty()) {
+            System.out.println("ok");
+            return true;
+        }
+        System.out.println(failures.size() + " failures, the first ones:");
+        failures.stream().limit(10).forEach(failure -> System.out.println("  " + failure));
+        return false;
+    }
+
+    private void setUp() {
+        tasks = new TaskList(EnumSet.of(TaskField.COMPLETED, TaskField.DUE_DATE, TaskField.DELETED));
+        List<Task> all = new ArrayList<>();
+        for (int i = 0; i < OTHER_TASKS; i++) {
+            all.add(new Task("Task " + i, "Filler", LocalDate.now().plusDays(i % 30), "Work", "Low"));
+        }
+        for (int i = 0; i < ACCOUNTS; i++) {
+            Task account = new Task("Account " + i, String.valueOf(START_BALANCE), null, "Home", "Medium");
+            accountIds[i] = account.getId();
+            all.add(i * 300, account); // Spread over the list
+        }
+        for (int i = 0; i < COUNTERS; i++) {
+            Task counter = new Task("Counter " + i, "0", null, "Other", "High");
+            counterIds[i] = counter.getId();
+            all.add(counter);
+        }
+        tasks.addAll(all);
+        repository = new TaskRepository(tasks, uiThread);
+    }
+
+    // --- Writers ---
+
+    private void transferLoop() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (!stopping) {
+            long from = accountIds[random.nextInt(ACCOUNTS)];
+            long to = accountIds[random.nextInt(ACCOUNTS)];
+            int amount = 1 + random.nextInt(10);
+            try {
+                repository.submit(list -> {
+                    move(list, from, to, amount);
+                    return null;
+                }).get();
+                transfers.incrementAndGet();
+            } catch (Exception e) {
+                fail("transfer failed: " + e);
+            }
+        }
+    }
+
+    private void incrementLoop() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (!stopping) {
+            long id = counterIds[random.nextInt(COUNTERS)];
+            // Read, decide, write back if nobody got there first; else read again
+            while (true) {
+                TaskRepository.Snapshot seen = repository.snapshot();
+                int value = valueOf(seen.getById(id));
+                try {
+                    repository.submitIfUnchanged(id, seen.getVersion(), list -> {
+                        list.getById(id).setDescription(String.valueOf(value + 1));
+                        return null;
+                    }).get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof ConcurrentModificationException) {
+                        conflicts.incrementAndGet();
+                        continue;
+                    }
+                    fail("increment failed: " + e.getCause());
+                    break;
+                } catch (InterruptedException e) {
+                    return;
+                }
+                increments.incrementAndGet();
+                int after = valueOf(repository.snapshot().getById(id));
+                if (after < value + 1) {
+                    fail("wrote " + (value + 1) + " to counter " + id + " but the next snapshot has " + after);
+                }
+                break;
+            }
+        }
+    }
+
+    /**
+     * What the window does: edits straight on the list, the way its handlers do.
+     */
+    private void windowEdit() {
+        if (stopping) {
+            return;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        // 1. A bulk edit moving an amount between two accounts
+        tasks.batch(() -> move(tasks, accountIds[random.nextInt(ACCOUNTS)],
+                accountIds[random.nextInt(ACCOUNTS)], 1 + random.nextInt(10)));
+        // 2. The edit dialog saving a counter: change the task, then set() it back
+        long id = counterIds[random.nextInt(COUNTERS)];
+        int index = tasks.indexOfId(id);
+        Task counter = tasks.get(index);
+        counter.setDescription(String.valueOf(valueOf(counter) + 1));
+        tasks.set(index, counter);
+        windowIncrements++;
+        // 3. A checkbox ticked in the table (a watched field)
+        Task other = tasks.get(random.nextInt(tasks.size()));
+        other.setCompleted(!other.isCompleted());
+        windowEdits += 3;
+    }
+
+    private static void move(TaskList list, long fromId, long toId, int amount) {
+        Task from = list.getById(fromId);
+        Task to = list.getById(toId);
+        from.setDescription(String.valueOf(valueOf(from) - amount));
+        to.setDescription(String.valueOf(valueOf(to) + amount));
+    }
+
+    // --- Readers ---
+
+    private void readLoop() {
+        long lastVersion = 0;
+        int[] lastCounters = new int[COUNTERS];
+        while (!stopping) {
+            TaskRepository.Snapshot snapshot = repository.snapshot();
+            if (snapshot.getVersion() < lastVersion) {
+                fail("version went back from " + lastVersion + " to " + snapshot.getVersion());
+            }
+            lastVersion = snapshot.getVersion();
+
+            long total = 0;
+            for (long id : accountIds) {
+                total += valueOf(snapshot.getById(id));
+            }
+            if (total != (long) ACCOUNTS * START_BALANCE) {
+                fail("snapshot " + snapshot.getVersion() + " holds " + total + " in the accounts");
+            }
+            for (int i = 0; i < COUNTERS; i++) {
+                int value = valueOf(snapshot.getById(counterIds[i]));
+                if (value < lastCounters[i]) {
+                    fail("counter " + i + " went back from " + lastCounters[i] + " to " + value);
+                }
+                lastCounters[i] = value;
+            }
+            snapshotsRead.incrementAndGet();
+        }
+    }
+
+    // --- The end ---
+
+    private void checkFinalState() {
+        // 1. Nothing lost: the counters hold every increment, from both sides
+        long counted = 0;
+        for (long id : counterIds) {
+            counted += valueOf(tasks.getById(id));
+        }
+        long expected = increments.get() + windowIncrements;
+        if (counted != expected) {
+            fail("counters hold " + counted + " but " + expected + " increments succeeded");
+        }
+
+        // 2. Nothing made up: the accounts still add up
+        long total = 0;
+        for (long id : accountIds) {
+            total += valueOf(tasks.getById(id));
+        }
+        if (total != (long) ACCOUNTS * START_BALANCE) {
+            fail("the live list holds " + total + " in the accounts");
+        }
+
+        // 3. The last snapshot is the live list
+        List<Task> snapshot = repository.snapshot().getTasks();
+        if (snapshot.size() != tasks.size()) {
+            fail("snapshot has " + snapshot.size() + " tasks, the list " + tasks.size());
+            return;
+        }
+        for (int i = 0; i < tasks.size(); i++) {
+            Task live = tasks.get(i);
+            Task copy = snapshot.get(i);
+            if (live.getId() != copy.getId() || !live.getDescription().equals(copy.getDescription())
+                    || live.isCompleted() != copy.isCompleted()) {
+                fail("snapshot differs from the list at " + i);
+                return;
+            }
+        }
+    }
+
+    private static int valueOf(Task task) {
+        return Integer.parseInt(task.getDescription());
+    }
+
+    private void fail(String failure) {
+        failures.add(Thread.currentThread().getName() + ": " + failure);
+    }
+}
@@ -0,0 +1,102 @@
+package util;
+
+import index.TaskIndex;
+import index.TaskSummary;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import javafx.collections.ObservableList;
+import model.Task;
+import model.TaskStore;
+
+/**
+ * Checks that loading tasks creates no JavaFX properties: loads 100k tasks into
+ * the same list, index and summary the main window uses, edits a few of them,
+ * and counts the tasks that made their properties along the way (looking at
+ * Task's private properties field, so Task keeps no counter for this). Exits
+ * with status 1 if any did.
+ *
+ * Run with {@code java -cp bench/target/benchmarks.jar util.PropertyCountCheck [taskCount]}.
+ */
+public class PropertyCountCheck {
+
+    public static void main(String[] args) throws IOException, ReflectiveOperationException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+
+        // 1. Write a save file to load
+        List<Task> source = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            source.add(new Task("Task number " + i, "Some description " + i,
+                    LocalDate.now().plusDays(i % 60 - 30), i % 2 == 0 ? "Work" : "Home", "Medium"));
+        }
+        Path file = Files.createTempFile("tasks-properties", ".json");
+        DataManager.writeSnapshotFile(file, source, 0, false);
+        source.clear();
+
+        // 2. Load it the way the main window does
+        long heapBefore = usedHeapAfterGc();
+        ObservableList<Task> tasks = DataManager.createTaskList();
+        TaskIndex index = new TaskIndex();
+        TaskSummary summary = new TaskSummary();
+        index.attach(tasks);
+        summary.attach(tasks);
+        List<Task> loaded = new ArrayList<>(count);
+        try (TaskReader reader = DataManager.openSnapshotFile(file)) {
+            Task task;
+            while ((task = reader.next(TaskStore.getDefault())) != null) {
+                loaded.add(task);
+            }
+        }
+        tasks.addAll(loaded);
+        loaded.clear();
+
+        // 3. Edits must still reach the list and the counters
+        int[] updates = {0};
+        tasks.addListener((javafx.collections.ListChangeListener.Change<? extends Task> c) -> {
+            while (c.next()) {
+                if (c.wasUpdated()) {
+                    updates[0] += c.getTo() - c.getFrom();
+                }
+            }
+        });
+        for (int i = 0; i < 10; i++) {
+            tasks.get(i * 1000).setCompleted(true);
+        }
+        long heapAfter = usedHeapAfterGc();
+        long created = tasksWithProperties(tasks);
+
+        System.out.println(tasks.size() + " tasks loaded");
+        System.out.println("tasks with JavaFX properties: " + created);
+        System.out.println("update events: " + updates[0] + ", completed count: " + summary.completedProperty().get());
+        System.out.printf("retained heap after load: %.1f MB%n", (heapAfter - heapBefore) / (1024.0 * 1024.0));
+        Files.delete(file);
+
+        boolean ok = created == 0 && updates[0] == 10 && summary.completedProperty().get() == 10;
+        System.out.println(ok ? "OK" : "FAILED");
+        System.exit(ok ? 0 : 1);
+    }
+
+    private static long tasksWithProperties(List<Task> tasks) throws ReflectiveOperationException {
+        Field properties = Task.class.getDeclaredField("properties");
+        properties.setAccessible(true);
+        long count = 0;
+        for (Task task : tasks) {
+            if (properties.get(task) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
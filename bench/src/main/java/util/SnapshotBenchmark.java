@@ -0,0 +1,131 @@
+package util;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+import model.Task;
+import model.TaskField;
+import model.TaskList;
+import model.TaskStore;
+import model.TaskVector;
+
+/**
+ * Compares taking a snapshot of the task list for a background save the old way
+ * (copying every task, {@link TaskStore#snapshot}) against {@link TaskList#snapshot}
+ * (sharing the persistent vector and freezing the store), and what the sharing
+ * costs afterwards: the first edits after a snapshot copy a page of the store,
+ * and every list change on a {@link TaskVector} copies a path instead of
+ * shifting an array.
+ *
+ * Run with e.g. {@code java -Xmx4g -cp bench/target/benchmarks.jar util.SnapshotBenchmark
+ * 10000 100000 1000000}.
+ * Times are the median of {@link #RUNS} runs.
+ */
+public class SnapshotBenchmark {
+
+    private static final int RUNS = 7;
+    private static final int EDITS = 10_000;
+
+    public static void main(String[] args) {
+        int[] sizes = args.length > 0
+                ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : new int[] {10_000, 100_000, 1_000_000};
+        System.out.printf("%-9s %12s %12s %14s %14s %14s%n", "tasks", "copy ms", "snapshot ms",
+                "edit after us", "list ops ms", "vector ops ms");
+        for (int count : sizes) {
+            run(count);
+        }
+    }
+
+    private static void run(int count) {
+        TaskList list = createList(count);
+
+        // 1. Old: copy the whole list, column by column
+        double copyMs = median(() -> TaskStore.snapshot(list));
+
+        // 2. New: share the vector, freeze the store
+        double snapshotMs = median(list::snapshot);
+
+        // 3. What a snapshot costs the next edits: one page copy per page touched
+        Random random = new Random(7);
+        long[] editNanos = new long[RUNS];
+        for (int run = 0; run < RUNS; run++) {
+            list.snapshot();
+            long start = System.nanoTime();
+            for (int i = 0; i < 100; i++) {
+                list.get(random.nextInt(count)).setTitle("Edited " + i);
+            }
+            editNanos[run] = (System.nanoTime() - start) / 100;
+        }
+        Arrays.sort(editNanos);
+
+        // 4. Set/insert/remove in the middle: array list against vector
+        List<Task> tasks = new ArrayList<>(list);
+        TaskVector vector = TaskVector.of(tasks);
+        double arrayMs = median(() -> editArrayList(tasks)); // As many adds as removes: the size stays put
+        double vectorMs = median(() -> editVector(vector));
+
+        System.out.printf("%-9d %12.3f %12.3f %14.1f %14.2f %14.2f%n", count, copyMs, snapshotMs,
+                editNanos[RUNS / 2] / 1_000.0, arrayMs, vectorMs);
+    }
+
+    private static TaskList createList(int count) {
+        Random random = new Random(42);
+        TaskStore store = new TaskStore(count);
+        List<Task> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int row = store.addRow("Task number " + i, "Some description text " + random.nextInt(),
+                    LocalDate.now().plusDays(random.nextInt(365) - 180), "Work", "Medium",
+                    random.nextBoolean(), false);
+            tasks.add(new Task(store, row));
+        }
+        TaskList list = new TaskList(EnumSet.of(TaskField.COMPLETED));
+        list.addAll(tasks);
+        return list;
+    }
+
+    private static Object editArrayList(List<Task> tasks) {
+        Random random = new Random(1);
+        for (int i = 0; i < EDITS; i++) {
+            int index = random.nextInt(tasks.size());
+            switch (i % 3) {
+                case 0 -> tasks.set(index, tasks.get(random.nextInt(tasks.size())));
+                case 1 -> tasks.add(index, tasks.get(index));
+                default -> tasks.remove(index);
+            }
+        }
+        return tasks;
+    }
+
+    private static Object editVector(TaskVector tasks) {
+        Random random = new Random(1);
+        for (int i = 0; i < EDITS; i++) {
+            int index = random.nextInt(tasks.size());
+            switch (i % 3) {
+                case 0 -> tasks = tasks.replace(index, tasks.get(random.nextInt(tasks.size())));
+                case 1 -> tasks = tasks.insert(index, tasks.get(index));
+                default -> tasks = tasks.delete(index);
+            }
+        }
+        return tasks;
+    }
+
+    /**
+     * Median time of the action in milliseconds, after one warm-up run.
+     */
+    private static double median(Supplier<Object> action) {
+        action.get();
+        long[] nanos = new long[RUNS];
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            action.get();
+            nanos[run] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        return nanos[RUNS / 2] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,121 @@
+package util;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import model.Task;
+import model.TaskStore;
+
+/**
+ * Compares heap use and full-GC time of the column store (TaskStore + Task views)
+ * against the old one-object-per-task layout (Strings, LocalDate and flags in
+ * every Task, with category/priority strings that Gson creates anew per task).
+ *
+ * Run with e.g. {@code java -Xmx4g -cp bench/target/benchmarks.jar util.TaskHeapComparison 1000000}.
+ */
+public class TaskHeapComparison {
+
+    private static final String[] CATEGORIES = {"Work", "Personal", "School", "Home", "Other"};
+    private static final String[] PRIORITIES = {"Low", "Medium", "High"};
+
+    /**
+     * The Task layout before TaskStore: every value in a field of its own.
+     */
+    @SuppressWarnings("unused")
+    private static class ObjectTask {
+        String title;
+        String description;
+        LocalDate dueDate;
+        String category;
+        String priority;
+        boolean completed;
+        boolean isDeleted;
+        // The (unset) lazy property references every old Task carried
+        Object titleProperty, descriptionProperty, dueDateProperty, categoryProperty,
+                priorityProperty, completedProperty, deletedProperty;
+    }
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        System.out.printf("%-8s %14s %12s %12s%n", "layout", "heap MB", "bytes/task", "full GC ms");
+
+        // 1. The old layout
+        long before = usedHeapAfterGc();
+        List<ObjectTask> objects = createObjectTasks(count);
+        report("objects", count, usedHeapAfterGc() - before, timeFullGcs());
+        objects.clear();
+
+        // 2. The column store, one view per task (what the task list holds)
+        before = usedHeapAfterGc();
+        List<Task> views = createStoreTasks(count);
+        report("store", count, usedHeapAfterGc() - before, timeFullGcs());
+        System.out.println(views.size() + " tasks, store estimate "
+                + views.get(0).getStore().estimateBytes() / (1024 * 1024) + " MB");
+    }
+
+    private static List<ObjectTask> createObjectTasks(int count) {
+        Random random = new Random(42);
+        List<ObjectTask> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ObjectTask task = new ObjectTask();
+            task.title = "Task number " + i;
+            task.description = "Some description text " + random.nextInt();
+            task.dueDate = LocalDate.now().plusDays(random.nextInt(365) - 180);
+            // new String(...): a JSON parser hands out a fresh copy for every task
+            task.category = new String(CATEGORIES[random.nextInt(CATEGORIES.length)]);
+            task.priority = new String(PRIORITIES[random.nextInt(PRIORITIES.length)]);
+            task.completed = random.nextBoolean();
+            tasks.add(task);
+        }
+        return tasks;
+    }
+
+    private static List<Task> createStoreTasks(int count) {
+        Random random = new Random(42);
+        TaskStore store = new TaskStore(count);
+        List<Task> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int row = store.addRow("Task number " + i, "Some description text " + random.nextInt(),
+                    LocalDate.now().plusDays(random.nextInt(365) - 180),
+                    CATEGORIES[random.nextInt(CATEGORIES.length)], PRIORITIES[random.nextInt(PRIORITIES.length)],
+                    random.nextBoolean(), false);
+            tasks.add(new Task(store, row));
+        }
+        return tasks;
+    }
+
+    private static void report(String layout, int count, long bytes, long gcMillis) {
+        System.out.printf("%-8s %14.1f %12d %12d%n", layout, bytes / (1024.0 * 1024.0), bytes / count, gcMillis);
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Total time of five full collections with the current data alive: the cost
+     * of tracing everything, which is what grows with the number of objects.
+     */
+    private static long timeFullGcs() {
+        long before = totalGcMillis();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return totalGcMillis() - before;
+    }
+
+    private static long totalGcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+}
@@ -0,0 +1,37 @@
+#!/bin/sh
+# Builds the JMH benchmarks (the bench Maven module, which compiles src with them)
+# and runs them. Needs Maven and the project's JDK (25) on the PATH. Every argument
+# is passed on to JMH, e.g.
+#
+#   ./run-benchmarks.sh                                  everything at 1k, 100k and 1M tasks
+#   ./run-benchmarks.sh filter -p tasks=1000,100000      only the filter benchmarks
+#   ./run-benchmarks.sh -wi 1 -i 3 -rff before.json      quicker, into another results file
+#
+# Results are written as JMH JSON (bench-results.json unless -rff says otherwise).
+set -e
+CALLER="$(pwd)"
+HERE="$(cd "$(dirname "$0")" && pwd)"
+
+mvn -B -q -f "$HERE/bench/pom.xml" package
+
+# JMH runs in an empty directory, since load and save use tasks.json in the working
+# directory; a relative -rff still means relative to where this script was started
+RESULTS="$HERE/bench-results.json"
+previous=
+for arg do
+    shift
+    if [ "$previous" = "-rff" ]; then
+        case "$arg" in
+            /*) RESULTS="$arg" ;;
+            *) RESULTS="$CALLER/$arg" ;;
+        esac
+    else
+        [ "$arg" = "-rff" ] || set -- "$@" "$arg"
+    fi
+    previous="$arg"
+done
+
+WORK="$(mktemp -d)"
+trap 'rm -rf "$WORK"' EXIT
+cd "$WORK"
+java -jar "$HERE/bench/target/benchmarks.jar" -rf json -rff "$RESULTS" "$@"
@@ -8,6 +8,10 @@ import javafx.scene.image.Image;
 import javafx.scene.paint.Color;
 import javafx.stage.Stage;
 import javafx.stage.StageStyle;
+import metrics.FlightRecording;
+import metrics.FxStallWatchdog;
+import metrics.Metrics;
+import metrics.UiHandlerEvent;
 
 public class MainApp extends Application {
 
@@ -17,9 +21,11 @@ public class MainApp extends Application {
 
     @Override
     public void start(Stage primaryStage) throws Exception {
+        Metrics.start(); // JMX, and the metrics log if -Dtodo.metrics.logFile is set
 
         FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/MainView.fxml"));
         Parent root = loader.load();
+        UiHandlerEvent.instrument(loader);
         MainController controller = loader.getController();
 
         primaryStage.setTitle("Smart To-Do List");
@@ -62,9 +68,11 @@ public class MainApp extends Application {
         });
 
         primaryStage.show();
+        FxStallWatchdog.startIfEnabled();
     }
 
     public static void main(String[] args) {
+        FlightRecording.startIfRequested(); // Before anything else, so start-up is recorded too
         launch(args);
     }
 }
\ No newline at end of file
@@ -0,0 +1,20 @@
+package api;
+
+/**
+ * A request that can't be served, with the HTTP status to answer it with.
+ */
+public class ApiException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+
+    public ApiException(int status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,586 @@
+package api;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import index.TaskQuery;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import metrics.Counter;
+import metrics.LatencyHistogram;
+import metrics.Metrics;
+import model.Task;
+import model.TaskList;
+import model.TaskRepository;
+import util.TaskTypeAdapter;
+
+/**
+ * An optional HTTP API on the loopback interface, so other tools on this
+ * machine can read and change the tasks while the app is running instead of
+ * racing it on tasks.json. Off unless -Dtodo.http.port is set (0 picks a free
+ * port, printed at start-up).
+ *
+ * <pre>
+ *   GET    /tasks?search=&amp;category=&amp;status=&amp;priority=&amp;due=&amp;range=&amp;trash=&amp;offset=&amp;limit=
+ *   GET    /tasks/{id}
+ *   POST   /tasks        {"title": "...", "description", "dueDate", "category", "priority", "completed"}
+ *   PATCH  /tasks/{id}   just the fields to change (PUT does the same)
+ *   DELETE /tasks/{id}   moves the task to the trash; one already in the trash is deleted for good
+ *   GET    /stats
+ * </pre>
+ *
+ * The filters are the filter bar's (see {@link TaskQuery#fromParameters}). Every
+ * request runs on a virtual thread of its own. Reads are answered from a
+ * snapshot without involving the JavaFX thread; writes reach it in batches,
+ * see {@link TaskRepository}. Responses carry the version of the snapshot they
+ * were read from (the "version" field, or the ETag of a single task); a PATCH,
+ * PUT or DELETE with {@code If-Match: <version>} is refused (412) if the task
+ * changed after that version, instead of overwriting a change the client
+ * missed.
+ *
+ * Only requests addressed to the loopback (a Host header of 127.0.0.1, localhost
+ * or [::1], with or without the port) are answered, so a web page can't reach the
+ * API by pointing its own host name at 127.0.0.1 (DNS rebinding). Request bodies
+ * must be sent as application/json, which a page can't do across origins without
+ * the browser asking first.
+ *
+ * Errors come back as {@code {"error": "..."}}.
+ */
+public class TaskApiServer {
+
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_LIMIT = 10_000;
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    private static final long WRITE_TIMEOUT_SECONDS = Long.getLong("todo.http.writeTimeoutSeconds", 5);
+
+    // The form's choices
+    private static final List<String> CATEGORIES = List.of("Work", "Personal", "School", "Home", "Other");
+    private static final List<String> PRIORITIES = List.of("High", "Medium", "Low");
+
+    private static final Set<String> LOOPBACK_HOSTS = Set.of("127.0.0.1", "localhost", "[::1]");
+
+    private static final LatencyHistogram readTime = Metrics.histogram("api.read");
+    private static final LatencyHistogram writeTime = Metrics.histogram("api.write");
+    private static final Counter errors = Metrics.counter("api.errors");
+
+    static {
+        // Without this the server's small responses wait for the client's delayed ACK
+        // (Nagle's algorithm), about 40 ms per request on loopback. Read once, when the
+        // first HttpServer is made, so it has to be set before that.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final TaskRepository repository;
+    private final HttpServer server;
+    private final ExecutorService requestThreads = Executors.newVirtualThreadPerTaskExecutor();
+    private final TaskTypeAdapter taskAdapter = new TaskTypeAdapter(); // No state, so shared by all requests
+    private volatile boolean writable;
+
+    /**
+     * Starts serving on 127.0.0.1:{@code port} (0 for any free port). Writes
+     * are refused until {@link #setWritable} (the window waits for loading too).
+     */
+    public TaskApiServer(TaskRepository repository, int port) throws IOException {
+        this.repository = repository;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/tasks", this::handleTasks);
+        server.createContext("/stats", this::handleStats);
+        server.setExecutor(requestThreads);
+        server.start();
+    }
+
+    /**
+     * Starts the API over the window's tasks if -Dtodo.http.port is set, else returns null.
+     */
+    public static TaskApiServer startIfEnabled(TaskRepository repository) {
+        Integer port = Integer.getInteger("todo.http.port");
+        if (port == null) {
+            return null;
+        }
+        try {
+            TaskApiServer api = new TaskApiServer(repository, port);
+            System.out.println("Task API listening on http://127.0.0.1:" + api.getPort() + "/tasks");
+            return api;
+        } catch (IOException e) {
+            System.err.println("Could not start the task API on port " + port + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    public void setWritable(boolean writable) {
+        this.writable = writable;
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        server.stop(0);
+        requestThreads.shutdownNow();
+    }
+
+    // --- 1. Routing ---
+
+    private void handleTasks(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        String method = exchange.getRequestMethod();
+        boolean read = method.equals("GET");
+        try {
+            checkHost(exchange);
+            String path = exchange.getRequestURI().getPath();
+            Long id = idOf(path);
+            if (id == null) {
+                switch (method) {
+                    case "GET": listTasks(exchange); break;
+                    case "POST": createTask(exchange); break;
+                    default: throw new ApiException(405, method + " is not allowed on /tasks");
+                }
+            } else {
+                switch (method) {
+                    case "GET": getTask(exchange, id); break;
+                    case "PATCH":
+                    case "PUT":
+                        updateTask(exchange, id);
+                        break;
+                    case "DELETE": deleteTask(exchange, id); break;
+                    default: throw new ApiException(405, method + " is not allowed on " + path);
+                }
+            }
+        } catch (ApiException e) {
+            sendError(exchange, e.getStatus(), e.getMessage());
+        } catch (RuntimeException e) {
+            sendError(exchange, 500, e.toString());
+        } finally {
+            (read ? readTime : writeTime).recordSince(start);
+            exchange.close();
+        }
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        try {
+            checkHost(exchange);
+            if (!exchange.getRequestMethod().equals("GET")) {
+                throw new ApiException(405, exchange.getRequestMethod() + " is not allowed on /stats");
+            }
+            sendStats(exchange);
+        } catch (ApiException e) {
+            sendError(exchange, e.getStatus(), e.getMessage());
+        } catch (RuntimeException e) {
+            sendError(exchange, 500, e.toString());
+        } finally {
+            readTime.recordSince(start);
+            exchange.close();
+        }
+    }
+
+    /**
+     * Refuses requests whose Host header names anything but the loopback.
+     */
+    private static void checkHost(HttpExchange exchange) throws ApiException {
+        String host = exchange.getRequestHeaders().getFirst("Host");
+        if (host == null) {
+            throw new ApiException(400, "The Host header is missing");
+        }
+        String name = host.trim().toLowerCase(Locale.ROOT);
+        int colon = name.lastIndexOf(':');
+        if (colon > name.lastIndexOf(']')) {
+            name = name.substring(0, colon); // Drop the port
+        }
+        if (!LOOPBACK_HOSTS.contains(name)) {
+            throw new ApiException(403, "Only requests to 127.0.0.1 or localhost are answered, not " + host);
+        }
+    }
+
+    /**
+     * The id in /tasks/{id}, or null for /tasks itself.
+     */
+    private static Long idOf(String path) throws ApiException {
+        String rest = path.substring("/tasks".length());
+        if (rest.isEmpty() || rest.equals("/")) {
+            return null;
+        }
+        try {
+            return Long.parseLong(rest.substring(1));
+        } catch (NumberFormatException e) {
+            throw new ApiException(404, "No such resource: " + path);
+        }
+    }
+
+    // --- 2. Reads: from the snapshot, on the request's own thread ---
+
+    private void listTasks(HttpExchange exchange) throws IOException, ApiException {
+        Map<String, String> parameters = queryParameters(exchange);
+        TaskQuery query;
+        try {
+            query = TaskQuery.fromParameters(parameters, LocalDate.now());
+        } catch (IllegalArgumentException e) {
+            throw new ApiException(400, e.getMessage());
+        }
+        int offset = intParameter(parameters, "offset", 0, Integer.MAX_VALUE);
+        int limit = intParameter(parameters, "limit", DEFAULT_LIMIT, MAX_LIMIT);
+
+        TaskRepository.Snapshot snapshot = repository.snapshot();
+        sendJson(exchange, 200, json -> {
+            json.beginObject();
+            json.name("version").value(snapshot.getVersion());
+            json.name("tasks").beginArray();
+            int matches = 0;
+            for (Task task : snapshot.getTasks()) {
+                if (query.matches(task)) {
+                    if (matches >= offset && matches - offset < limit) {
+                        taskAdapter.write(json, task);
+                    }
+                    matches++; // Counted to the end, so clients can page
+                }
+            }
+            json.endArray();
+            json.name("total").value(matches);
+            json.name("offset").value(offset);
+            json.endObject();
+        });
+    }
+
+    private void getTask(HttpExchange exchange, long id) throws IOException, ApiException {
+        sendTask(exchange, 200, repository.snapshot(), id);
+    }
+
+    private void sendStats(HttpExchange exchange) throws IOException {
+        TaskRepository.Snapshot snapshot = repository.snapshot();
+        LocalDate today = LocalDate.now();
+        int total = 0;
+        int completed = 0;
+        int overdue = 0;
+        int dueToday = 0;
+        int trash = 0;
+        for (Task task : snapshot.getTasks()) {
+            if (task.isDeleted()) {
+                trash++;
+                continue;
+            }
+            total++;
+            LocalDate due = task.getDueDate();
+            if (task.isCompleted()) {
+                completed++;
+            } else if (due != null && due.isBefore(today)) {
+                overdue++;
+            } else if (today.equals(due)) {
+                dueToday++;
+            }
+        }
+        int[] counts = {total, completed, total - completed, overdue, dueToday, trash};
+        sendJson(exchange, 200, json -> {
+            json.beginObject();
+            json.name("version").value(snapshot.getVersion());
+            json.name("total").value(counts[0]);
+            json.name("completed").value(counts[1]);
+            json.name("pending").value(counts[2]);
+            json.name("overdue").value(counts[3]);
+            json.name("dueToday").value(counts[4]);
+            json.name("trash").value(counts[5]);
+            json.endObject();
+        });
+    }
+
+    // --- 3. Writes: through the repository, on the JavaFX thread ---
+
+    private void createTask(HttpExchange exchange) throws IOException, ApiException {
+        checkWritable();
+        JsonObject body = readBody(exchange);
+        String title = stringField(body, "title");
+        if (title == null || title.isBlank()) {
+            throw new ApiException(400, "title is required");
+        }
+        // Checked here, so the JavaFX thread only gets changes that will work
+        String description = stringField(body, "description");
+        LocalDate dueDate = dateField(body, "dueDate");
+        String category = choiceField(body, "category", CATEGORIES);
+        String priority = choiceField(body, "priority", PRIORITIES);
+        boolean completed = booleanField(body, "completed", false);
+
+        long id = write(repository.submit(tasks -> {
+            Task task = new Task(title, description, dueDate, category, priority);
+            task.setCompleted(completed);
+            tasks.add(task);
+            return task.getId();
+        }));
+        exchange.getResponseHeaders().set("Location", "/tasks/" + id);
+        sendTask(exchange, 201, repository.snapshot(), id);
+    }
+
+    private void updateTask(HttpExchange exchange, long id) throws IOException, ApiException {
+        checkWritable();
+        JsonObject body = readBody(exchange);
+        // Validate everything first, so a bad field changes nothing
+        String title = stringField(body, "title");
+        if (body.has("title") && (title == null || title.isBlank())) {
+            throw new ApiException(400, "title can't be empty");
+        }
+        String description = stringField(body, "description");
+        LocalDate dueDate = dateField(body, "dueDate");
+        String category = choiceField(body, "category", CATEGORIES);
+        String priority = choiceField(body, "priority", PRIORITIES);
+        Boolean completed = body.has("completed") ? booleanField(body, "completed", false) : null;
+        Boolean deleted = body.has("deleted") ? booleanField(body, "deleted", false) : null;
+
+        writeTask(exchange, id, tasks -> {
+            Task task = liveTask(tasks, id);
+            if (body.has("title")) task.setTitle(title);
+            if (body.has("description")) task.setDescription(description);
+            if (body.has("dueDate")) task.setDueDate(dueDate);
+            if (body.has("category")) task.setCategory(category);
+            if (body.has("priority")) task.setPriority(priority);
+            if (completed != null) task.setCompleted(completed);
+            if (deleted != null) task.setDeleted(deleted); // false restores it from the trash
+            return null;
+        });
+        sendTask(exchange, 200, repository.snapshot(), id);
+    }
+
+    private void deleteTask(HttpExchange exchange, long id) throws IOException, ApiException {
+        checkWritable();
+        boolean forever = writeTask(exchange, id, tasks -> {
+            Task task = liveTask(tasks, id);
+            // As in the window: first to the trash, from there for good
+            if (!task.isDeleted()) {
+                task.setDeleted(true);
+                return false;
+            }
+            tasks.removeById(id);
+            task.getStore().releaseRow(task.getRow()); // Gone for good: the row can be reused
+            return true;
+        });
+        sendJson(exchange, 200, json -> {
+            json.beginObject();
+            json.name("id").value(id);
+            json.name("deleted").value(forever ? "forever" : "trash");
+            json.endObject();
+        });
+    }
+
+    private void checkWritable() throws ApiException {
+        if (!writable) {
+            throw new ApiException(503, "Tasks are still loading, try again shortly");
+        }
+    }
+
+    /**
+     * Changes task {@code id}, honouring the request's If-Match version if there is one.
+     */
+    private <T> T writeTask(HttpExchange exchange, long id, TaskRepository.Change<T> change) throws ApiException {
+        String ifMatch = exchange.getRequestHeaders().getFirst("If-Match");
+        if (ifMatch == null || ifMatch.equals("*")) {
+            return write(repository.submit(change));
+        }
+        long seenVersion;
+        try {
+            seenVersion = Long.parseLong(ifMatch.replace("W/", "").replace("\"", "").trim());
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, "If-Match must be a version from an earlier response, not " + ifMatch);
+        }
+        return write(repository.submitIfUnchanged(id, seenVersion, change));
+    }
+
+    /**
+     * Waits for a submitted change and turns its failure into the right answer.
+     */
+    private <T> T write(Future<T> done) throws ApiException {
+        try {
+            return done.get(WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ApiException) {
+                throw (ApiException) e.getCause();
+            }
+            if (e.getCause() instanceof ConcurrentModificationException) {
+                throw new ApiException(412, e.getCause().getMessage());
+            }
+            throw new ApiException(500, "Change failed: " + e.getCause());
+        } catch (TimeoutException e) {
+            throw new ApiException(503, "The app is busy; the change may still be applied");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApiException(503, "Interrupted");
+        }
+    }
+
+    private static Task liveTask(TaskList tasks, long id) throws ApiException {
+        Task task = tasks.getById(id);
+        if (task == null) {
+            throw new ApiException(404, "No task with id " + id);
+        }
+        return task;
+    }
+
+    // --- 4. Request bodies and parameters ---
+
+    private static JsonObject readBody(HttpExchange exchange) throws IOException, ApiException {
+        String type = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (type == null || !type.split(";")[0].trim().equalsIgnoreCase("application/json")) {
+            throw new ApiException(415, "The body must be sent as application/json");
+        }
+        byte[] bytes;
+        try (InputStream in = exchange.getRequestBody()) {
+            bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+        }
+        if (bytes.length > MAX_BODY_BYTES) {
+            throw new ApiException(413, "Request body is over " + MAX_BODY_BYTES + " bytes");
+        }
+        try {
+            JsonElement body = JsonParser.parseString(new String(bytes, StandardCharsets.UTF_8));
+            if (!body.isJsonObject()) {
+                throw new ApiException(400, "The body must be a JSON object");
+            }
+            return body.getAsJsonObject();
+        } catch (JsonParseException e) {
+            throw new ApiException(400, "Not valid JSON: " + e.getMessage());
+        }
+    }
+
+    private static String stringField(JsonObject body, String name) throws ApiException {
+        JsonElement value = body.get(name);
+        if (value == null || value.isJsonNull()) {
+            return null;
+        }
+        if (!value.isJsonPrimitive() || !value.getAsJsonPrimitive().isString()) {
+            throw new ApiException(400, name + " must be a string");
+        }
+        return value.getAsString();
+    }
+
+    private static LocalDate dateField(JsonObject body, String name) throws ApiException {
+        String text = stringField(body, name);
+        try {
+            return text == null || text.isEmpty() ? null : LocalDate.parse(text);
+        } catch (DateTimeParseException e) {
+            throw new ApiException(400, name + " must be a date (yyyy-mm-dd), not " + text);
+        }
+    }
+
+    private static String choiceField(JsonObject body, String name, List<String> choices) throws ApiException {
+        String value = stringField(body, name);
+        if (value == null) {
+            return null;
+        }
+        for (String choice : choices) {
+            if (choice.equalsIgnoreCase(value)) {
+                return choice;
+            }
+        }
+        throw new ApiException(400, name + " must be one of " + choices + ", not " + value);
+    }
+
+    private static boolean booleanField(JsonObject body, String name, boolean missing) throws ApiException {
+        JsonElement value = body.get(name);
+        if (value == null || value.isJsonNull()) {
+            return missing;
+        }
+        if (!value.isJsonPrimitive() || !value.getAsJsonPrimitive().isBoolean()) {
+            throw new ApiException(400, name + " must be true or false");
+        }
+        return value.getAsBoolean();
+    }
+
+    private static Map<String, String> queryParameters(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return parameters;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    private static int intParameter(Map<String, String> parameters, String name, int missing, int max)
+            throws ApiException {
+        String value = parameters.get(name);
+        if (value == null || value.isEmpty()) {
+            return missing;
+        }
+        try {
+            int number = Integer.parseInt(value);
+            if (number < 0 || number > max) {
+                throw new ApiException(400, name + " must be between 0 and " + max);
+            }
+            return number;
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, name + " must be a number, not " + value);
+        }
+    }
+
+    // --- 5. Responses ---
+
+    /**
+     * Writes the JSON body of a response.
+     */
+    private interface Body {
+        void writeTo(JsonWriter json) throws IOException;
+    }
+
+    private void sendTask(HttpExchange exchange, int status, TaskRepository.Snapshot snapshot, long id)
+            throws IOException, ApiException {
+        Task task = snapshot.getById(id);
+        if (task == null) {
+            throw new ApiException(404, "No task with id " + id);
+        }
+        exchange.getResponseHeaders().set("ETag", "\"" + snapshot.getVersion() + "\"");
+        sendJson(exchange, status, json -> taskAdapter.write(json, task));
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        errors.increment();
+        sendJson(exchange, status, json -> {
+            json.beginObject();
+            json.name("error").value(message);
+            json.endObject();
+        });
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, Body body) throws IOException {
+        // Built in memory first, so the length is known and errors can still change the status
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+        Writer writer = new OutputStreamWriter(bytes, StandardCharsets.UTF_8);
+        JsonWriter json = new JsonWriter(writer);
+        body.writeTo(json);
+        json.flush();
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.size());
+        try (OutputStream out = exchange.getResponseBody()) {
+            bytes.writeTo(out);
+        }
+    }
+}
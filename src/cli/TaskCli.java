@@ -0,0 +1,525 @@
+package cli;
+
+import com.google.gson.stream.JsonWriter;
+import index.TaskQuery;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.UnaryOperator;
+import model.Task;
+import model.TaskStore;
+import util.DataManager;
+import util.SaveFileLock;
+import util.TaskReader;
+import util.TaskTypeAdapter;
+
+/**
+ * Reads and bulk-edits a save file from the command line, without starting
+ * JavaFX: the same Task model, file formats and filters as the app, none of
+ * the window.
+ *
+ * Every command streams through the file once. Tasks are read into small
+ * stores that are dropped as soon as they are full (see {@link TaskStream}),
+ * and edits are written out as they are read, so memory stays the same for a
+ * file of any size. The checksum is not read up front unless --verify is
+ * given, so the first lines come out right away. Files that are changed are
+ * saved as JSON whatever they were before, since the binary format needs the
+ * task count and dictionaries up front; the app reads either.
+ *
+ * Usage: {@code java -cp ... cli.TaskCli <command> [options]}, or todo-cli.sh; see {@link #USAGE}.
+ */
+public class TaskCli {
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: todo-cli <command> [options]",
+            "",
+            "Commands:",
+            "  query                 print the matching tasks (id, status, due, priority, category, title)",
+            "  count                 print how many tasks match",
+            "  stats                 counts of the matching tasks by status, category and priority",
+            "  complete              mark the matching tasks completed and save the file (as JSON)",
+            "  import <file>         add the matching tasks of another save or export file (with new ids)",
+            "                        to the file (saved as JSON)",
+            "  export <file|->       write the matching tasks as plain JSON (- for standard output)",
+            "",
+            "Filters (as in the filter bar; all of them must match):",
+            "  --search <text>       title or description contains the text (any case)",
+            "  --category <name>     Work, Personal, School, Home, Other",
+            "  --status <status>     completed or pending",
+            "  --priority <name>     Low, Medium, High",
+            "  --due <yyyy-mm-dd>    due on that day",
+            "  --range <range>       today, overdue, week (next 7 days) or month (this month)",
+            "  --trash               the tasks in the trash instead of the live ones",
+            "  --all                 complete: required when no filter is given",
+            "",
+            "Options:",
+            "  --file <file>         the save file (default tasks.json)",
+            "  --json                query: one JSON object per line instead of columns",
+            "  --limit <n>           query: stop after n tasks",
+            "  --verify              check the whole file's checksum before reading it");
+
+    // Rows per store: a full store is dropped and a new one started, so memory stays flat
+    private static final int STORE_ROWS = 4096;
+
+    /**
+     * A mistake on the command line: printed with the usage, exit code 2.
+     */
+    private static class UsageException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        UsageException(String message) {
+            super(message);
+        }
+    }
+
+    // --- Parsed command line ---
+    private String command;
+    private String argument; // The import source or export target
+    private Path file = Path.of("tasks.json");
+    private final Map<String, String> filters = new HashMap<>(); // See TaskQuery.fromParameters
+    private boolean all;
+    private boolean json;
+    private long limit = Long.MAX_VALUE;
+    private boolean verify;
+    private TaskQuery query;
+
+    private final PrintWriter out = new PrintWriter(new BufferedWriter(
+            new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16));
+
+    public static void main(String[] args) {
+        TaskCli cli = new TaskCli();
+        int exitCode;
+        try {
+            cli.parse(args);
+            exitCode = cli.run();
+        } catch (UsageException e) {
+            System.err.println(e.getMessage());
+            System.err.println();
+            System.err.println(USAGE);
+            exitCode = 2;
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            exitCode = 1;
+        }
+        cli.out.flush();
+        System.exit(exitCode);
+    }
+
+    private void parse(String[] args) throws UsageException {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--file": file = Path.of(value(args, ++i, arg)); break;
+                case "--search":
+                case "--category":
+                case "--status":
+                case "--priority":
+                case "--due":
+                case "--range":
+                    filters.put(arg.substring(2), value(args, ++i, arg));
+                    break;
+                case "--trash": filters.put("trash", "true"); break;
+                case "--all": all = true; break;
+                case "--json": json = true; break;
+                case "--limit": limit = number(value(args, ++i, arg)); break;
+                case "--verify": verify = true; break;
+                case "-h":
+                case "--help":
+                    throw new UsageException("Query and edit a task file without opening the app.");
+                default:
+                    if (arg.startsWith("--")) {
+                        throw new UsageException("Unknown option: " + arg);
+                    } else if (command == null) {
+                        command = arg;
+                    } else if (argument == null) {
+                        argument = arg;
+                    } else {
+                        throw new UsageException("Unexpected argument: " + arg);
+                    }
+            }
+        }
+        if (command == null) {
+            throw new UsageException("No command given.");
+        }
+        if (!List.of("query", "count", "stats", "complete", "import", "export").contains(command)) {
+            throw new UsageException("Unknown command: " + command);
+        }
+        boolean needsArgument = command.equals("import") || command.equals("export");
+        if (needsArgument && argument == null) {
+            throw new UsageException(command + " needs a file name.");
+        }
+        if (!needsArgument && argument != null) {
+            throw new UsageException("Unexpected argument: " + argument);
+        }
+        try {
+            query = TaskQuery.fromParameters(filters, LocalDate.now());
+        } catch (IllegalArgumentException e) {
+            throw new UsageException(e.getMessage());
+        }
+    }
+
+    private int run() throws IOException, UsageException {
+        if (!Files.exists(file)) {
+            throw new IOException(file + " does not exist");
+        }
+        if (DataManager.hasJournaledEdits(file)) {
+            System.err.println("Note: the app has edits in its journal that are not in " + file
+                    + " yet; they are applied on top the next time the app opens it.");
+        }
+        switch (command) {
+            case "query": return query(query);
+            case "count": return count(query);
+            case "stats": return stats(query);
+            case "complete": return complete(query);
+            case "import": return importTasks(query);
+            case "export": return export(query);
+            default: throw new UsageException("Unknown command: " + command);
+        }
+    }
+
+    // --- Commands ---
+
+    private int query(TaskQuery query) throws IOException {
+        try (TaskStream tasks = new TaskStream(open(file), matching(query))) {
+            long printed = 0;
+            Task task;
+            while (printed < limit && (task = tasks.next()) != null) {
+                if (json) {
+                    out.println(tasks.toJson(task));
+                } else {
+                    printRow(task);
+                }
+                printed++;
+                if (printed == 1 || tasks.startedNewStore()) {
+                    out.flush(); // The first line right away, then about every STORE_ROWS tasks
+                    if (out.checkError()) {
+                        break; // Nobody reading any more, e.g. piped into head
+                    }
+                }
+            }
+        }
+        return 0;
+    }
+
+    private int count(TaskQuery query) throws IOException {
+        long count = 0;
+        try (TaskStream tasks = new TaskStream(open(file), matching(query))) {
+            while (tasks.next() != null) {
+                count++;
+            }
+        }
+        out.println(count);
+        return 0;
+    }
+
+    private int stats(TaskQuery query) throws IOException {
+        LocalDate today = LocalDate.now();
+        long total = 0;
+        long done = 0;
+        long overdue = 0;
+        long noDueDate = 0;
+        Map<String, Long> byCategory = new TreeMap<>();
+        Map<String, Long> byPriority = new TreeMap<>();
+        try (TaskStream tasks = new TaskStream(open(file), matching(query))) {
+            Task task;
+            while ((task = tasks.next()) != null) {
+                // 1. Status, the same way as the summary labels
+                total++;
+                LocalDate due = task.getDueDate();
+                if (task.isCompleted()) {
+                    done++;
+                } else if (due != null && due.isBefore(today)) {
+                    overdue++;
+                }
+                if (due == null) {
+                    noDueDate++;
+                }
+                // 2. Breakdowns (only a handful of distinct values, so the maps stay small)
+                byCategory.merge(orNone(task.getCategory()), 1L, Long::sum);
+                byPriority.merge(orNone(task.getPriority()), 1L, Long::sum);
+            }
+        }
+        out.printf(Locale.ROOT, "%-12s %d%n", "Total", total);
+        out.printf(Locale.ROOT, "%-12s %d%n", "Completed", done);
+        out.printf(Locale.ROOT, "%-12s %d%n", "Pending", total - done);
+        out.printf(Locale.ROOT, "%-12s %d%n", "Overdue", overdue);
+        out.printf(Locale.ROOT, "%-12s %d%n", "No due date", noDueDate);
+        printBreakdown("Category", byCategory, total);
+        printBreakdown("Priority", byPriority, total);
+        return 0;
+    }
+
+    private int complete(TaskQuery query) throws IOException, UsageException {
+        if (query.isEmpty() && !all) {
+            throw new UsageException("complete needs a filter, or --all to complete every task.");
+        }
+        long[] changed = new long[1];
+        // Every task is written back; the matching ones completed on the way through
+        SaveFileLock lock = lockForWriting();
+        try (TaskStream tasks = new TaskStream(open(file), task -> {
+            if (!task.isCompleted() && query.matches(task)) {
+                task.setCompleted(true);
+                changed[0]++;
+            }
+            return task;
+        })) {
+            DataManager.writeSnapshotFile(file, tasks);
+        } finally {
+            lock.close();
+        }
+        out.println("Completed " + changed[0] + " tasks in " + file);
+        return 0;
+    }
+
+    private int importTasks(TaskQuery query) throws IOException {
+        Path source = Path.of(argument);
+        if (!Files.exists(source)) {
+            throw new IOException(source + " does not exist");
+        }
+        long[] added = new long[1];
+        // The file's own tasks as they are, then the source's matching ones with new ids
+        // (its ids may already be taken here); the file's header id is reserved first
+        SaveFileLock lock = lockForWriting();
+        try (TaskStream tasks = new TaskStream(open(file), UnaryOperator.identity())) {
+            tasks.then(open(source), task -> {
+                if (!query.matches(task)) {
+                    return null;
+                }
+                added[0]++;
+                return withNewId(task);
+            });
+            DataManager.writeSnapshotFile(file, tasks);
+        } finally {
+            lock.close();
+        }
+        out.println("Imported " + added[0] + " tasks from " + source + " into " + file);
+        return 0;
+    }
+
+    private int export(TaskQuery query) throws IOException {
+        try (TaskStream tasks = new TaskStream(open(file), matching(query))) {
+            if (argument.equals("-")) {
+                DataManager.exportJson(tasks, out);
+                out.println();
+                return 0;
+            }
+            Path target = Path.of(argument);
+            try (Writer writer = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+                DataManager.exportJson(tasks, writer);
+            }
+            out.println("Exported " + tasks.getCount() + " tasks to " + target);
+        }
+        return 0;
+    }
+
+    // --- Helpers ---
+
+    /**
+     * The file's lock, for as long as it is rewritten; refused while the app has the file open.
+     */
+    private SaveFileLock lockForWriting() throws IOException {
+        SaveFileLock lock = SaveFileLock.tryAcquire(file);
+        if (lock == null) {
+            throw new IOException(file + " is open in the app (" + SaveFileLock.describeHolder(file)
+                    + "); close it first, or change the tasks through its HTTP API");
+        }
+        return lock;
+    }
+
+    private TaskReader open(Path path) throws IOException {
+        return DataManager.openSnapshotFile(path, verify);
+    }
+
+    private static UnaryOperator<Task> matching(TaskQuery query) {
+        return task -> query.matches(task) ? task : null;
+    }
+
+    /**
+     * A copy of the task, in the same store, under a newly handed out id.
+     */
+    private static Task withNewId(Task task) {
+        TaskStore store = task.getStore();
+        int row = store.addRow(0, task.getTitle(), task.getDescription(), task.getDueDate(),
+                task.getCategory(), task.getPriority(), task.isCompleted(), task.isDeleted());
+        store.setDeletedOn(row, task.getDeletedOn());
+        store.releaseRow(task.getRow());
+        return new Task(store, row);
+    }
+
+    private void printRow(Task task) {
+        LocalDate due = task.getDueDate();
+        out.print(task.getId());
+        out.print('\t');
+        out.print(task.isDeleted() ? "trash" : task.isCompleted() ? "done" : "pending");
+        out.print('\t');
+        out.print(due == null ? "-" : due.toString());
+        out.print('\t');
+        out.print(orNone(task.getPriority()));
+        out.print('\t');
+        out.print(orNone(task.getCategory()));
+        out.print('\t');
+        out.println(task.getTitle() == null ? "" : task.getTitle());
+    }
+
+    private void printBreakdown(String title, Map<String, Long> counts, long total) {
+        out.println();
+        out.println(title);
+        for (Map.Entry<String, Long> entry : counts.entrySet()) {
+            out.printf(Locale.ROOT, "  %-10s %d (%.1f%%)%n", entry.getKey(), entry.getValue(),
+                    100.0 * entry.getValue() / total);
+        }
+    }
+
+    private static String orNone(String value) {
+        return value == null || value.isEmpty() ? "(none)" : value;
+    }
+
+    private static String value(String[] args, int i, String option) throws UsageException {
+        if (i >= args.length) {
+            throw new UsageException(option + " needs a value.");
+        }
+        return args[i];
+    }
+
+    private static long number(String value) throws UsageException {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new UsageException("Not a number: " + value);
+        }
+    }
+
+    /**
+     * The tasks of one or more files in turn, each passed through a function
+     * that may change it or drop it (by returning null). Tasks are read into a
+     * store of at most {@link #STORE_ROWS} rows; when that is full a new one is
+     * started and the old one is garbage once its tasks have been handed on.
+     * Being a TaskReader itself, it can be written straight back to a file.
+     */
+    private static class TaskStream implements TaskReader {
+        private final List<TaskReader> readers = new ArrayList<>();
+        private final List<UnaryOperator<Task>> functions = new ArrayList<>();
+        private int current;
+        private TaskStore store = new TaskStore(STORE_ROWS);
+        private boolean newStore;
+        private long count;
+        private final TaskTypeAdapter adapter = new TaskTypeAdapter();
+
+        TaskStream(TaskReader reader, UnaryOperator<Task> function) {
+            then(reader, function);
+        }
+
+        /**
+         * Adds another file, read after the ones before it.
+         */
+        void then(TaskReader reader, UnaryOperator<Task> function) {
+            readers.add(reader);
+            functions.add(function);
+        }
+
+        /**
+         * The next task, in a store of our own (see {@link #startedNewStore}).
+         */
+        Task next() throws IOException {
+            return read(null);
+        }
+
+        @Override
+        public Task next(TaskStore target) throws IOException {
+            return read(target);
+        }
+
+        // Into the given store, or (null) into our own, started over whenever it is full
+        private Task read(TaskStore target) throws IOException {
+            newStore = false;
+            while (current < readers.size()) {
+                if (target == null && store.size() >= STORE_ROWS) {
+                    store = new TaskStore(STORE_ROWS); // Dropped tasks count too, so this is in the loop
+                    newStore = true;
+                }
+                Task task = readers.get(current).next(target != null ? target : store);
+                if (task == null) {
+                    current++;
+                    continue;
+                }
+                task = functions.get(current).apply(task);
+                if (task != null) {
+                    count++;
+                    return task;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * True if the last task came from a new store, i.e. about every STORE_ROWS tasks.
+         */
+        boolean startedNewStore() {
+            return newStore;
+        }
+
+        /**
+         * How many tasks have been handed out so far.
+         */
+        long getCount() {
+            return count;
+        }
+
+        /**
+         * The task as one line of JSON, as the save file has it.
+         */
+        String toJson(Task task) throws IOException {
+            StringWriter text = new StringWriter(256);
+            JsonWriter writer = new JsonWriter(text);
+            writer.setHtmlSafe(true);
+            adapter.write(writer, task);
+            writer.flush();
+            return text.toString();
+        }
+
+        // The first file is the one being rewritten: its journal position and ids carry over
+        @Override
+        public long getJournalSeq() { return readers.get(0).getJournalSeq(); }
+
+        @Override
+        public long getLastTaskId() { return readers.get(0).getLastTaskId(); }
+
+        @Override
+        public long getBytesRead() {
+            return readers.stream().mapToLong(TaskReader::getBytesRead).sum();
+        }
+
+        @Override
+        public long getContentLength() {
+            return readers.stream().mapToLong(TaskReader::getContentLength).sum();
+        }
+
+        @Override
+        public void close() throws IOException {
+            IOException failure = null;
+            for (TaskReader reader : readers) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
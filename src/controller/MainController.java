@@ -20,17 +20,37 @@ import javafx.stage.Modality;
 import javafx.stage.Stage;
 import javafx.stage.StageStyle;
 import model.Task;
+import model.TaskList;
+import model.TaskRepository;
 import javafx.scene.control.Alert.AlertType;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.io.IOException;
 import java.time.LocalDate;
 import javafx.scene.control.cell.CheckBoxTableCell;
-import javafx.collections.transformation.FilteredList;
+import javafx.collections.FXCollections;
+import javafx.collections.transformation.SortedList;
+import index.FilterPipeline;
+import index.TaskIndex;
+import index.TaskQuery;
+import index.TaskSummary;
 import util.DataManager;
+import util.PagedTaskList;
+import util.PagedTaskSource;
+import util.SaveFileWatcher;
+import util.TaskLoadListener;
+import util.TrashPurger;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import javafx.util.Duration;
+import api.TaskApiServer;
+import metrics.LatencyHistogram;
+import metrics.Metrics;
+import metrics.UiHandlerEvent;
 
 /**
  * Controller for the main application view (MainView.fxml).
@@ -38,13 +58,40 @@ import javafx.scene.image.ImageView;
  */
 public class MainController {
 
-    private ObservableList<Task> tasks = DataManager.loadTasks();
-    private FilteredList<Task> filteredTasks;
+    // How long bulk edits and the task dialog's FXML take (see metrics.Metrics; TaskSummary times its own updates)
+    private static final LatencyHistogram bulkUpdateTime = Metrics.histogram("bulk.update");
+    private static final LatencyHistogram addDialogLoadTime = Metrics.histogram("dialog.addTask.load");
+    private static final LatencyHistogram detailsDialogLoadTime = Metrics.histogram("dialog.details.load");
+
+    // Starts empty; initialize() fills it in the background
+    private TaskList tasks = DataManager.createTaskList();
+    private final TaskIndex taskIndex = new TaskIndex();
+    private final TaskSummary taskSummary = new TaskSummary();
+    // The rows the table shows: exactly the tasks matching the filter bar
+    private final ObservableList<Task> displayedTasks = FXCollections.observableArrayList();
+    private FilterPipeline filterPipeline;
+    private TrashPurger trashPurger;
+    private TaskRepository repository; // How other threads read and change the tasks
+    private TaskApiServer apiServer; // Only with -Dtodo.http.port
+    private SaveFileWatcher saveWatcher; // Brings in changes other programs make to the save file
+    private boolean readOnly; // Another window has the save file; this one only shows it
+    private ContextMenu bulkMenu; // Taken away while read-only, then put back (its handlers are instrumented)
+    // True while the table shows the trash instead of the live tasks
+    private boolean showingTrash = false;
+    // Only set when browsing a save file page by page (see startPagedBrowse)
+    private PagedTaskList pagedTasks;
+    private TableColumn<Task, ?> pagedSortColumn;
+    private boolean pagedSortAscending = true;
+    private boolean filtersSuspended = false;
+    private boolean refreshScheduled = false;
     private double xOffset = 0;
     private double yOffset = 0;
 
     // --- FXML Fields (unchanged) ---
     @FXML private Button addTaskButton;
+    @FXML private Button viewDetailsButton;
+    @FXML private Button deleteTaskButton;
+    @FXML private Button trashButton;
     @FXML private TableView<Task> taskTable;
     @FXML private TableColumn<Task, Boolean> colStatus;
     @FXML private TableColumn<Task, String> colTitle;
@@ -56,14 +103,21 @@ public class MainController {
     @FXML private ComboBox<String> filterStatusCombo;
     @FXML private ComboBox<String> filterPriorityCombo;
     @FXML private DatePicker filterDate;
+    @FXML private ComboBox<String> filterRangeCombo;
     @FXML private Label totalTasksLabel;
     @FXML private Label dueTodayLabel;
     @FXML private Label overdueLabel;
     @FXML private Label upcomingLabel;
     @FXML private Label completedTasksLabel;
+    @FXML private HBox loadingBox;
+    @FXML private ProgressBar loadingProgress;
+    @FXML private Label loadingLabel;
 
     @FXML
     private void initialize() {
+        Metrics.gauge("tasks.total", () -> tasks.size());
+        Metrics.gauge("tasks.shown", () -> displayedTasks.size());
+
         // --- Table Column Setup (unchanged) ---
         taskTable.setEditable(true);
         colStatus.setEditable(true);
@@ -74,47 +128,385 @@ public class MainController {
         colCategory.setCellValueFactory(cellData -> cellData.getValue().categoryProperty());
         colDueDate.setCellValueFactory(cellData -> cellData.getValue().dueDateProperty());
 
-        // --- Filter Setup (unchanged) ---
-        filteredTasks = new FilteredList<>(tasks, p -> true);
-        taskTable.setItems(filteredTasks);
+        // --- Filter Setup ---
         filterCategoryCombo.getItems().addAll("All Categories", "Work", "Personal", "School", "Home", "Other");
         filterCategoryCombo.getSelectionModel().select("All Categories");
         filterStatusCombo.getItems().addAll("All Status", "Completed", "Pending");
         filterStatusCombo.getSelectionModel().select("All Status");
         filterPriorityCombo.getItems().addAll("All Priority", "Low", "Medium", "High");
         filterPriorityCombo.getSelectionModel().select("All Priority");
-
-        // --- Instant Filter Listeners (unchanged) ---
-        searchField.textProperty().addListener((obs, old, val) -> applyFilters());
-        filterCategoryCombo.valueProperty().addListener((obs, old, val) -> applyFilters());
-        filterStatusCombo.valueProperty().addListener((obs, old, val) -> applyFilters());
-        filterDate.valueProperty().addListener((obs, old, val) -> applyFilters());
-        filterPriorityCombo.valueProperty().addListener((obs, old, val) -> applyFilters());
+        filterRangeCombo.getItems().addAll("Any Time", "Today", "Overdue", "Next 7 Days", "This Month");
+        filterRangeCombo.getSelectionModel().select("Any Time");
+
+        // --- Filter Listeners (debounced, so fast typing filters once at the end) ---
+        searchField.textProperty().addListener((obs, old, val) -> requestFilters());
+        filterCategoryCombo.valueProperty().addListener((obs, old, val) -> requestFilters());
+        filterStatusCombo.valueProperty().addListener((obs, old, val) -> requestFilters());
+        filterDate.valueProperty().addListener((obs, old, val) -> requestFilters());
+        filterPriorityCombo.valueProperty().addListener((obs, old, val) -> requestFilters());
+        filterRangeCombo.valueProperty().addListener((obs, old, val) -> requestFilters());
+
+        // Several rows can be selected; the right-click menu acts on all of them at once
+        taskTable.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+        bulkMenu = createBulkMenu();
+        taskTable.setContextMenu(bulkMenu);
 
         // Double-click listener (unchanged)
         taskTable.setOnMouseClicked((MouseEvent event) -> {
-            if (event.getClickCount() == 2 && taskTable.getSelectionModel().getSelectedItem() != null) {
+            if (event.getClickCount() == 2 && taskTable.getSelectionModel().getSelectedItem() != null
+                    && pagedTasks == null && !showingTrash) {
                 handleViewDetails();
             }
         });
 
+        // A big binary save file can be browsed page by page instead (-Dtodo.table.paged=true)
+        PagedTaskSource pagedSource = DataManager.isPagedMode() ? DataManager.openPagedTaskSource() : null;
+        if (pagedSource != null) {
+            startPagedBrowse(pagedSource);
+            return;
+        }
+
+        // The table shows the query results from the index; sorting by column still works
+        taskIndex.attach(tasks);
+        SortedList<Task> sortedTasks = new SortedList<>(displayedTasks);
+        sortedTasks.comparatorProperty().bind(taskTable.comparatorProperty());
+        taskTable.setItems(sortedTasks);
+        filterPipeline = new FilterPipeline(taskIndex, displayedTasks, this::buildQuery, Duration.millis(150));
+
         tasks.addListener((ListChangeListener.Change<? extends Task> c) -> {
-            while (c.next()) {
-                if (c.wasAdded() || c.wasRemoved() || c.wasUpdated()) {
+            // Journal just the changed tasks (small appends on a background thread)
+            DataManager.recordChanges(c);
+
+            // Re-run the current filter once for this burst of changes
+            scheduleFilterRefresh();
+        });
+
+        // The sidebar counters follow the list by themselves
+        taskSummary.attach(tasks);
+        totalTasksLabel.textProperty().bind(taskSummary.totalProperty().asString());
+        completedTasksLabel.textProperty().bind(taskSummary.completedProperty().asString());
+        dueTodayLabel.textProperty().bind(taskSummary.dueTodayProperty().asString());
+        overdueLabel.textProperty().bind(taskSummary.overdueProperty().asString());
+        upcomingLabel.textProperty().bind(taskSummary.upcomingProperty().asString());
+        taskSummary.trashProperty().addListener((obs, old, val) -> updateTrashButton());
+        updateTrashButton();
+
+        // Deleted tasks wait in the trash; old ones are purged in the background once loading is done
+        trashPurger = new TrashPurger(tasks, taskIndex);
+
+        // Other threads go through the repository: snapshots to read, batched writes on this thread
+        repository = new TaskRepository(tasks, Platform::runLater);
 
-                    // Update the UI counters
-                    Platform.runLater(() -> updateSummaryLabels());
+        // Other local tools can read and edit the tasks over HTTP (-Dtodo.http.port)
+        apiServer = TaskApiServer.startIfEnabled(repository);
 
-                    // Save the changes to the file immediately!
-                    DataManager.saveTasks(tasks);
+        // Only one window may write the save file; a second one opens it read-only
+        readOnly = !DataManager.acquireSaveLock();
 
-                    break; // Stop checking this specific change event
+        // Load the saved tasks in the background; rows show up as they are parsed
+        startLoading();
+    }
+
+    /**
+     * Starts the background load. The table can be browsed as soon as the first
+     * chunk arrives, but editing waits until everything (and the journal) is in.
+     */
+    private void startLoading() {
+        setEditingEnabled(false);
+        loadingBox.setVisible(true);
+        loadingBox.setManaged(true);
+        loadingProgress.setProgress(ProgressIndicator.INDETERMINATE_PROGRESS);
+        loadingLabel.setText("Loading tasks...");
+
+        DataManager.loadTasksAsync(tasks, new TaskLoadListener() {
+            @Override
+            public void onProgress(int loadedCount, double fraction) {
+                loadingProgress.setProgress(fraction);
+                loadingLabel.setText("Loading tasks... " + loadedCount);
+            }
+
+            @Override
+            public void onFinished(int totalCount, long elapsedMillis) {
+                loadingBox.setVisible(false);
+                loadingBox.setManaged(false);
+                updateSummaryLabels();
+                taskIndex.publishMemory();
+                if (readOnly) {
+                    taskTable.setContextMenu(null); // Editable once the other window closes
+                    showReadOnlyNotice();
+                } else {
+                    startWriting();
                 }
+                saveWatcher = new SaveFileWatcher(repository, Platform::runLater, new SaveFileWatcher.Listener() {
+                    @Override
+                    public void externalChangesApplied(int changes, List<String> conflicts) {
+                        if (!conflicts.isEmpty()) {
+                            showConflicts(conflicts);
+                        }
+                    }
+
+                    @Override
+                    public void becameWritable() {
+                        readOnly = false;
+                        taskTable.setContextMenu(bulkMenu);
+                        startWriting();
+                    }
+                });
+                saveWatcher.start();
             }
         });
+    }
+
+    /**
+     * Loaded, and this window owns the save file: editing, purging the trash and API writes go on.
+     */
+    private void startWriting() {
+        setEditingEnabled(true);
+        trashPurger.start();
+        if (apiServer != null) {
+            apiServer.setWritable(true); // Same as the window: editable once loaded
+        }
+    }
+
+    /**
+     * Another window has the save file: say so, without blocking this one.
+     */
+    private void showReadOnlyNotice() {
+        Alert alert = new Alert(AlertType.INFORMATION);
+        alert.setTitle("Read Only");
+        alert.setHeaderText("Tasks Open Elsewhere");
+        alert.setContentText("The tasks are open in another window (" + DataManager.describeSaveLockHolder()
+                + "). This window shows its changes as they are saved and can edit once it closes.");
+        showStyled(alert);
+    }
+
+    /**
+     * Tasks another program changed while they were being edited here kept this
+     * window's version; tells which, without blocking.
+     */
+    private void showConflicts(List<String> titles) {
+        StringBuilder text = new StringBuilder("These tasks were also changed outside the app."
+                + " This window's version was kept:\n");
+        for (int i = 0; i < titles.size() && i < 10; i++) {
+            text.append("\n- ").append(titles.get(i));
+        }
+        if (titles.size() > 10) {
+            text.append("\n... and ").append(titles.size() - 10).append(" more");
+        }
+        Alert alert = new Alert(AlertType.WARNING);
+        alert.setTitle("Conflicting Changes");
+        alert.setHeaderText(titles.size() + " Conflicting Changes");
+        alert.setContentText(text.toString());
+        showStyled(alert);
+    }
+
+    private void showStyled(Alert alert) {
+        alert.initStyle(javafx.stage.StageStyle.UNDECORATED); // Removes white title bar
+        DialogPane dialogPane = alert.getDialogPane();
+        dialogPane.getStylesheets().add(getClass().getResource("/css/alertpage.css").toExternalForm());
+        dialogPane.getStyleClass().add("alert-page");
+        Button okButton = (Button) dialogPane.lookupButton(ButtonType.OK);
+        okButton.getStyleClass().add("yes-button");
+        alert.show(); // Not showAndWait: it comes from the watcher, not from a click
+    }
+
+    /**
+     * Shows the save file through a PagedTaskList: only the rows on screen (and
+     * the pages around them) are decoded. Browsing, filtering and sorting work;
+     * editing stays off because the tasks are never loaded into the task list.
+     */
+    private void startPagedBrowse(PagedTaskSource source) {
+        setEditingEnabled(false);
+        taskTable.setContextMenu(null);
+        pagedTasks = new PagedTaskList(source);
+        taskTable.setItems(pagedTasks);
+
+        // Sorting by a column re-sorts the positions in the background (first sort column only)
+        taskTable.setSortPolicy(table -> {
+            TableColumn<Task, ?> column = table.getSortOrder().isEmpty() ? null : table.getSortOrder().get(0);
+            boolean ascending = column == null || column.getSortType() == TableColumn.SortType.ASCENDING;
+            if (column != pagedSortColumn || ascending != pagedSortAscending) {
+                pagedSortColumn = column;
+                pagedSortAscending = ascending;
+                applyFilters();
+            }
+            return true;
+        });
+
+        totalTasksLabel.setText(String.valueOf(source.size() - source.getDeletedCount()));
+        completedTasksLabel.setText(String.valueOf(source.getCompletedCount()));
+        dueTodayLabel.setText(String.valueOf(source.getDueTodayCount()));
+        overdueLabel.setText(String.valueOf(source.getOverdueCount()));
+        upcomingLabel.setText(String.valueOf(source.getUpcomingCount()));
+        updateTrashButton();
+
+        loadingProgress.setVisible(false);
+        loadingProgress.setManaged(false);
+        showPagedStatus();
+    }
+
+    /**
+     * Re-runs the filter bar and the current sort column over the paged file.
+     */
+    private void refreshPagedTasks() {
+        TaskQuery query = buildQuery();
+        Runnable done = this::showPagedStatus;
+        if (pagedSortColumn == colStatus) {
+            pagedTasks.refresh(query, Task::isCompleted, pagedSortAscending, done);
+        } else if (pagedSortColumn == colTitle) {
+            pagedTasks.refresh(query, Task::getTitle, pagedSortAscending, done);
+        } else if (pagedSortColumn == colPriority) {
+            pagedTasks.refresh(query, Task::getPriority, pagedSortAscending, done);
+        } else if (pagedSortColumn == colCategory) {
+            pagedTasks.refresh(query, Task::getCategory, pagedSortAscending, done);
+        } else if (pagedSortColumn == colDueDate) {
+            pagedTasks.refresh(query, Task::getDueDate, pagedSortAscending, done);
+        } else {
+            pagedTasks.refresh(query, done);
+        }
+    }
+
+    private void showPagedStatus() {
+        loadingBox.setVisible(true);
+        loadingBox.setManaged(true);
+        loadingLabel.setText("Browsing " + pagedTasks.size() + " of " + pagedTasks.getSource().size()
+                + (showingTrash ? " saved tasks in the trash (read-only)" : " saved tasks (read-only)"));
+    }
+
+    /**
+     * The right-click menu of the table: bulk actions on the selected tasks.
+     */
+    private ContextMenu createBulkMenu() {
+        MenuItem completeItem = new MenuItem("Mark as Completed");
+        completeItem.setOnAction(e -> applyToSelection(task -> task.setCompleted(true)));
+        MenuItem pendingItem = new MenuItem("Mark as Pending");
+        pendingItem.setOnAction(e -> applyToSelection(task -> task.setCompleted(false)));
+
+        Menu categoryMenu = new Menu("Set Category");
+        for (String category : new String[] {"Work", "Personal", "School", "Home", "Other"}) {
+            MenuItem item = new MenuItem(category);
+            item.setOnAction(e -> applyToSelection(task -> task.setCategory(category)));
+            categoryMenu.getItems().add(item);
+        }
+        Menu priorityMenu = new Menu("Set Priority");
+        for (String priority : new String[] {"High", "Medium", "Low"}) {
+            MenuItem item = new MenuItem(priority);
+            item.setOnAction(e -> applyToSelection(task -> task.setPriority(priority)));
+            priorityMenu.getItems().add(item);
+        }
+        MenuItem rescheduleItem = new MenuItem("Reschedule...");
+        rescheduleItem.setOnAction(e -> handleBulkReschedule());
+        MenuItem restoreItem = new MenuItem("Restore Selected");
+        restoreItem.setOnAction(e -> handleRestoreTasks());
+        MenuItem deleteItem = new MenuItem("Delete Selected");
+        deleteItem.setOnAction(e -> handleDeleteTask());
+
+        List<MenuItem> editItems = List.of(completeItem, pendingItem, categoryMenu, priorityMenu, rescheduleItem);
+        ContextMenu menu = new ContextMenu(completeItem, pendingItem, new SeparatorMenuItem(),
+                categoryMenu, priorityMenu, rescheduleItem, new SeparatorMenuItem(), restoreItem, deleteItem);
+        // Nothing to do without a selection, or while the tasks can't be edited (loading)
+        menu.setOnShowing(e -> {
+            boolean disabled = taskTable.getSelectionModel().isEmpty() || deleteTaskButton.isDisabled();
+            for (MenuItem item : menu.getItems()) {
+                item.setDisable(disabled);
+            }
+            // Tasks in the trash can only be restored or deleted for good
+            for (MenuItem item : editItems) {
+                item.setVisible(!showingTrash);
+            }
+            restoreItem.setVisible(showingTrash);
+            deleteItem.setText(showingTrash ? "Delete Forever" : "Move to Trash");
+        });
+        return menu;
+    }
+
+    /**
+     * Applies a change to every selected task as one batch: a single list change,
+     * so one journal write (or save), one re-filter and one counter update in total.
+     */
+    private void applyToSelection(Consumer<Task> change) {
+        List<Task> selected = new ArrayList<>(taskTable.getSelectionModel().getSelectedItems());
+        if (selected.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        tasks.batch(() -> {
+            for (Task task : selected) {
+                change.accept(task);
+            }
+        });
+        bulkUpdateTime.recordSince(start);
+    }
+
+    /**
+     * Asks for a new due date and moves every selected task to it.
+     */
+    private void handleBulkReschedule() {
+        int count = taskTable.getSelectionModel().getSelectedItems().size();
+        if (count == 0) {
+            return;
+        }
+        DatePicker datePicker = new DatePicker(LocalDate.now());
+
+        Alert alert = new Alert(AlertType.CONFIRMATION);
+        alert.setTitle("Reschedule Tasks");
+        alert.setHeaderText("Reschedule " + count + (count == 1 ? " task" : " tasks"));
+        alert.initStyle(javafx.stage.StageStyle.UNDECORATED);
+
+        // 1. Link CSS and put the date picker in the dialog
+        DialogPane dialogPane = alert.getDialogPane();
+        dialogPane.getStylesheets().add(getClass().getResource("/css/alertpage.css").toExternalForm());
+        dialogPane.getStyleClass().add("alert-page");
+        dialogPane.setContent(new VBox(10, new Label("New due date:"), datePicker));
+
+        // 2. Same buttons as the other dialogs
+        ButtonType buttonTypeYes = new ButtonType("Reschedule", ButtonBar.ButtonData.OK_DONE);
+        ButtonType buttonTypeNo = new ButtonType("Cancel", ButtonBar.ButtonData.CANCEL_CLOSE);
+        alert.getButtonTypes().setAll(buttonTypeYes, buttonTypeNo);
+        dialogPane.lookupButton(buttonTypeYes).getStyleClass().add("yes-button");
+        dialogPane.lookupButton(buttonTypeNo).getStyleClass().add("no-button");
+
+        Optional<ButtonType> result = alert.showAndWait();
+        if (result.isPresent() && result.get() == buttonTypeYes) {
+            LocalDate dueDate = datePicker.getValue();
+            applyToSelection(task -> task.setDueDate(dueDate));
+        }
+    }
+
+    /**
+     * Switches the table between the live tasks and the trash.
+     */
+    @FXML
+    private void handleToggleTrash() {
+        showingTrash = !showingTrash;
+        taskTable.getSelectionModel().clearSelection();
+        viewDetailsButton.setText(showingTrash ? "Restore" : "Edit Task");
+        deleteTaskButton.setText(showingTrash ? "Delete Forever" : "Delete ");
+        updateTrashButton();
+        applyFilters();
+    }
 
-        // Call it once at the start to set the initial values
-        updateSummaryLabels();
+    private void updateTrashButton() {
+        if (showingTrash) {
+            trashButton.setText("Back to Tasks");
+            return;
+        }
+        int count = pagedTasks != null ? pagedTasks.getSource().getDeletedCount() : taskSummary.trashProperty().get();
+        trashButton.setText("Trash (" + count + ")");
+    }
+
+    /**
+     * Takes the selected tasks out of the trash, as one batch.
+     */
+    private void handleRestoreTasks() {
+        applyToSelection(task -> task.setDeleted(false));
+    }
+
+    private void setEditingEnabled(boolean enabled) {
+        taskTable.setEditable(enabled);
+        addTaskButton.setDisable(!enabled);
+        viewDetailsButton.setDisable(!enabled);
+        deleteTaskButton.setDisable(!enabled);
     }
 
     // --- Helper Method to Make Window Draggable ---
@@ -130,38 +522,12 @@ public class MainController {
         });
     }
     /**
-     * Calculates and updates the summary labels in the sidebar.
-     * (This method is unchanged, the logic here is correct)
+     * Brings the summary labels up to date. The counters are kept current by
+     * TaskSummary; this only recounts if the date has changed since (e.g. the app
+     * was left open overnight, so yesterday's "due today" tasks are now overdue).
      */
     private void updateSummaryLabels() {
-        LocalDate today = LocalDate.now();
-        long total = 0;
-        long completed = 0;
-        long dueToday = 0;
-        long overdue = 0;
-        long upcoming = 0;
-
-        for (Task task : tasks) {
-            total++;
-
-            if (task.isCompleted()) {
-                completed++;
-            } else {
-                if (task.getDueDate().isEqual(today)) {
-                    dueToday++;
-                } else if (task.getDueDate().isBefore(today)) {
-                    overdue++;
-                } else {
-                    upcoming++;
-                }
-            }
-        }
-
-        totalTasksLabel.setText(String.valueOf(total));
-        completedTasksLabel.setText(String.valueOf(completed));
-        dueTodayLabel.setText(String.valueOf(dueToday));
-        overdueLabel.setText(String.valueOf(overdue));
-        upcomingLabel.setText(String.valueOf(upcoming));
+        taskSummary.refreshIfDayChanged();
     }
 
     // --- All other methods (handleAddTaskClick, handleViewDetails, etc.) ---
@@ -170,8 +536,11 @@ public class MainController {
     @FXML
     private void handleAddTaskClick() {
         try {
+            long loadStart = System.nanoTime();
             FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/TaskView.fxml"));
             Parent taskFormRoot = loader.load();
+            addDialogLoadTime.recordSince(loadStart);
+            UiHandlerEvent.instrument(loader);
             TaskFormController taskFormController = loader.getController();
 
             // 1. Create Stage with TRANSPARENT Style (Removes White Bar)
@@ -253,11 +622,12 @@ public class MainController {
 
         // Show the alert and wait for the user's choice
         Optional<ButtonType> result = alert.showAndWait();
-        // If they clicked "Yes", save and close
+        // If they clicked "Yes", save and exit, the same way as closing the window
         if (result.isPresent() && result.get() == buttonTypeYes) {
-            DataManager.saveTasks(tasks);
-            Stage stage = (Stage) addTaskButton.getScene().getWindow();
-            stage.close();
+            System.out.println("Exit chosen. Saving tasks...");
+            saveTasksOnExit(); // Make sure every edit is on disk before closing
+            Platform.exit();
+            System.exit(0); // Also ends the threads that would keep the process (and the save lock) alive
         }
     }
 
@@ -288,7 +658,8 @@ public class MainController {
         contentContainer.getChildren().addAll(
                 createHelpItem("1. Add Task", "Click the (+) button on the left sidebar to create a new task."), addTaskImageNode,
                 createHelpItem("2. Edit Task", "Double-click any row in the table to view or edit details."),
-                createHelpItem("3. Delete Task", "Select a task row and click the 'Delete' button to remove it."), deleteTaskNode,
+                createHelpItem("3. Delete Task", "Select a task row and click the 'Delete' button to move it to the Trash. "
+                        + "Open the Trash to restore it; tasks left there are removed for good after a while."), deleteTaskNode,
                 createHelpItem("4. Search & Filter", "Use the top bar to search by keyword or filter by Category/Status."), filterTaskNode,
                 createHelpItem("5. Save & Exit", "Your data saves automatically when you modify tasks or exit the app."), exitTaskNode
         );
@@ -352,6 +723,10 @@ public class MainController {
 
     @FXML
     private void handleViewDetails() {
+        if (showingTrash) {
+            handleRestoreTasks(); // The button reads "Restore" in the trash
+            return;
+        }
         Task selectedTask = taskTable.getSelectionModel().getSelectedItem();
         if (selectedTask == null) {
             Alert alert = new Alert(AlertType.WARNING);
@@ -387,8 +762,11 @@ public class MainController {
         }
 
         try {
+            long loadStart = System.nanoTime();
             FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/TaskView.fxml"));
             Parent taskFormRoot = loader.load();
+            detailsDialogLoadTime.recordSince(loadStart);
+            UiHandlerEvent.instrument(loader);
             TaskFormController taskFormController = loader.getController();
 
             // 1. Create Stage with TRANSPARENT Style (Removes White Bar)
@@ -414,7 +792,7 @@ public class MainController {
 
             if (taskFormController.isSaveClicked()) {
                 taskTable.refresh();
-                int index = tasks.indexOf(selectedTask);
+                int index = tasks.indexOfId(selectedTask.getId());
                 if (index != -1) {
                     tasks.set(index, selectedTask);
                 }
@@ -427,6 +805,7 @@ public class MainController {
     @FXML
     private void handleDeleteTask() {
         Task selectedTask = taskTable.getSelectionModel().getSelectedItem();
+        List<Task> selectedTasks = new ArrayList<>(taskTable.getSelectionModel().getSelectedItems());
 
         // --- 1. "NO SELECTION" POPUP (Yellow Warning Triangle) ---
         if (selectedTask == null) {
@@ -459,14 +838,26 @@ public class MainController {
             return;
         }
 
-        // --- 2. DELETE CONFIRMATION POPUP (Custom Folder Icon) ---
+        // --- 2. OUTSIDE THE TRASH: just move the tasks there (no popup, they can be restored) ---
+        if (!showingTrash) {
+            applyToSelection(task -> task.setDeleted(true));
+            return;
+        }
+
+        // --- 3. DELETE FOREVER CONFIRMATION POPUP (Custom Folder Icon) ---
         Alert alert = new Alert(AlertType.CONFIRMATION);
         alert.setTitle("Delete Task");
 
         // --- THIS MAKES IT LOOK LIKE THE OTHER POPUP ---
         alert.setHeaderText("Confirm Deletion");
 
-        alert.setContentText("Are you sure you want to delete: " + selectedTask.getTitle() + "?");
+        if (selectedTasks.size() > 1) {
+            alert.setContentText("Are you sure you want to delete these " + selectedTasks.size()
+                    + " tasks forever? This cannot be undone.");
+        } else {
+            alert.setContentText("Are you sure you want to delete: " + selectedTask.getTitle()
+                    + " forever? This cannot be undone.");
+        }
         alert.initStyle(javafx.stage.StageStyle.UNDECORATED);
 
         // Add your Custom Icon
@@ -498,51 +889,122 @@ public class MainController {
 
         Optional<ButtonType> result = alert.showAndWait();
         if (result.isPresent() && result.get() == buttonTypeYes) {
-            tasks.remove(selectedTask);
+            if (selectedTasks.size() > 1) {
+                tasks.removeAll(selectedTasks); // One pass and one change event for the whole selection
+            } else {
+                tasks.removeById(selectedTask.getId());
+            }
+            for (Task task : selectedTasks) {
+                task.getStore().releaseRow(task.getRow()); // Gone for good: the rows can be reused
+            }
         }
     }
 
     @FXML
     private void applyFilters() {
-        String keyword = searchField.getText().toLowerCase();
+        if (filtersSuspended) {
+            return; // Several filter fields are being changed at once
+        }
+        if (pagedTasks != null) {
+            refreshPagedTasks();
+            return;
+        }
+        filterPipeline.runNow();
+    }
+
+    private void requestFilters() {
+        if (filtersSuspended) {
+            return;
+        }
+        if (pagedTasks != null) {
+            refreshPagedTasks(); // Each refresh cancels the scan before it
+        } else {
+            filterPipeline.request();
+        }
+    }
+
+    /**
+     * Turns the filter bar into a query ("All ..." means no filter on that field).
+     */
+    private TaskQuery buildQuery() {
         String category = filterCategoryCombo.getValue();
         String status = filterStatusCombo.getValue();
         String priority = filterPriorityCombo.getValue();
-        LocalDate date = filterDate.getValue();
-
-        filteredTasks.setPredicate(t -> {
-            boolean keywordMatch = keyword.isEmpty() ||
-                    t.getTitle().toLowerCase().contains(keyword);
-            boolean categoryMatch = category.equals("All Categories") ||
-                    t.getCategory().equals(category);
-            boolean statusMatch;
-            if (status.equals("All Status")) {
-                statusMatch = true;
-            } else if (status.equals("Completed")) {
-                statusMatch = t.isCompleted();
-            } else {
-                statusMatch = !t.isCompleted();
-            }
-            boolean priorityMatch = priority == null ||
-                                    priority.equals("All Priority") ||
-                                    t.getPriority().equalsIgnoreCase(priority);
-            boolean dateMatch = (date == null) ||
-                    t.getDueDate().isEqual(date);
-            return keywordMatch && categoryMatch && statusMatch && priorityMatch && dateMatch;
-        });
+
+        Boolean completed = null;
+        if ("Completed".equals(status)) {
+            completed = true;
+        } else if ("Pending".equals(status)) {
+            completed = false;
+        }
+
+        TaskQuery query = new TaskQuery(
+                searchField.getText(),
+                "All Categories".equals(category) ? null : category,
+                completed,
+                priority == null || "All Priority".equals(priority) ? null : priority,
+                filterDate.getValue());
+        if (showingTrash) {
+            query = query.inTrash(); // The filter bar searches the trash too
+        }
+        return withDateRange(query, filterRangeCombo.getValue());
+    }
+
+    /**
+     * Adds the due date range picked in the range box to the query.
+     */
+    private TaskQuery withDateRange(TaskQuery query, String range) {
+        return query.withRange(range, LocalDate.now());
+    }
+
+    /**
+     * Re-filters once after the current event, however many tasks changed in it.
+     */
+    private void scheduleFilterRefresh() {
+        if (!refreshScheduled) {
+            refreshScheduled = true;
+            Platform.runLater(() -> {
+                refreshScheduled = false;
+                applyFilters();
+            });
+        }
+    }
+
+    /**
+     * Applies several filter field changes with a single re-filter at the end.
+     */
+    private void changeFilters(Runnable changes) {
+        filtersSuspended = true;
+        try {
+            changes.run();
+        } finally {
+            filtersSuspended = false;
+        }
+        applyFilters();
     }
 
     @FXML
     private void clearFilters() {
+        changeFilters(this::resetFilterFields);
+    }
+
+    private void resetFilterFields() {
         searchField.setText("");
         filterCategoryCombo.getSelectionModel().select("All Categories");
         filterStatusCombo.getSelectionModel().select("All Status");
         filterPriorityCombo.getSelectionModel().select("All Priority");
         filterDate.setValue(null);
+        filterRangeCombo.getSelectionModel().select("Any Time");
     }
 
     public void saveTasksOnExit() {
-        DataManager.saveTasks(tasks);
+        if (apiServer != null) {
+            apiServer.stop(); // No more API writes; its dispatcher thread would keep the process running
+        }
+        if (saveWatcher != null) {
+            saveWatcher.stop(); // Before the last save, so a change still waiting to be merged can't hold it back
+        }
+        DataManager.flushSaves();
     }
 
     @FXML
@@ -552,39 +1014,47 @@ public class MainController {
 
     @FXML
     private void handleFilterToday() {
-        filterDate.setValue(LocalDate.now());
-        searchField.setText("");
-        filterCategoryCombo.getSelectionModel().select("All Categories");
-        filterStatusCombo.getSelectionModel().select("All Status");
+        changeFilters(() -> {
+            filterDate.setValue(LocalDate.now());
+            filterRangeCombo.getSelectionModel().select("Any Time");
+            searchField.setText("");
+            filterCategoryCombo.getSelectionModel().select("All Categories");
+            filterStatusCombo.getSelectionModel().select("All Status");
+        });
     }
 
     @FXML
     private void handleFilterUpcoming() {
-        clearFilters();
-        filterStatusCombo.getSelectionModel().select("Pending");
+        changeFilters(() -> {
+            resetFilterFields();
+            filterStatusCombo.getSelectionModel().select("Pending");
+        });
     }
 
     @FXML
     private void handleFilterSchool() {
-        clearFilters();
-        filterCategoryCombo.getSelectionModel().select("School");
+        filterByCategory("School");
     }
 
     @FXML
     private void handleFilterWork() {
-        clearFilters();
-        filterCategoryCombo.getSelectionModel().select("Work");
+        filterByCategory("Work");
     }
 
     @FXML
     private void handleFilterPersonal() {
-        clearFilters();
-        filterCategoryCombo.getSelectionModel().select("Personal");
+        filterByCategory("Personal");
     }
 
     @FXML
     private void handleFilterHome() {
-        clearFilters();
-        filterCategoryCombo.getSelectionModel().select("Home");
+        filterByCategory("Home");
+    }
+
+    private void filterByCategory(String category) {
+        changeFilters(() -> {
+            resetFilterFields();
+            filterCategoryCombo.getSelectionModel().select(category);
+        });
     }
 }
\ No newline at end of file
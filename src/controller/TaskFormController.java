@@ -34,6 +34,7 @@ public class TaskFormController {
 
     // Optional: A Task object to hold data (useful for editing existing tasks)
     private Task currentTask;
+    private long currentTaskId; // To notice the task being deleted for good while the form is open
 
     // --- Initialization Method ---
     // This method is called automatically by JavaFX after the FXML has been loaded
@@ -84,6 +85,11 @@ public class TaskFormController {
             String priority = taskPriorityChoiceBox.getValue();
 
             // 3. Check if we are in "Edit" mode (currentTask is not null)
+            if (currentTask != null && currentTask.getId() != currentTaskId) {
+                // Deleted for good in the meantime (its row may hold another task by now)
+                dialogStage.close();
+                return;
+            }
             if (currentTask != null) {
                 // We are editing: update the existing task object
                 currentTask.setTitle(title);
@@ -132,6 +138,7 @@ public class TaskFormController {
     //  */
     public void setTask(Task task) {
         this.currentTask = task;
+        this.currentTaskId = task.getId();
 
         // Populate the form fields with data from the task object
         taskTitleField.setText(task.getTitle());
@@ -0,0 +1,69 @@
+package index;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One bitset per distinct value of a field (e.g. one for "Work", one for "Home").
+ * Bit n is set when the task with doc id n has that value, so "Work AND High"
+ * is a word-by-word AND of two bitsets instead of a check on every task.
+ */
+public class BitmapIndex {
+
+    private static final BitSet EMPTY = new BitSet();
+
+    private final Map<String, BitSet> bitmaps = new HashMap<>();
+    private final boolean ignoreCase;
+
+    /**
+     * @param ignoreCase treat values that differ only in case as the same value
+     */
+    public BitmapIndex(boolean ignoreCase) {
+        this.ignoreCase = ignoreCase;
+    }
+
+    public void add(int docId, String value) {
+        if (value != null) {
+            bitmaps.computeIfAbsent(key(value), k -> new BitSet()).set(docId);
+        }
+    }
+
+    public void remove(int docId, String value) {
+        if (value == null) {
+            return;
+        }
+        BitSet bitmap = bitmaps.get(key(value));
+        if (bitmap != null) {
+            bitmap.clear(docId);
+            if (bitmap.isEmpty()) {
+                bitmaps.remove(key(value));
+            }
+        }
+    }
+
+    public void move(int docId, String oldValue, String newValue) {
+        remove(docId, oldValue);
+        add(docId, newValue);
+    }
+
+    /**
+     * The tasks that have this value. The returned bitset belongs to the index: read it, don't change it.
+     */
+    public BitSet get(String value) {
+        BitSet bitmap = value != null ? bitmaps.get(key(value)) : null;
+        return bitmap != null ? bitmap : EMPTY;
+    }
+
+    public long estimateBytes() {
+        long bytes = 0;
+        for (BitSet bitmap : bitmaps.values()) {
+            bytes += 64 + bitmap.size() / 8;
+        }
+        return bytes;
+    }
+
+    private String key(String value) {
+        return ignoreCase ? value.toLowerCase() : value;
+    }
+}
@@ -0,0 +1,80 @@
+package index;
+
+import model.Task;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Gives every indexed task a small int id ("doc id") so the indexes can
+ * store plain ints instead of object references. Ids are handed out in
+ * increasing order and never reused, so doc id order is the order tasks were
+ * added; the ids of removed tasks stay empty until {@link TaskIndex} renumbers
+ * everything into a fresh map (see TaskIndex#compactDocIds).
+ */
+public class DocIdMap {
+
+    private final Map<Task, Integer> ids = new IdentityHashMap<>();
+    private Task[] tasks = new Task[1024];
+    private int nextId;
+
+    /**
+     * Returns the task's id, assigning a new one if it has none yet.
+     */
+    public int assign(Task task) {
+        Integer id = ids.get(task);
+        if (id != null) {
+            return id;
+        }
+        if (nextId == tasks.length) {
+            tasks = Arrays.copyOf(tasks, tasks.length * 2);
+        }
+        tasks[nextId] = task;
+        ids.put(task, nextId);
+        return nextId++;
+    }
+
+    /**
+     * Forgets the task and returns the id it had, or -1.
+     */
+    public int release(Task task) {
+        Integer id = ids.remove(task);
+        if (id == null) {
+            return -1;
+        }
+        tasks[id] = null;
+        return id;
+    }
+
+    /**
+     * The task's id, or -1 if it is not indexed.
+     */
+    public int idOf(Task task) {
+        Integer id = ids.get(task);
+        return id != null ? id : -1;
+    }
+
+    public Task taskOf(int id) {
+        return id >= 0 && id < nextId ? tasks[id] : null;
+    }
+
+    /**
+     * One more than the highest id handed out so far.
+     */
+    public int upperBound() {
+        return nextId;
+    }
+
+    /**
+     * How many tasks have an id (the ids below upperBound() that are not empty).
+     */
+    public int size() {
+        return ids.size();
+    }
+
+    public long estimateBytes() {
+        // IdentityHashMap keeps keys and values in one array; Integer boxes above the cache
+        return 16 + 4L * tasks.length + 2 * 4L * ids.size() * 2 + 16L * ids.size();
+    }
+}
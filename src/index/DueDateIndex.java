@@ -0,0 +1,160 @@
+package index;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * The tasks sorted by due date: one bucket of doc ids per day, keyed by epoch
+ * day in a TreeMap. A day, "before this day" or a range of days is a TreeMap
+ * lookup plus a walk over just the matching buckets, so O(log n + k) instead
+ * of comparing every task's date. Tasks without a due date are not in it.
+ */
+public class DueDateIndex {
+
+    private final TreeMap<Long, IntList> days = new TreeMap<>();
+    private int size;
+
+    public void add(int docId, LocalDate dueDate) {
+        if (dueDate != null) {
+            days.computeIfAbsent(dueDate.toEpochDay(), day -> new IntList()).add(docId);
+            size++;
+        }
+    }
+
+    public void remove(int docId, LocalDate dueDate) {
+        if (dueDate == null) {
+            return;
+        }
+        Long day = dueDate.toEpochDay();
+        IntList bucket = days.get(day);
+        if (bucket != null && bucket.remove(docId)) {
+            size--;
+            if (bucket.isEmpty()) {
+                days.remove(day);
+            }
+        }
+    }
+
+    public void move(int docId, LocalDate oldDate, LocalDate newDate) {
+        remove(docId, oldDate);
+        add(docId, newDate);
+    }
+
+    /**
+     * Moves many tasks at once (e.g. a bulk reschedule). Each day's bucket is
+     * rewritten once, instead of being shifted for every task that leaves or joins it.
+     * The arrays are parallel: task {@code docIds[i]} moves from oldDates[i] to newDates[i].
+     */
+    public void moveAll(int[] docIds, LocalDate[] oldDates, LocalDate[] newDates, int count) {
+        long[] leaving = new long[count];
+        long[] joining = new long[count];
+        int leavingCount = 0;
+        int joiningCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (oldDates[i] != null) {
+                leaving[leavingCount++] = dayAndDoc(oldDates[i], docIds[i]);
+            }
+            if (newDates[i] != null) {
+                joining[joiningCount++] = dayAndDoc(newDates[i], docIds[i]);
+            }
+        }
+
+        // Sorting "day, doc id" pairs groups them by day with the ids of each day in order
+        Arrays.sort(leaving, 0, leavingCount);
+        Arrays.sort(joining, 0, joiningCount);
+        int[] ids = new int[Math.max(leavingCount, joiningCount)];
+        for (int start = 0, end; start < leavingCount; start = end) {
+            long day = leaving[start] >> 32;
+            end = groupEnd(leaving, start, leavingCount, ids);
+            IntList bucket = days.get(day);
+            if (bucket != null) {
+                size -= bucket.removeAllSorted(ids, end - start);
+                if (bucket.isEmpty()) {
+                    days.remove(day);
+                }
+            }
+        }
+        for (int start = 0, end; start < joiningCount; start = end) {
+            long day = joining[start] >> 32;
+            end = groupEnd(joining, start, joiningCount, ids);
+            IntList bucket = days.computeIfAbsent(day, d -> new IntList(0));
+            int before = bucket.size();
+            bucket.addAllSorted(ids, end - start);
+            size += bucket.size() - before;
+        }
+    }
+
+    private static long dayAndDoc(LocalDate date, int docId) {
+        return date.toEpochDay() << 32 | docId;
+    }
+
+    /**
+     * Copies the doc ids of the day starting at {@code start} into {@code ids}
+     * and returns where the next day starts.
+     */
+    private static int groupEnd(long[] pairs, int start, int count, int[] ids) {
+        long day = pairs[start] >> 32;
+        int end = start;
+        while (end < count && pairs[end] >> 32 == day) {
+            ids[end - start] = (int) pairs[end];
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * The tasks due on or between the two days (inclusive). A null end is open:
+     * range(null, yesterday) is everything overdue, range(tomorrow, null) everything later.
+     */
+    public BitSet range(LocalDate from, LocalDate to) {
+        NavigableMap<Long, IntList> matching = days;
+        if (from != null && to != null) {
+            if (from.isAfter(to)) {
+                return new BitSet();
+            }
+            matching = days.subMap(from.toEpochDay(), true, to.toEpochDay(), true);
+        } else if (from != null) {
+            matching = days.tailMap(from.toEpochDay(), true);
+        } else if (to != null) {
+            matching = days.headMap(to.toEpochDay(), true);
+        }
+
+        BitSet result = new BitSet();
+        for (IntList bucket : matching.values()) {
+            for (int i = 0; i < bucket.size(); i++) {
+                result.set(bucket.get(i));
+            }
+        }
+        return result;
+    }
+
+    public BitSet on(LocalDate day) {
+        return range(day, day);
+    }
+
+    /**
+     * The tasks due before the given day (not on it).
+     */
+    public BitSet before(LocalDate day) {
+        return range(null, day.minusDays(1));
+    }
+
+    /**
+     * How many tasks have a due date.
+     */
+    public int size() {
+        return size;
+    }
+
+    public long estimateBytes() {
+        long bytes = 0;
+        for (Map.Entry<Long, IntList> day : days.entrySet()) {
+            bytes += 40 + 16 + day.getValue().estimateBytes(); // TreeMap entry, Long, bucket
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,133 @@
+package index;
+
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
+import javafx.util.Duration;
+import metrics.Counter;
+import metrics.FilterEvent;
+import metrics.Gauge;
+import metrics.LatencyHistogram;
+import metrics.Metrics;
+import model.Task;
+
+import java.util.BitSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Runs the filter bar's queries without blocking the JavaFX thread.
+ *
+ * Input changes are merged over a short debounce window, the index part of the
+ * query is done on the JavaFX thread (it is only bitset ANDs), and the per-task
+ * check runs on a background thread. Starting a new query cancels the one still
+ * running, and only the newest result is published to the displayed list, in
+ * one update. All public methods must be called on the JavaFX thread.
+ */
+public class FilterPipeline {
+
+    // From a query starting to its result being on screen, and how many tasks it let through
+    private static final LatencyHistogram filterTime = Metrics.histogram("filter.duration");
+    private static final Gauge filterMatches = Metrics.gauge("filter.matches");
+    private static final Counter filtersDropped = Metrics.counter("filter.dropped");
+
+    private final TaskIndex index;
+    private final ObservableList<Task> displayed;
+    private final Supplier<TaskQuery> querySource;
+    private final PauseTransition debounce;
+    private final ExecutorService executor;
+
+    // Bumped for every query; a running check whose number is old stops and is thrown away
+    private volatile long generation;
+
+    /**
+     * @param querySource reads the filter fields; called on the JavaFX thread when a query starts
+     * @param debounce    how long to wait for more input before filtering
+     */
+    public FilterPipeline(TaskIndex index, ObservableList<Task> displayed,
+                          Supplier<TaskQuery> querySource, Duration debounce) {
+        this.index = index;
+        this.displayed = displayed;
+        this.querySource = querySource;
+        this.debounce = new PauseTransition(debounce);
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "task-filter");
+            thread.setDaemon(true); // Never keep the JVM alive on its own
+            return thread;
+        });
+    }
+
+    /**
+     * Filters once the input has been quiet for the debounce window.
+     * Use this for typing and other rapid changes.
+     */
+    public void request() {
+        generation++; // Whatever is still running is already out of date
+        debounce.setOnFinished(event -> runNow());
+        debounce.playFromStart();
+    }
+
+    /**
+     * Filters right away, dropping any pending or running query.
+     */
+    public void runNow() {
+        debounce.stop();
+        long start = System.nanoTime();
+        long myGeneration = ++generation;
+        TaskQuery query = querySource.get();
+        FilterEvent event = new FilterEvent();
+        event.begin();
+        QueryPlan plan = index.prepare(query);
+
+        // 1. Nothing left to check one by one: publish straight away
+        if (!plan.needsCheck()) {
+            publish(plan.evaluate(() -> false), start, event, query, plan);
+            return;
+        }
+
+        // 2. Otherwise check the candidates in the background and publish only if still current
+        executor.execute(() -> {
+            if (generation != myGeneration) {
+                filtersDropped.increment();
+                return; // A newer query came in while this one was queued
+            }
+            BitSet matches;
+            try {
+                matches = plan.evaluate(() -> generation != myGeneration);
+            } catch (CancellationException e) {
+                filtersDropped.increment();
+                return;
+            } catch (RuntimeException e) {
+                System.err.println("Filtering failed: " + e.getMessage());
+                e.printStackTrace();
+                return;
+            }
+            Platform.runLater(() -> {
+                if (generation != myGeneration) {
+                    filtersDropped.increment();
+                } else if (!index.isCurrent(plan)) {
+                    filtersDropped.increment();
+                    runNow(); // The index renumbered its doc ids meanwhile: the result means other tasks
+                } else {
+                    publish(matches, start, event, query, plan);
+                }
+            });
+        });
+    }
+
+    private void publish(BitSet matches, long start, FilterEvent event, TaskQuery query, QueryPlan plan) {
+        index.publish(matches, displayed);
+        filterTime.recordSince(start);
+        int matchCount = matches.cardinality();
+        filterMatches.set(matchCount);
+        event.end();
+        if (event.shouldCommit()) {
+            event.query = query.toString(); // Only built when a recording wants the event
+            event.candidates = plan.candidateCount();
+            event.matches = matchCount;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package index;
+
+import java.util.Arrays;
+
+/**
+ * A growable, sorted list of ints without boxing. Used for posting lists
+ * (the ids of all tasks that contain a given trigram, date, ...).
+ */
+public class IntList {
+
+    private int[] values;
+    private int size;
+
+    public IntList() {
+        this(4);
+    }
+
+    public IntList(int capacity) {
+        values = new int[Math.max(1, capacity)];
+    }
+
+    public int size() { return size; }
+
+    public boolean isEmpty() { return size == 0; }
+
+    public int get(int i) { return values[i]; }
+
+    /**
+     * Adds a value, keeping the list sorted. Ids mostly grow, so this is usually an append.
+     */
+    public void add(int value) {
+        if (size == 0 || values[size - 1] < value) {
+            ensureCapacity();
+            values[size++] = value;
+            return;
+        }
+        int pos = Arrays.binarySearch(values, 0, size, value);
+        if (pos >= 0) {
+            return; // Already there
+        }
+        pos = -pos - 1;
+        ensureCapacity();
+        System.arraycopy(values, pos, values, pos + 1, size - pos);
+        values[pos] = value;
+        size++;
+    }
+
+    public boolean remove(int value) {
+        int pos = Arrays.binarySearch(values, 0, size, value);
+        if (pos < 0) {
+            return false;
+        }
+        System.arraycopy(values, pos + 1, values, pos, size - pos - 1);
+        size--;
+        return true;
+    }
+
+    /**
+     * Adds several values at once. {@code sorted} must be in ascending order;
+     * the list is merged in one pass instead of shifted once per value.
+     */
+    public void addAllSorted(int[] sorted, int count) {
+        int[] merged = new int[Math.max(values.length, size + count)];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < size || j < count) {
+            int next;
+            if (j == count || (i < size && values[i] <= sorted[j])) {
+                next = values[i++];
+            } else {
+                next = sorted[j++];
+            }
+            if (n == 0 || merged[n - 1] != next) {
+                merged[n++] = next; // Skips values that were already there
+            }
+        }
+        values = merged;
+        size = n;
+    }
+
+    /**
+     * Removes several values at once ({@code sorted} in ascending order) in one
+     * pass over the list. Returns how many were actually removed.
+     */
+    public int removeAllSorted(int[] sorted, int count) {
+        return removeAllSorted(sorted, 0, count);
+    }
+
+    /**
+     * The same for {@code sorted[from]} up to (not including) {@code sorted[to]}.
+     */
+    public int removeAllSorted(int[] sorted, int from, int to) {
+        int kept = 0;
+        int j = from;
+        for (int i = 0; i < size; i++) {
+            while (j < to && sorted[j] < values[i]) {
+                j++;
+            }
+            if (j == to || sorted[j] != values[i]) {
+                values[kept++] = values[i];
+            }
+        }
+        int removed = size - kept;
+        size = kept;
+        return removed;
+    }
+
+    public boolean contains(int value) {
+        return Arrays.binarySearch(values, 0, size, value) >= 0;
+    }
+
+    /**
+     * Approximate heap used by this list, in bytes.
+     */
+    public long estimateBytes() {
+        return 16 + 16 + 4L * values.length;
+    }
+
+    private void ensureCapacity() {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package index;
+
+/**
+ * A hash map from long to int on plain arrays, for the index code that would
+ * otherwise box millions of keys (see TrigramIndex#removeAll). Open addressing
+ * with linear probing; key 0 marks an empty slot, so it can't be stored.
+ * Only what the index needs: no removal.
+ */
+class LongIntMap {
+
+    private long[] keys = new long[64];
+    private int[] values = new int[64];
+    private int size;
+
+    /**
+     * The value stored for the key, or -1.
+     */
+    int get(long key) {
+        int mask = keys.length - 1;
+        for (int slot = slotOf(key, mask); keys[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+        }
+        return -1;
+    }
+
+    void put(long key, int value) {
+        if ((size + 1) * 2 > keys.length) {
+            grow();
+        }
+        int mask = keys.length - 1;
+        int slot = slotOf(key, mask);
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (keys[slot] == 0) {
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private static int slotOf(long key, int mask) {
+        long hash = key * 0x9E3779B97F4A7C15L; // Spreads neighbouring keys over the table
+        return (int) (hash >>> 32) & mask;
+    }
+}
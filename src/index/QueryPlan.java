@@ -0,0 +1,113 @@
+package index;
+
+import model.Task;
+import model.TaskStore;
+
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+/**
+ * A filter query with the cheap part already done: the bitmap ANDs, due date
+ * lookups and trigram lookups are made on the JavaFX thread by
+ * {@link TaskIndex#prepare}, and what is left is a per-task keyword check of the
+ * remaining candidates. That check reads the candidates from an array of just
+ * those tasks and from frozen copies of their task stores, both taken by
+ * prepare, so it can run on any thread and sees the tasks as they were when the
+ * plan was made, whatever the list does in the meantime. Its doc ids are only
+ * good as long as the index has not renumbered them since (see
+ * {@link TaskIndex#isCurrent}).
+ */
+public class QueryPlan {
+
+    // Below this many candidates one thread is faster than splitting the work up
+    private static final int PARALLEL_THRESHOLD = 50_000;
+    // How often (in candidates) a running check looks at its cancel flag
+    private static final int CANCEL_CHECK_INTERVAL = 1024;
+
+    private final BitSet candidates;
+    private final int[] docIds;
+    private final Task[] tasks;
+    private final Map<TaskStore, TaskStore> frozen;
+    private final String keyword;
+    private final long docIdGeneration;
+
+    /**
+     * @param docIds the candidates' doc ids, in order (null when there is no keyword)
+     * @param tasks  the candidate tasks, tasks[i] having docIds[i]
+     * @param frozen the frozen copy of every store a candidate lives in
+     * @param docIdGeneration the index's numbering the doc ids belong to
+     */
+    QueryPlan(BitSet candidates, int[] docIds, Task[] tasks, Map<TaskStore, TaskStore> frozen, String keyword,
+              long docIdGeneration) {
+        this.candidates = candidates;
+        this.docIds = docIds;
+        this.tasks = tasks;
+        this.frozen = frozen;
+        this.keyword = keyword;
+        this.docIdGeneration = docIdGeneration;
+    }
+
+    long getDocIdGeneration() {
+        return docIdGeneration;
+    }
+
+    /**
+     * True if the candidates still have to be checked one by one. If not,
+     * {@link #evaluate} returns at once and there is no point using a worker thread.
+     */
+    public boolean needsCheck() {
+        return keyword != null;
+    }
+
+    public int candidateCount() {
+        return candidates.cardinality();
+    }
+
+    /**
+     * Returns the doc ids of the tasks that match.
+     *
+     * @param cancelled polled while working; once it returns true the check stops
+     *                  with a CancellationException
+     */
+    public BitSet evaluate(BooleanSupplier cancelled) {
+        if (!needsCheck()) {
+            return candidates;
+        }
+        int count = docIds.length;
+        if (count < PARALLEL_THRESHOLD) {
+            return check(0, count, cancelled);
+        }
+
+        // Big list: give each core its own range of candidates, then OR the parts together
+        int parts = Runtime.getRuntime().availableProcessors() * 2;
+        int step = (count + parts - 1) / parts;
+        return IntStream.range(0, parts).parallel()
+                .mapToObj(part -> check(part * step, Math.min(count, (part + 1) * step), cancelled))
+                .reduce((a, b) -> {
+                    a.or(b);
+                    return a;
+                })
+                .orElseGet(BitSet::new);
+    }
+
+    /**
+     * Checks candidates {@code from} to {@code to} (positions in the candidate arrays).
+     */
+    private BitSet check(int from, int to, BooleanSupplier cancelled) {
+        BitSet result = new BitSet(to > from ? docIds[to - 1] + 1 : 0);
+        for (int i = from; i < to; i++) {
+            if ((i - from + 1) % CANCEL_CHECK_INTERVAL == 0 && cancelled.getAsBoolean()) {
+                throw new CancellationException("Superseded by a newer query");
+            }
+            Task task = tasks[i];
+            // The live task only gives the row; the values come from the frozen store
+            if (TaskIndex.containsKeyword(new Task(frozen.get(task.getStore()), task.getRow()), keyword)) {
+                result.set(docIds[i]);
+            }
+        }
+        return result;
+    }
+}
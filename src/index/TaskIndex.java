@@ -0,0 +1,477 @@
+package index;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import metrics.Gauge;
+import metrics.Metrics;
+import model.Task;
+import model.TaskChangeListener;
+import model.TaskField;
+import model.TaskList;
+import model.TaskStore;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the search and filter indexes for the task list up to date, and answers
+ * filter bar queries from them.
+ *
+ * attach() indexes the tasks already in the list and then follows the list:
+ * added and removed tasks are (un)indexed, and edits to a single task re-index
+ * just that task (reported by the task store, so without JavaFX properties).
+ * All methods must be called on the JavaFX thread, the same as the list itself.
+ *
+ * During a TaskList batch, due date moves are collected and applied together
+ * when the batch's change event arrives (see DueDateIndex.moveAll).
+ *
+ * Doc ids of removed tasks are not reused (the displayed list is kept in doc id
+ * order, which is the order tasks were added). Once more than half of them are
+ * empty, the index is rebuilt with the live tasks renumbered in the same order,
+ * so the bitmaps and the doc id array don't keep growing under add/remove churn;
+ * that is O(live tasks) once every so many removals. Plans prepared before a
+ * renumbering are no longer {@link #isCurrent}.
+ */
+public class TaskIndex {
+
+    // publish() edits the displayed list row by row up to this many changes, otherwise uses setAll
+    private static final int MAX_INCREMENTAL_CHANGES = 256;
+
+    // Renumber once this many doc ids are empty and they are more than half of all ids
+    private static final int MIN_COMPACT_IDS = 1024;
+
+    private static final Gauge indexBytes = Metrics.gauge("index.bytes");
+    private static final Gauge trigramCount = Metrics.gauge("index.trigrams");
+
+    // Replaced all together by compactDocIds()
+    private DocIdMap docs = new DocIdMap();
+    private TrigramIndex trigrams = new TrigramIndex();
+    private BitmapIndex categories = new BitmapIndex(false);
+    private BitmapIndex priorities = new BitmapIndex(true);
+    private DueDateIndex dueDates = new DueDateIndex();
+    private BitSet completed = new BitSet();
+    private BitSet deleted = new BitSet();
+    private BitSet indexed = new BitSet();
+    private long docIdGeneration; // Bumped by compactDocIds()
+
+    // One listener for every task, registered on the task stores (no JavaFX properties needed)
+    private final TaskChangeListener changeListener = this::taskChanged;
+
+    private ObservableList<Task> tasks;
+
+    // Due date moves put off until the current batch ends: doc id and the date before the batch
+    private final BitSet pendingDue = new BitSet();
+    private int[] pendingDocIds = new int[16];
+    private LocalDate[] pendingOldDates = new LocalDate[16];
+    private int pendingCount;
+
+    /**
+     * Indexes every task in the list and keeps following its changes.
+     */
+    public void attach(ObservableList<Task> tasks) {
+        this.tasks = tasks;
+        for (Task task : tasks) {
+            addTask(task);
+        }
+        tasks.addListener((ListChangeListener.Change<? extends Task> c) -> {
+            flushDueMoves(); // A batch just ended
+            // Look at the whole change first: a batch may remove a task in one place and add it in another
+            Set<Task> added = Collections.newSetFromMap(new IdentityHashMap<>());
+            List<Task> removed = new ArrayList<>();
+            while (c.next()) {
+                if (c.wasPermutated() || c.wasUpdated()) {
+                    continue; // Same tasks; field edits arrive through the property listeners
+                }
+                added.addAll(c.getAddedSubList());
+                removed.addAll(c.getRemoved());
+            }
+            // list.set(i, sameTask) removes and re-adds the same task: keep its id
+            removed.removeIf(added::contains);
+            if (removed.size() > MAX_INCREMENTAL_CHANGES) {
+                removeTasks(removed);
+            } else {
+                for (Task task : removed) {
+                    removeTask(task);
+                }
+            }
+            for (Task task : added) {
+                addTask(task);
+            }
+            int emptyIds = docs.upperBound() - docs.size();
+            if (emptyIds >= MIN_COMPACT_IDS && emptyIds > docs.size()) {
+                compactDocIds();
+            }
+        });
+    }
+
+    /**
+     * Rebuilds the index with the live tasks numbered 0, 1, 2, ... in their
+     * current doc id order, dropping the empty ids removals left behind.
+     */
+    private void compactDocIds() {
+        DocIdMap old = docs;
+        int upper = old.upperBound();
+        docs = new DocIdMap();
+        trigrams = new TrigramIndex();
+        categories = new BitmapIndex(false);
+        priorities = new BitmapIndex(true);
+        dueDates = new DueDateIndex();
+        completed = new BitSet();
+        deleted = new BitSet();
+        indexed = new BitSet();
+        docIdGeneration++;
+        for (int docId = 0; docId < upper; docId++) {
+            Task task = old.taskOf(docId);
+            if (task != null) {
+                addTask(task);
+            }
+        }
+    }
+
+    /**
+     * False if the doc ids of the plan have been renumbered since it was made,
+     * so its result no longer means the same tasks.
+     */
+    public boolean isCurrent(QueryPlan plan) {
+        return plan.getDocIdGeneration() == docIdGeneration;
+    }
+
+    /**
+     * Returns the doc ids of the tasks matching the query, all on the calling thread.
+     */
+    public BitSet query(TaskQuery query) {
+        return prepare(query).evaluate(() -> false);
+    }
+
+    /**
+     * Does the index part of a query. Category, priority and status are word-level
+     * ANDs of bitsets, due dates come from the sorted date index, and the keyword is
+     * narrowed down with the trigram postings. The returned plan checks the keyword
+     * on what is left one by one, and can do that on a background thread.
+     */
+    public QueryPlan prepare(TaskQuery query) {
+        flushDueMoves();
+
+        // 1. Start from every indexed task in (or out of) the trash and AND in the bitmap filters
+        BitSet result = (BitSet) indexed.clone();
+        if (query.isTrash()) {
+            result.and(deleted);
+        } else {
+            result.andNot(deleted);
+        }
+        if (query.getCategory() != null) {
+            result.and(categories.get(query.getCategory()));
+        }
+        if (query.getPriority() != null) {
+            result.and(priorities.get(query.getPriority()));
+        }
+        if (query.getCompleted() != null) {
+            if (query.getCompleted()) {
+                result.and(completed);
+            } else {
+                result.andNot(completed);
+            }
+        }
+
+        // 2. Due dates: an exact day and/or a range, each a lookup in the sorted date index
+        if (query.getDueDate() != null) {
+            result.and(dueDates.on(query.getDueDate()));
+        }
+        if (query.hasDueRange()) {
+            result.and(dueDates.range(query.getDueFrom(), query.getDueTo()));
+        }
+
+        // 3. Narrow down by keyword using the trigram posting lists
+        String keyword = query.getKeyword();
+        if (keyword != null) {
+            BitSet candidates = trigrams.candidates(keyword);
+            if (candidates != null) {
+                result.and(candidates);
+            }
+        }
+
+        // 4. The trigram false positives are dropped by the plan, which gets just the candidates
+        if (keyword == null) {
+            return new QueryPlan(result, null, null, null, null, docIdGeneration);
+        }
+        int[] docIds = new int[result.cardinality()];
+        Task[] candidates = new Task[docIds.length];
+        int count = 0;
+        for (int docId = result.nextSetBit(0); docId >= 0; docId = result.nextSetBit(docId + 1)) {
+            docIds[count] = docId;
+            candidates[count++] = docs.taskOf(docId); // Indexed, so never null
+        }
+        return new QueryPlan(result, docIds, candidates, freezeStores(candidates), keyword, docIdGeneration);
+    }
+
+    /**
+     * Freezes the stores the given tasks live in, so a plan can read the tasks as
+     * they are now while the live ones keep changing.
+     */
+    private static Map<TaskStore, TaskStore> freezeStores(Task[] tasks) {
+        Map<TaskStore, TaskStore> frozen = new IdentityHashMap<>();
+        TaskStore lastStore = null;
+        for (Task task : tasks) {
+            if (task.getStore() != lastStore) {
+                lastStore = task.getStore();
+                frozen.computeIfAbsent(lastStore, TaskStore::freeze);
+            }
+        }
+        return frozen;
+    }
+
+    /**
+     * Makes {@code displayed} hold exactly the matching tasks, in doc id order.
+     * Both lists are sorted by doc id, so this is one merge pass that only touches
+     * the rows that actually changed (so selection and scroll position survive a
+     * checkbox click); a big change is done as one setAll.
+     * Ids of tasks removed since the query ran are skipped.
+     */
+    public void publish(BitSet matches, ObservableList<Task> displayed) {
+        List<Task> result = new ArrayList<>(matches.cardinality());
+        for (int docId = matches.nextSetBit(0); docId >= 0; docId = matches.nextSetBit(docId + 1)) {
+            Task task = docs.taskOf(docId);
+            if (task != null) {
+                result.add(task);
+            }
+        }
+
+        // 1. Count the differences first; if most rows change, replace everything at once
+        int kept = 0;
+        for (Task task : displayed) {
+            int docId = docs.idOf(task);
+            if (docId >= 0 && matches.get(docId)) {
+                kept++;
+            }
+        }
+        int changes = (displayed.size() - kept) + (result.size() - kept);
+        if (changes > MAX_INCREMENTAL_CHANGES) {
+            displayed.setAll(result);
+            return;
+        }
+
+        // 2. Otherwise merge: remove rows that no longer match, insert the new ones
+        int i = 0;
+        for (Task task : result) {
+            int docId = docs.idOf(task);
+            while (i < displayed.size()) {
+                int shownId = docs.idOf(displayed.get(i));
+                if (shownId >= 0 && shownId >= docId) {
+                    break;
+                }
+                displayed.remove(i); // No longer indexed, or no longer matching
+            }
+            if (i < displayed.size() && displayed.get(i) == task) {
+                i++;
+            } else {
+                displayed.add(i++, task);
+            }
+        }
+        if (i < displayed.size()) {
+            displayed.remove(i, displayed.size());
+        }
+    }
+
+    /**
+     * The tasks in the trash that were deleted before the given day. Only the
+     * deleted bitmap is walked, so the live tasks are never looked at.
+     */
+    public List<Task> deletedBefore(LocalDate day) {
+        List<Task> found = new ArrayList<>();
+        for (int docId = deleted.nextSetBit(0); docId >= 0; docId = deleted.nextSetBit(docId + 1)) {
+            Task task = docs.taskOf(docId);
+            LocalDate deletedOn = task != null ? task.getDeletedOn() : null;
+            if (deletedOn != null && deletedOn.isBefore(day)) {
+                found.add(task);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Publishes the size of the index as the index.bytes and index.trigrams
+     * gauges (see metrics.Metrics). On the JavaFX thread, like every other change.
+     */
+    public void publishMemory() {
+        long bitmapBytes = categories.estimateBytes() + priorities.estimateBytes() + dueDates.estimateBytes()
+                + (completed.size() + deleted.size() + indexed.size()) / 8;
+        indexBytes.set(trigrams.estimateBytes() + docs.estimateBytes() + bitmapBytes);
+        trigramCount.set(trigrams.trigramCount());
+    }
+
+    private void addTask(Task task) {
+        if (docs.idOf(task) >= 0) {
+            return;
+        }
+        int docId = docs.assign(task);
+        indexed.set(docId);
+        trigrams.add(docId, task.getTitle(), task.getDescription());
+        categories.add(docId, task.getCategory());
+        priorities.add(docId, task.getPriority());
+        dueDates.add(docId, task.getDueDate());
+        completed.set(docId, task.isCompleted());
+        deleted.set(docId, task.isDeleted());
+        task.getStore().addChangeListener(changeListener); // No-op if already registered
+    }
+
+    private void removeTask(Task task) {
+        int docId = docs.release(task);
+        if (docId < 0) {
+            return;
+        }
+        indexed.clear(docId);
+        trigrams.remove(docId, task.getTitle(), task.getDescription());
+        categories.remove(docId, task.getCategory());
+        priorities.remove(docId, task.getPriority());
+        dueDates.remove(docId, task.getDueDate());
+        completed.clear(docId);
+        deleted.clear(docId);
+    }
+
+    /**
+     * Un-indexes many tasks at once (a bulk delete): the trigram posting lists
+     * and date buckets are each rewritten once instead of once per task.
+     */
+    private void removeTasks(List<Task> removed) {
+        // 1. Work in doc id order, so every posting list gets its removals sorted
+        int[] docIds = new int[removed.size()];
+        int count = 0;
+        for (Task task : removed) {
+            int docId = docs.idOf(task);
+            if (docId >= 0) {
+                docIds[count++] = docId;
+            }
+        }
+        Arrays.sort(docIds, 0, count);
+
+        // 2. Read what each task was indexed with, then forget it
+        String[] titles = new String[count];
+        String[] descriptions = new String[count];
+        LocalDate[] dates = new LocalDate[count];
+        for (int i = 0; i < count; i++) {
+            int docId = docIds[i];
+            Task task = docs.taskOf(docId);
+            titles[i] = task.getTitle();
+            descriptions[i] = task.getDescription();
+            dates[i] = task.getDueDate();
+            categories.remove(docId, task.getCategory());
+            priorities.remove(docId, task.getPriority());
+            docs.release(task);
+            indexed.clear(docId);
+            completed.clear(docId);
+            deleted.clear(docId);
+        }
+
+        // 3. The bulk part
+        trigrams.removeAll(docIds, titles, descriptions, count);
+        dueDates.moveAll(docIds, dates, new LocalDate[count], count); // Moving to "no date" removes them
+    }
+
+    /**
+     * Re-indexes just the changed field of one task. The store reports edits to
+     * all of its tasks, so tasks that are not indexed here are skipped.
+     */
+    private void taskChanged(Task task, TaskField field, Object oldValue) {
+        int docId = docs.idOf(task);
+        if (docId < 0) {
+            return;
+        }
+        switch (field) {
+            case TITLE: {
+                String description = task.getDescription();
+                trigrams.update(docId, (String) oldValue, description, task.getTitle(), description);
+                break;
+            }
+            case DESCRIPTION: {
+                String title = task.getTitle();
+                trigrams.update(docId, title, (String) oldValue, title, task.getDescription());
+                break;
+            }
+            case CATEGORY:
+                categories.move(docId, (String) oldValue, task.getCategory());
+                break;
+            case PRIORITY:
+                priorities.move(docId, (String) oldValue, task.getPriority());
+                break;
+            case DUE_DATE:
+                if (inBatch()) {
+                    deferDueMove(docId, (LocalDate) oldValue);
+                } else {
+                    dueDates.move(docId, (LocalDate) oldValue, task.getDueDate());
+                }
+                break;
+            case COMPLETED:
+                completed.set(docId, task.isCompleted());
+                break;
+            case DELETED:
+                deleted.set(docId, task.isDeleted());
+                break;
+        }
+    }
+
+    private boolean inBatch() {
+        return tasks instanceof TaskList && ((TaskList) tasks).isBatchOpen();
+    }
+
+    /**
+     * Remembers where in the date index a task is, the first time it moves in a batch.
+     */
+    private void deferDueMove(int docId, LocalDate oldDate) {
+        if (pendingDue.get(docId)) {
+            return; // Still filed under the date it had before the batch
+        }
+        pendingDue.set(docId);
+        if (pendingCount == pendingDocIds.length) {
+            pendingDocIds = Arrays.copyOf(pendingDocIds, pendingCount * 2);
+            pendingOldDates = Arrays.copyOf(pendingOldDates, pendingCount * 2);
+        }
+        pendingDocIds[pendingCount] = docId;
+        pendingOldDates[pendingCount] = oldDate;
+        pendingCount++;
+    }
+
+    /**
+     * Applies the due date moves collected during a batch, all in one go.
+     */
+    private void flushDueMoves() {
+        if (pendingCount == 0) {
+            return;
+        }
+        LocalDate[] newDates = new LocalDate[pendingCount];
+        for (int i = 0; i < pendingCount; i++) {
+            Task task = docs.taskOf(pendingDocIds[i]);
+            newDates[i] = task != null ? task.getDueDate() : null;
+        }
+        dueDates.moveAll(pendingDocIds, pendingOldDates, newDates, pendingCount);
+        pendingDue.clear();
+        Arrays.fill(pendingOldDates, 0, pendingCount, null);
+        pendingCount = 0;
+    }
+
+    /**
+     * Case-insensitive "contains" on title and description, without creating lowercase copies.
+     */
+    static boolean containsKeyword(Task task, String keyword) {
+        return containsIgnoreCase(task.getTitle(), keyword) || containsIgnoreCase(task.getDescription(), keyword);
+    }
+
+    private static boolean containsIgnoreCase(String text, String keyword) {
+        if (text == null) {
+            return false;
+        }
+        int last = text.length() - keyword.length();
+        for (int i = 0; i <= last; i++) {
+            if (text.regionMatches(true, i, keyword, 0, keyword.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,215 @@
+package index;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.Map;
+import model.Task;
+
+/**
+ * What the filter bar is asking for. A null field means "don't filter on this".
+ * Deleted tasks never match, unless the query is for the trash ({@link #inTrash}),
+ * which matches only deleted tasks.
+ */
+public class TaskQuery {
+
+    private final String keyword;
+    private final String category;
+    private final Boolean completed;
+    private final String priority;
+    private final LocalDate dueDate;
+    private final LocalDate dueFrom;
+    private final LocalDate dueTo;
+    private final boolean trash;
+
+    public TaskQuery(String keyword, String category, Boolean completed, String priority, LocalDate dueDate) {
+        this(keyword, category, completed, priority, dueDate, null, null, false);
+    }
+
+    private TaskQuery(String keyword, String category, Boolean completed, String priority,
+                      LocalDate dueDate, LocalDate dueFrom, LocalDate dueTo, boolean trash) {
+        this.keyword = keyword == null || keyword.isEmpty() ? null : keyword;
+        this.category = category;
+        this.completed = completed;
+        this.priority = priority;
+        this.dueDate = dueDate;
+        this.dueFrom = dueFrom;
+        this.dueTo = dueTo;
+        this.trash = trash;
+    }
+
+    /**
+     * The same query, but only for tasks due between the two days (inclusive; a null end is open).
+     */
+    public TaskQuery withDueRange(LocalDate from, LocalDate to) {
+        return new TaskQuery(keyword, category, completed, priority, dueDate, from, to, trash);
+    }
+
+    /**
+     * The filter bar as text parameters, the way the command line and the HTTP API
+     * take them: search, category, priority, status (completed, pending or all),
+     * due (yyyy-mm-dd), range (today, overdue, week, month or any) and trash
+     * (true or false). Missing or empty parameters don't filter.
+     *
+     * @throws IllegalArgumentException naming the parameter that has a bad value
+     */
+    public static TaskQuery fromParameters(Map<String, String> parameters, LocalDate today) {
+        Boolean completed = null;
+        String status = parameter(parameters, "status");
+        if (status != null) {
+            switch (status.toLowerCase(Locale.ROOT)) {
+                case "completed": completed = true; break;
+                case "pending": completed = false; break;
+                case "all": break;
+                default: throw new IllegalArgumentException("status must be completed, pending or all, not " + status);
+            }
+        }
+
+        LocalDate due = null;
+        String dueText = parameter(parameters, "due");
+        if (dueText != null) {
+            try {
+                due = LocalDate.parse(dueText);
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("due must be a date (yyyy-mm-dd), not " + dueText);
+            }
+        }
+
+        // The range box's entries, by shorter names
+        String range = parameter(parameters, "range");
+        String rangeLabel = null;
+        if (range != null) {
+            switch (range.toLowerCase(Locale.ROOT)) {
+                case "today": rangeLabel = "Today"; break;
+                case "overdue": rangeLabel = "Overdue"; break;
+                case "week": rangeLabel = "Next 7 Days"; break;
+                case "month": rangeLabel = "This Month"; break;
+                case "any": break;
+                default: throw new IllegalArgumentException("range must be today, overdue, week, month or any, not " + range);
+            }
+        }
+
+        TaskQuery query = new TaskQuery(parameter(parameters, "search"), parameter(parameters, "category"),
+                completed, parameter(parameters, "priority"), due);
+        if ("true".equalsIgnoreCase(parameter(parameters, "trash"))) {
+            query = query.inTrash();
+        }
+        return query.withRange(rangeLabel, today);
+    }
+
+    private static String parameter(Map<String, String> parameters, String name) {
+        String value = parameters.get(name);
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    /**
+     * The same query with one of the range box's due date ranges: "Today", "Overdue",
+     * "Next 7 Days" or "This Month", counted from {@code today}. Anything else
+     * (e.g. "Any Time" or null) adds no range.
+     */
+    public TaskQuery withRange(String range, LocalDate today) {
+        if (range == null) {
+            return this;
+        }
+        switch (range) {
+            case "Today":
+                return withDueRange(today, today);
+            case "Overdue":
+                return withDueRange(null, today.minusDays(1));
+            case "Next 7 Days":
+                return withDueRange(today, today.plusDays(6));
+            case "This Month":
+                return withDueRange(today.withDayOfMonth(1), today.withDayOfMonth(today.lengthOfMonth()));
+            default:
+                return this; // "Any Time"
+        }
+    }
+
+    /**
+     * The same query, but over the deleted tasks instead of the live ones.
+     */
+    public TaskQuery inTrash() {
+        return new TaskQuery(keyword, category, completed, priority, dueDate, dueFrom, dueTo, true);
+    }
+
+    public String getKeyword() { return keyword; }
+    public String getCategory() { return category; }
+    public Boolean getCompleted() { return completed; }
+    public String getPriority() { return priority; }
+    public LocalDate getDueDate() { return dueDate; }
+    public LocalDate getDueFrom() { return dueFrom; }
+    public LocalDate getDueTo() { return dueTo; }
+    public boolean isTrash() { return trash; }
+
+    /**
+     * The fields that are set, e.g. {@code keyword="report" category=Work completed=false}.
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        if (keyword != null) {
+            text.append(" keyword=\"").append(keyword).append('"');
+        }
+        if (category != null) {
+            text.append(" category=").append(category);
+        }
+        if (completed != null) {
+            text.append(" completed=").append(completed);
+        }
+        if (priority != null) {
+            text.append(" priority=").append(priority);
+        }
+        if (dueDate != null) {
+            text.append(" due=").append(dueDate);
+        }
+        if (hasDueRange()) {
+            text.append(" dueRange=").append(dueFrom).append("..").append(dueTo);
+        }
+        if (trash) {
+            text.append(" trash");
+        }
+        return text.length() == 0 ? "(everything)" : text.substring(1);
+    }
+
+    public boolean hasDueRange() {
+        return dueFrom != null || dueTo != null;
+    }
+
+    /**
+     * Checks one task directly, for tasks that are not in a TaskIndex (e.g. a paged file).
+     * Gives the same answer as the index: category exact, priority ignoring case.
+     */
+    public boolean matches(Task task) {
+        if (task.isDeleted() != trash) {
+            return false;
+        }
+        if (category != null && !category.equals(task.getCategory())) {
+            return false;
+        }
+        if (priority != null && !priority.equalsIgnoreCase(task.getPriority())) {
+            return false;
+        }
+        if (completed != null && completed != task.isCompleted()) {
+            return false;
+        }
+        LocalDate due = task.getDueDate();
+        if (dueDate != null && !dueDate.equals(due)) {
+            return false;
+        }
+        if (hasDueRange() && (due == null
+                || (dueFrom != null && due.isBefore(dueFrom))
+                || (dueTo != null && due.isAfter(dueTo)))) {
+            return false;
+        }
+        return keyword == null || TaskIndex.containsKeyword(task, keyword);
+    }
+
+    /**
+     * True when no filter field is set and the query is not for the trash:
+     * it lets every task through that is not deleted.
+     */
+    public boolean isEmpty() {
+        return !trash && keyword == null && category == null && completed == null && priority == null
+                && dueDate == null && !hasDueRange();
+    }
+}
@@ -0,0 +1,247 @@
+package index;
+
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerWrapper;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import metrics.LatencyHistogram;
+import metrics.Metrics;
+import metrics.SummaryRecountEvent;
+import model.Task;
+import model.TaskChangeListener;
+import model.TaskField;
+import model.TaskList;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The sidebar counters (total, completed, due today, overdue, upcoming, trash), kept
+ * up to date from the list changes and the property old/new values instead of
+ * being recounted over the whole list.
+ *
+ * Every task sits in exactly one bucket; deleted tasks sit in the trash bucket
+ * and are left out of all the other counts, including the total.
+ *
+ * A change moves one task from its old bucket to its new one, so it costs O(1)
+ * whatever the list size. The whole list is only recounted when the day changes
+ * (the date buckets depend on "today") or when the remembered bucket of a task
+ * doesn't match what it should have been (drift). All methods must be called on
+ * the JavaFX thread.
+ */
+public class TaskSummary {
+
+    private static final int COMPLETED = 0;
+    private static final int DUE_TODAY = 1;
+    private static final int OVERDUE = 2;
+    private static final int UPCOMING = 3; // Also pending tasks without a due date
+    private static final int TRASH = 4;
+    private static final int BUCKETS = 5;
+
+    private static final LatencyHistogram recountTime = Metrics.histogram("summary.recount");
+    // The usual path: one list change or one task edit moving tasks between buckets
+    private static final LatencyHistogram updateTime = Metrics.histogram("summary.update");
+
+    private final Map<Task, Integer> buckets = new IdentityHashMap<>();
+    private final int[] counts = new int[BUCKETS];
+    private ObservableList<Task> tasks;
+    private LocalDate today = LocalDate.now();
+    private int rescans;
+
+    private final ReadOnlyIntegerWrapper total = new ReadOnlyIntegerWrapper();
+    private final ReadOnlyIntegerWrapper completed = new ReadOnlyIntegerWrapper();
+    private final ReadOnlyIntegerWrapper dueToday = new ReadOnlyIntegerWrapper();
+    private final ReadOnlyIntegerWrapper overdue = new ReadOnlyIntegerWrapper();
+    private final ReadOnlyIntegerWrapper upcoming = new ReadOnlyIntegerWrapper();
+    private final ReadOnlyIntegerWrapper trash = new ReadOnlyIntegerWrapper();
+
+    // One listener for every task, registered on the task stores
+    private final TaskChangeListener changeListener = this::taskChanged;
+
+    /**
+     * Counts the tasks already in the list and keeps following its changes.
+     */
+    public void attach(ObservableList<Task> tasks) {
+        this.tasks = tasks;
+        for (Task task : tasks) {
+            addTask(task);
+        }
+        publish();
+        tasks.addListener((ListChangeListener.Change<? extends Task> c) -> {
+            long start = System.nanoTime();
+            while (c.next()) {
+                if (c.wasPermutated() || c.wasUpdated()) {
+                    continue; // Same tasks; edits arrive through the property listeners
+                }
+                // list.set(i, sameTask) removes and re-adds the same task: keep counting it
+                Set<Task> added = Collections.newSetFromMap(new IdentityHashMap<>());
+                added.addAll(c.getAddedSubList());
+                for (Task removed : c.getRemoved()) {
+                    if (!added.contains(removed) && !removeTask(removed)) {
+                        rescan(); // Removing a task we never counted: the counters can't be trusted
+                        return;
+                    }
+                }
+                for (Task task : added) {
+                    addTask(task);
+                }
+            }
+            if (buckets.size() != tasks.size()) {
+                rescan(); // Drift: we lost track of a task somewhere
+            } else {
+                refreshIfDayChanged();
+                publish();
+                updateTime.recordSince(start);
+            }
+        });
+    }
+
+    /**
+     * Recounts everything if the date has moved on since the last count.
+     * Call it now and then (e.g. when the window is shown); list changes also check it.
+     */
+    public void refreshIfDayChanged() {
+        if (!LocalDate.now().equals(today)) {
+            rescan();
+        }
+    }
+
+    /**
+     * Recounts the whole list now, the same work as a day change (used by the benchmarks).
+     */
+    public void recount() {
+        rescan();
+    }
+
+    public ReadOnlyIntegerProperty totalProperty() { return total.getReadOnlyProperty(); }
+    public ReadOnlyIntegerProperty completedProperty() { return completed.getReadOnlyProperty(); }
+    public ReadOnlyIntegerProperty dueTodayProperty() { return dueToday.getReadOnlyProperty(); }
+    public ReadOnlyIntegerProperty overdueProperty() { return overdue.getReadOnlyProperty(); }
+    public ReadOnlyIntegerProperty upcomingProperty() { return upcoming.getReadOnlyProperty(); }
+    public ReadOnlyIntegerProperty trashProperty() { return trash.getReadOnlyProperty(); }
+
+    /**
+     * How many full recounts have happened (day changes and drift), for the console.
+     */
+    public int getRescanCount() {
+        return rescans;
+    }
+
+    private void addTask(Task task) {
+        if (buckets.containsKey(task)) {
+            return;
+        }
+        int bucket = bucketOf(task.isDeleted(), task.isCompleted(), task.getDueDate());
+        buckets.put(task, bucket);
+        counts[bucket]++;
+        task.getStore().addChangeListener(changeListener); // No-op if already registered
+    }
+
+    /**
+     * Returns false if the task was never counted.
+     */
+    private boolean removeTask(Task task) {
+        Integer bucket = buckets.remove(task);
+        if (bucket == null) {
+            return false;
+        }
+        counts[bucket]--;
+        return true;
+    }
+
+    private void taskChanged(Task task, TaskField field, Object oldValue) {
+        long start = System.nanoTime();
+        if (field == TaskField.COMPLETED) {
+            move(task, bucketOf(task.isDeleted(), (Boolean) oldValue, task.getDueDate()));
+        } else if (field == TaskField.DUE_DATE) {
+            move(task, bucketOf(task.isDeleted(), task.isCompleted(), (LocalDate) oldValue));
+        } else if (field == TaskField.DELETED) {
+            move(task, bucketOf((Boolean) oldValue, task.isCompleted(), task.getDueDate()));
+        } else {
+            return; // Title, category and so on don't change the counters
+        }
+        if (!inBatch()) {
+            updateTime.recordSince(start); // In a batch, the batch's list change is timed instead
+        }
+    }
+
+    /**
+     * Moves a task from the bucket it was in before the edit to the one it is in now.
+     */
+    private void move(Task task, int expectedOldBucket) {
+        Integer oldBucket = buckets.get(task);
+        if (oldBucket == null) {
+            return; // Not in our list (the store reports edits to all of its tasks)
+        }
+        if (oldBucket != expectedOldBucket) {
+            rescan(); // Drift: our idea of this task's bucket was already wrong
+            return;
+        }
+        int newBucket = bucketOf(task.isDeleted(), task.isCompleted(), task.getDueDate());
+        if (newBucket != oldBucket) {
+            buckets.put(task, newBucket);
+            counts[oldBucket]--;
+            counts[newBucket]++;
+            if (!inBatch()) {
+                publish();
+            }
+        }
+    }
+
+    /**
+     * Inside a TaskList batch the counters are published once, when the batch's
+     * list change arrives.
+     */
+    private boolean inBatch() {
+        return tasks instanceof TaskList && ((TaskList) tasks).isBatchOpen();
+    }
+
+    private int bucketOf(boolean isDeleted, boolean isCompleted, LocalDate dueDate) {
+        if (isDeleted) {
+            return TRASH;
+        }
+        if (isCompleted) {
+            return COMPLETED;
+        }
+        if (dueDate == null) {
+            return UPCOMING;
+        }
+        if (dueDate.isEqual(today)) {
+            return DUE_TODAY;
+        }
+        return dueDate.isBefore(today) ? OVERDUE : UPCOMING;
+    }
+
+    /**
+     * The slow path: forget everything and recount the whole list from scratch.
+     */
+    private void rescan() {
+        long start = System.nanoTime();
+        SummaryRecountEvent event = new SummaryRecountEvent();
+        event.begin();
+        rescans++;
+        today = LocalDate.now();
+        buckets.clear();
+        Arrays.fill(counts, 0);
+        for (Task task : tasks) {
+            addTask(task);
+        }
+        publish();
+        recountTime.recordSince(start);
+        event.tasks = tasks.size();
+        event.commit();
+    }
+
+    private void publish() {
+        total.set(buckets.size() - counts[TRASH]);
+        completed.set(counts[COMPLETED]);
+        dueToday.set(counts[DUE_TODAY]);
+        overdue.set(counts[OVERDUE]);
+        upcoming.set(counts[UPCOMING]);
+        trash.set(counts[TRASH]);
+    }
+}
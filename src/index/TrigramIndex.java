@@ -0,0 +1,243 @@
+package index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Inverted index from three-character sequences ("trigrams") to the tasks whose
+ * title or description contains them.
+ *
+ * Every substring of three or more characters is made of trigrams, so the tasks
+ * that contain a keyword are among the tasks that have ALL of its trigrams. That
+ * candidate set is found by intersecting a few short posting lists instead of
+ * scanning every task. Matching is case-insensitive.
+ */
+public class TrigramIndex {
+
+    public static final int GRAM = 3;
+
+    private final Map<Long, IntList> postings = new HashMap<>();
+
+    /**
+     * Indexes a new task.
+     */
+    public void add(int docId, String title, String description) {
+        addText(docId, title);
+        addText(docId, description);
+    }
+
+    /**
+     * Removes a task (pass the text it was indexed with).
+     */
+    public void remove(int docId, String title, String description) {
+        removeText(docId, title);
+        removeText(docId, description);
+    }
+
+    /**
+     * Removes many tasks at once, e.g. after a bulk delete. Pass them in ascending
+     * doc id order. Each affected posting list is rewritten once, instead of being
+     * shifted once per removed task.
+     *
+     * The (trigram, doc id) pairs leaving the index are grouped by trigram on
+     * plain arrays (a counting sort), not in a map of boxed keys and lists: a bulk
+     * delete of 100k tasks has millions of them.
+     */
+    public void removeAll(int[] docIds, String[] titles, String[] descriptions, int count) {
+        // 1. Number the distinct trigrams as they come, and count the pairs of each
+        int pairs = 0;
+        for (int i = 0; i < count; i++) {
+            pairs += gramCount(titles[i]) + gramCount(descriptions[i]);
+        }
+        LongIntMap numbers = new LongIntMap();  // Trigram + 1 -> its number (0 can't be a key)
+        long[] grams = new long[64];            // Number -> trigram
+        int[] sizes = new int[64];              // Number -> pairs with it
+        int[] gramOfPair = new int[pairs];
+        int distinct = 0;
+        int pair = 0;
+        for (int i = 0; i < count; i++) {
+            for (int field = 0; field < 2; field++) {
+                String text = field == 0 ? titles[i] : descriptions[i];
+                for (int c = 0; c < gramCount(text); c++) {
+                    long gram = gramAt(text, c);
+                    int number = numbers.get(gram + 1);
+                    if (number < 0) {
+                        number = distinct++;
+                        numbers.put(gram + 1, number);
+                        if (number == grams.length) {
+                            grams = Arrays.copyOf(grams, number * 2);
+                            sizes = Arrays.copyOf(sizes, number * 2);
+                        }
+                        grams[number] = gram;
+                    }
+                    sizes[number]++;
+                    gramOfPair[pair++] = number;
+                }
+            }
+        }
+
+        // 2. Lay the doc ids out trigram by trigram; the input order keeps each run sorted
+        int[] starts = new int[distinct + 1];
+        for (int g = 0; g < distinct; g++) {
+            starts[g + 1] = starts[g] + sizes[g];
+        }
+        int[] next = Arrays.copyOf(starts, distinct);
+        int[] leaving = new int[pairs];
+        pair = 0;
+        for (int i = 0; i < count; i++) {
+            int textPairs = gramCount(titles[i]) + gramCount(descriptions[i]);
+            for (int p = 0; p < textPairs; p++) {
+                leaving[next[gramOfPair[pair++]]++] = docIds[i];
+            }
+        }
+
+        // 3. One pass per posting list
+        for (int g = 0; g < distinct; g++) {
+            IntList list = postings.get(grams[g]);
+            if (list == null) {
+                continue;
+            }
+            list.removeAllSorted(leaving, starts[g], starts[g + 1]);
+            if (list.isEmpty()) {
+                postings.remove(grams[g]);
+            }
+        }
+    }
+
+    private static int gramCount(String text) {
+        return text == null ? 0 : Math.max(0, text.length() - GRAM + 1);
+    }
+
+    /**
+     * Re-indexes a task whose text changed, touching only the trigrams that differ.
+     */
+    public void update(int docId, String oldTitle, String oldDescription, String newTitle, String newDescription) {
+        Set<Long> before = trigramsOf(oldTitle, oldDescription);
+        Set<Long> after = trigramsOf(newTitle, newDescription);
+        for (long gram : before) {
+            if (!after.contains(gram)) {
+                removePosting(gram, docId);
+            }
+        }
+        for (long gram : after) {
+            if (!before.contains(gram)) {
+                postings.computeIfAbsent(gram, g -> new IntList(2)).add(docId);
+            }
+        }
+    }
+
+    /**
+     * Returns the ids of the tasks that contain every trigram of the keyword. This is
+     * a superset of the real matches (the trigrams may be in a different order), so
+     * callers still check the text of each candidate. Returns null if the keyword is
+     * too short to be answered from the index.
+     */
+    public BitSet candidates(String keyword) {
+        if (keyword.length() < GRAM) {
+            return null;
+        }
+
+        // 1. Look up the posting list of each trigram; a missing one means no matches
+        List<IntList> lists = new ArrayList<>();
+        for (long gram : trigramsOf(keyword, null)) {
+            IntList list = postings.get(gram);
+            if (list == null) {
+                return new BitSet();
+            }
+            lists.add(list);
+        }
+
+        // 2. Walk the shortest list and keep ids that are in all the others
+        lists.sort(Comparator.comparingInt(IntList::size));
+        IntList shortest = lists.get(0);
+        BitSet result = new BitSet();
+        for (int i = 0; i < shortest.size(); i++) {
+            int docId = shortest.get(i);
+            boolean inAll = true;
+            for (int l = 1; l < lists.size() && inAll; l++) {
+                inAll = lists.get(l).contains(docId);
+            }
+            if (inAll) {
+                result.set(docId);
+            }
+        }
+        return result;
+    }
+
+    public int trigramCount() {
+        return postings.size();
+    }
+
+    /**
+     * Approximate heap used by the index, in bytes.
+     */
+    public long estimateBytes() {
+        // Per entry: HashMap node (32) + boxed Long key (16) + table slot (4)
+        long bytes = 16 + 4L * postings.size() * 2;
+        for (IntList list : postings.values()) {
+            bytes += 32 + 16 + list.estimateBytes();
+        }
+        return bytes;
+    }
+
+    // add/remove don't need a trigram set: adding an id twice or removing it twice is a no-op
+
+    private void addText(int docId, String text) {
+        if (text == null) {
+            return;
+        }
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            postings.computeIfAbsent(gramAt(text, i), g -> new IntList(2)).add(docId);
+        }
+    }
+
+    private void removeText(int docId, String text) {
+        if (text == null) {
+            return;
+        }
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            removePosting(gramAt(text, i), docId);
+        }
+    }
+
+    private void removePosting(long gram, int docId) {
+        IntList list = postings.get(gram);
+        if (list != null && list.remove(docId) && list.isEmpty()) {
+            postings.remove(gram);
+        }
+    }
+
+    private static Set<Long> trigramsOf(String first, String second) {
+        Set<Long> grams = new HashSet<>();
+        collect(first, grams);
+        collect(second, grams);
+        return grams;
+    }
+
+    private static void collect(String text, Set<Long> grams) {
+        if (text == null) {
+            return;
+        }
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(gramAt(text, i));
+        }
+    }
+
+    /**
+     * Packs the lowercased characters at i, i+1, i+2 into one number.
+     */
+    private static long gramAt(String text, int i) {
+        long gram = 0;
+        for (int j = 0; j < GRAM; j++) {
+            gram = (gram << 16) | Character.toLowerCase(text.charAt(i + j));
+        }
+        return gram;
+    }
+}
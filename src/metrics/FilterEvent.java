@@ -0,0 +1,28 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for one filter bar query, from starting it to showing its result.
+ */
+@Name("todo.Filter")
+@Label("Filter")
+@Category({"Smart To-Do List", "Filtering"})
+@Description("Evaluating the filter bar's query and publishing the matching tasks")
+@StackTrace(false)
+public class FilterEvent extends jdk.jfr.Event {
+
+    @Label("Query")
+    public String query;
+
+    @Label("Candidates")
+    @Description("Tasks left after the index, before the per-task check")
+    public int candidates;
+
+    @Label("Matches")
+    public int matches;
+}
@@ -0,0 +1,54 @@
+package metrics;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+/**
+ * Starts a flight recording with the app, for "it froze" reports: run with
+ * -Dtodo.jfr.file=todo.jfr and the recording (JDK events such as GC, I/O and
+ * locks, plus this app's own events) is written to that file when the app
+ * exits. Open it in JDK Mission Control. -Dtodo.jfr.settings picks the JDK
+ * settings ("default", or "profile" for more detail), and
+ * -Dtodo.jfr.maxAgeMinutes keeps only the last minutes (default: everything).
+ *
+ * The app's events cost next to nothing while no recording is running, so
+ * they are always compiled in; a recording started any other way
+ * (-XX:StartFlightRecording, jcmd JFR.start) includes them too.
+ */
+public class FlightRecording {
+
+    private static final String FILE = System.getProperty("todo.jfr.file");
+    private static final String SETTINGS = System.getProperty("todo.jfr.settings", "default");
+    private static final long MAX_AGE_MINUTES = Long.getLong("todo.jfr.maxAgeMinutes", 0);
+
+    /**
+     * Starts the recording if a file was given. Call it first thing in main.
+     */
+    public static void startIfRequested() {
+        if (FILE == null) {
+            return;
+        }
+        try {
+            Recording recording = new Recording(Configuration.getConfiguration(SETTINGS));
+            recording.setName("Smart To-Do List");
+            recording.enable(TaskLoadEvent.class);
+            recording.enable(TaskSaveEvent.class);
+            recording.enable(FilterEvent.class);
+            recording.enable(SummaryRecountEvent.class);
+            recording.enable(UiHandlerEvent.class);
+            if (MAX_AGE_MINUTES > 0) {
+                recording.setMaxAge(Duration.ofMinutes(MAX_AGE_MINUTES));
+            }
+            recording.setDestination(Path.of(FILE));
+            recording.setDumpOnExit(true);
+            recording.start();
+            System.out.println("Flight recording to " + FILE + " (written on exit)");
+        } catch (IOException | ParseException e) {
+            System.err.println("Could not start the flight recording: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javafx.animation.AnimationTimer;
+
+/**
+ * Watches the JavaFX thread for stalls: times from one pulse (frame) to the
+ * next, and when the thread has not pulsed for longer than the stall threshold,
+ * samples its stack until it comes back. Each stall is then blamed on the
+ * @FXML handler that was running (see {@link UiHandlerEvent#running}) and the
+ * topmost frame of the app's own code in the samples, which catches listeners
+ * and Platform.runLater jobs too.
+ *
+ * Stalls go to the console and, with their stack, to a log file; every
+ * interval the log also gets a summary of the frame times (percentiles, frames
+ * over budget) and the worst offenders. The log rolls over to a ".1" file
+ * when it gets too big.
+ *
+ * Off unless asked for with -Dtodo.fx.watchdog=true: the pulse callback keeps
+ * JavaFX drawing a frame on every pulse even when nothing changed, which costs
+ * CPU an idle window would not use, so it is meant for hunting stalls rather
+ * than for every run. Settings: -Dtodo.fx.stallThresholdMs
+ * (default 200), -Dtodo.fx.frameBudgetMs (25), -Dtodo.fx.stallLog (fx-stalls.log),
+ * -Dtodo.fx.stallLogIntervalSeconds (60), -Dtodo.fx.stallLogMaxBytes (1 MB).
+ */
+public class FxStallWatchdog {
+
+    private static final boolean ENABLED = Boolean.getBoolean("todo.fx.watchdog");
+    private static final long THRESHOLD_NANOS = Long.getLong("todo.fx.stallThresholdMs", 200) * 1_000_000;
+    private static final long BUDGET_NANOS = Long.getLong("todo.fx.frameBudgetMs", 25) * 1_000_000;
+    private static final Path LOG_FILE = Path.of(System.getProperty("todo.fx.stallLog", "fx-stalls.log"));
+    private static final long LOG_INTERVAL_SECONDS = Long.getLong("todo.fx.stallLogIntervalSeconds", 60);
+    private static final long LOG_MAX_BYTES = Long.getLong("todo.fx.stallLogMaxBytes", 1L << 20);
+
+    private static final int MAX_SAMPLES = 50;
+    private static final int STACK_LINES = 15;
+    private static final int TOP_OFFENDERS = 5;
+
+    private static final LatencyHistogram frameTimes = Metrics.histogram("fx.frame");
+    private static final LatencyHistogram stallTimes = Metrics.histogram("fx.stall");
+    private static final Counter framesOverBudget = Metrics.counter("fx.frame.overBudget");
+
+    // --- Written on the JavaFX thread ---
+    private volatile long lastPulse;
+    private volatile LatencyHistogram windowFrames = new LatencyHistogram(); // Frame times since the last summary
+    private final ConcurrentLinkedQueue<Long> endedStalls = new ConcurrentLinkedQueue<>();
+    private Thread fxThread;
+
+    // --- Watchdog thread only ---
+    private final List<StackTraceElement[]> samples = new ArrayList<>();
+    private String handlerAtStall;
+    private final Map<String, long[]> windowOffenders = new HashMap<>(); // Blame -> {stalls, total nanos}
+    private long windowOverBudget;
+    private long windowStart = System.nanoTime();
+
+    private static FxStallWatchdog instance;
+
+    private FxStallWatchdog() {
+    }
+
+    /**
+     * Starts watching if -Dtodo.fx.watchdog=true. Must be called on the JavaFX thread.
+     */
+    public static synchronized void startIfEnabled() {
+        if (!ENABLED || instance != null) {
+            return;
+        }
+        instance = new FxStallWatchdog();
+        instance.start();
+    }
+
+    private void start() {
+        fxThread = Thread.currentThread();
+        lastPulse = System.nanoTime();
+
+        // 1. A callback on every pulse times the frames
+        new AnimationTimer() {
+            @Override
+            public void handle(long pulseTime) {
+                pulse();
+            }
+        }.start();
+
+        // 2. The watchdog looks at the JavaFX thread several times per threshold
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fx-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long checkNanos = Math.max(THRESHOLD_NANOS / 4, 5_000_000);
+        timer.scheduleAtFixedRate(this::check, checkNanos, checkNanos, TimeUnit.NANOSECONDS);
+        timer.scheduleAtFixedRate(this::writeSummary, LOG_INTERVAL_SECONDS, LOG_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        System.out.println("Watching the JavaFX thread for stalls over " + THRESHOLD_NANOS / 1_000_000
+                + " ms (log: " + LOG_FILE + ")");
+    }
+
+    private void pulse() {
+        long now = System.nanoTime();
+        long frame = now - lastPulse;
+        lastPulse = now;
+        frameTimes.recordNanos(frame);
+        windowFrames.recordNanos(frame);
+        if (frame > BUDGET_NANOS) {
+            framesOverBudget.increment();
+        }
+        if (frame >= THRESHOLD_NANOS) {
+            endedStalls.add(frame); // The watchdog has the samples: it writes the report
+        }
+    }
+
+    // --- The watchdog thread ---
+
+    private void check() {
+        try {
+            // 1. Report the stalls that have ended, with the samples taken while they lasted
+            Long ended;
+            while ((ended = endedStalls.poll()) != null) {
+                report(ended);
+            }
+
+            // 2. Stuck right now: take a sample of where
+            if (System.nanoTime() - lastPulse >= THRESHOLD_NANOS && samples.size() < MAX_SAMPLES) {
+                if (samples.isEmpty()) {
+                    handlerAtStall = UiHandlerEvent.running();
+                }
+                samples.add(fxThread.getStackTrace());
+            }
+        } catch (RuntimeException e) {
+            System.err.println("FX watchdog check failed: " + e); // Keep the timer alive
+        }
+    }
+
+    private void report(long stallNanos) {
+        stallTimes.recordNanos(stallNanos);
+
+        // 1. Blame: the handler, plus the app frame seen most often in the samples
+        Map<String, Integer> frameCounts = new HashMap<>();
+        StackTraceElement[] worstSample = null;
+        String topFrame = null;
+        for (StackTraceElement[] sample : samples) {
+            StackTraceElement frame = topAppFrame(sample);
+            String key = frame == null ? "(JavaFX or JDK code)" : frame.getClassName() + "." + frame.getMethodName();
+            int count = frameCounts.merge(key, 1, Integer::sum);
+            if (topFrame == null || count > frameCounts.get(topFrame)) {
+                topFrame = key;
+                worstSample = sample;
+            }
+        }
+        if (topFrame == null) {
+            topFrame = "(ended before it could be sampled)";
+        }
+        String blame = handlerAtStall != null ? handlerAtStall + " > " + topFrame : topFrame;
+        long[] offender = windowOffenders.computeIfAbsent(blame, key -> new long[2]);
+        offender[0]++;
+        offender[1] += stallNanos;
+
+        // 2. Console and log
+        String line = "JavaFX thread stalled " + stallNanos / 1_000_000 + " ms in " + blame
+                + " (" + samples.size() + " samples)";
+        System.err.println(line);
+        StringBuilder entry = new StringBuilder(timestamp()).append(" STALL ").append(line);
+        if (worstSample != null) {
+            for (int i = 0; i < Math.min(STACK_LINES, worstSample.length); i++) {
+                entry.append(System.lineSeparator()).append("    at ").append(worstSample[i]);
+            }
+        }
+        appendToLog(entry.toString());
+
+        samples.clear();
+        handlerAtStall = null;
+    }
+
+    /**
+     * The first frame (from the top) that is neither JDK nor JavaFX code, nor this watchdog's.
+     */
+    private static StackTraceElement topAppFrame(StackTraceElement[] stack) {
+        for (StackTraceElement frame : stack) {
+            String name = frame.getClassName();
+            if (!name.startsWith("java.") && !name.startsWith("javax.") && !name.startsWith("javafx.")
+                    && !name.startsWith("com.sun.") && !name.startsWith("jdk.") && !name.startsWith("sun.")
+                    && !name.startsWith("metrics.")) {
+                return frame;
+            }
+        }
+        return null;
+    }
+
+    private void writeSummary() {
+        try {
+            LatencyHistogram frames = windowFrames;
+            windowFrames = new LatencyHistogram();
+            long overBudget = framesOverBudget.get() - windowOverBudget;
+            windowOverBudget += overBudget;
+            long seconds = Math.round((System.nanoTime() - windowStart) / 1e9);
+            windowStart = System.nanoTime();
+            if (frames.getCount() == 0) {
+                return; // No pulses at all: nothing to say (a stall in progress is reported when it ends)
+            }
+
+            StringBuilder line = new StringBuilder(timestamp()).append(String.format(Locale.ROOT,
+                    " WINDOW %d s frames=%d p50=%.1f p90=%.1f p99=%.1f max=%.1f ms overBudget=%d (%.2f%%)",
+                    seconds, frames.getCount(), frames.getPercentileMillis(50), frames.getPercentileMillis(90),
+                    frames.getPercentileMillis(99), frames.getMaxMillis(),
+                    overBudget, 100.0 * overBudget / frames.getCount()));
+            line.append(" stalls=").append(windowOffenders.values().stream().mapToLong(o -> o[0]).sum());
+            windowOffenders.entrySet().stream()
+                    .sorted((a, b) -> Long.compare(b.getValue()[1], a.getValue()[1]))
+                    .limit(TOP_OFFENDERS)
+                    .forEach(o -> line.append(" | ").append(o.getKey()).append(' ')
+                            .append(o.getValue()[1] / 1_000_000).append(" ms x").append(o.getValue()[0]));
+            windowOffenders.clear();
+            appendToLog(line.toString());
+        } catch (RuntimeException e) {
+            System.err.println("FX watchdog summary failed: " + e);
+        }
+    }
+
+    private static void appendToLog(String text) {
+        try {
+            if (Files.exists(LOG_FILE) && Files.size(LOG_FILE) > LOG_MAX_BYTES) {
+                Files.move(LOG_FILE, LOG_FILE.resolveSibling(LOG_FILE.getFileName() + ".1"),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.writeString(LOG_FILE, text + System.lineSeparator(), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.err.println("Could not write to " + LOG_FILE + ": " + e.getMessage());
+        }
+    }
+
+    private static String timestamp() {
+        return LocalDateTime.now().withNano(0).format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+    }
+}
@@ -0,0 +1,25 @@
+package metrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * A value that goes up and down: either set by the code it describes (the size
+ * of the last save) or read from it when asked (the number of tasks in the list).
+ */
+public class Gauge {
+
+    private final LongSupplier source; // null for a gauge that is set
+    private volatile long value;
+
+    Gauge(LongSupplier source) {
+        this.source = source;
+    }
+
+    public void set(long value) {
+        this.value = value;
+    }
+
+    public long get() {
+        return source != null ? source.getAsLong() : value;
+    }
+}
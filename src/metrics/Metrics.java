@@ -0,0 +1,157 @@
+package metrics;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * The app's counters, gauges and latency histograms, by name ("save.duration").
+ * Code that wants to be measured asks for its metric once, keeps it in a field,
+ * and records into it; that is all a hot path pays.
+ *
+ * {@link #start} makes them readable from outside: as attributes of the MBean
+ * {@value #OBJECT_NAME} (open the app in JConsole or VisualVM to see them), and,
+ * with -Dtodo.metrics.logFile=path, as one line per interval appended to that
+ * file (-Dtodo.metrics.logIntervalSeconds, default 60).
+ */
+public class Metrics {
+
+    public static final String OBJECT_NAME = "todo:type=Metrics";
+
+    private static final String LOG_FILE = System.getProperty("todo.metrics.logFile");
+    private static final long LOG_INTERVAL_SECONDS = Long.getLong("todo.metrics.logIntervalSeconds", 60);
+
+    private static final Map<String, Object> metrics = new ConcurrentSkipListMap<>(); // Sorted by name
+    private static boolean started;
+
+    public static Counter counter(String name) {
+        return get(name, Counter.class);
+    }
+
+    /**
+     * A gauge the caller sets.
+     */
+    public static Gauge gauge(String name) {
+        return get(name, Gauge.class);
+    }
+
+    /**
+     * A gauge read from {@code source} whenever it is asked for (replaces an older one of the same name).
+     */
+    public static Gauge gauge(String name, LongSupplier source) {
+        Gauge gauge = new Gauge(source);
+        metrics.put(name, gauge);
+        return gauge;
+    }
+
+    public static LatencyHistogram histogram(String name) {
+        return get(name, LatencyHistogram.class);
+    }
+
+    private static <T> T get(String name, Class<T> type) {
+        Object metric = metrics.computeIfAbsent(name, key -> create(type));
+        if (!type.isInstance(metric)) {
+            throw new IllegalArgumentException("Metric " + name + " is a " + metric.getClass().getSimpleName()
+                    + ", not a " + type.getSimpleName());
+        }
+        return type.cast(metric);
+    }
+
+    private static Object create(Class<?> type) {
+        if (type == Counter.class) {
+            return new Counter();
+        }
+        if (type == Gauge.class) {
+            return new Gauge(null);
+        }
+        return new LatencyHistogram();
+    }
+
+    /**
+     * Every metric's current value(s), by name. A histogram shows up as its count,
+     * mean, 50th/90th/99th percentile and maximum, in milliseconds.
+     */
+    public static Map<String, Number> values() {
+        Map<String, Number> values = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+            String name = entry.getKey();
+            Object metric = entry.getValue();
+            if (metric instanceof Counter) {
+                values.put(name, ((Counter) metric).get());
+            } else if (metric instanceof Gauge) {
+                values.put(name, ((Gauge) metric).get());
+            } else {
+                LatencyHistogram histogram = (LatencyHistogram) metric;
+                values.put(name + ".count", histogram.getCount());
+                values.put(name + ".meanMs", histogram.getMeanMillis());
+                values.put(name + ".p50Ms", histogram.getPercentileMillis(50));
+                values.put(name + ".p90Ms", histogram.getPercentileMillis(90));
+                values.put(name + ".p99Ms", histogram.getPercentileMillis(99));
+                values.put(name + ".maxMs", histogram.getMaxMillis());
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Registers the MBean and, if a log file is configured, starts logging. Safe to call more than once.
+     */
+    public static synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+
+        // 1. JMX
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsBean(), new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            System.err.println("Could not register the metrics MBean: " + e.getMessage());
+        }
+
+        // 2. The log file
+        if (LOG_FILE == null) {
+            return;
+        }
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-log");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleAtFixedRate(Metrics::writeLogLine, LOG_INTERVAL_SECONDS, LOG_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        System.out.println("Writing metrics to " + LOG_FILE + " every " + LOG_INTERVAL_SECONDS + " s");
+    }
+
+    private static void writeLogLine() {
+        StringBuilder line = new StringBuilder(LocalDateTime.now().withNano(0).format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        for (Map.Entry<String, Number> value : values().entrySet()) {
+            line.append(' ').append(value.getKey()).append('=');
+            if (value.getValue() instanceof Double) {
+                line.append(String.format(Locale.ROOT, "%.3f", value.getValue().doubleValue()));
+            } else {
+                line.append(value.getValue());
+            }
+        }
+        try {
+            Files.writeString(Path.of(LOG_FILE), line.append(System.lineSeparator()), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.err.println("Could not write metrics to " + LOG_FILE + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package metrics;
+
+import java.util.Map;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ReflectionException;
+
+/**
+ * Shows every metric as a read-only MBean attribute. The list of attributes is
+ * built when asked for, so metrics created after start-up appear too.
+ */
+class MetricsBean implements DynamicMBean {
+
+    @Override
+    public Object getAttribute(String name) throws AttributeNotFoundException {
+        Number value = Metrics.values().get(name);
+        if (value == null) {
+            throw new AttributeNotFoundException("No metric named " + name);
+        }
+        return value;
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] names) {
+        Map<String, Number> values = Metrics.values();
+        AttributeList attributes = new AttributeList();
+        for (String name : names) {
+            if (values.containsKey(name)) {
+                attributes.add(new Attribute(name, values.get(name)));
+            }
+        }
+        return attributes;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList(); // Nothing set
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName), "No operations");
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        Map<String, Number> values = Metrics.values();
+        MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[values.size()];
+        int i = 0;
+        for (Map.Entry<String, Number> value : values.entrySet()) {
+            attributes[i++] = new MBeanAttributeInfo(value.getKey(), value.getValue().getClass().getName(),
+                    value.getKey(), true, false, false);
+        }
+        return new MBeanInfo(getClass().getName(), "Smart To-Do List metrics", attributes,
+                null, new MBeanOperationInfo[0], null);
+    }
+}
@@ -0,0 +1,21 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for a full recount of the summary counters.
+ */
+@Name("todo.SummaryRecount")
+@Label("Summary Recount")
+@Category({"Smart To-Do List", "Summary"})
+@Description("Recounting every task into the summary buckets (day change or drift)")
+@StackTrace(false)
+public class SummaryRecountEvent extends jdk.jfr.Event {
+
+    @Label("Tasks")
+    public int tasks;
+}
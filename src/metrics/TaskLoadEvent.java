@@ -0,0 +1,30 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for loading the task list: from opening the save file
+ * until the last task (and the journal) is in the list.
+ */
+@Name("todo.TaskLoad")
+@Label("Task Load")
+@Category({"Smart To-Do List", "Persistence"})
+@Description("Loading the task list from the save file and journal")
+@StackTrace(false)
+public class TaskLoadEvent extends jdk.jfr.Event {
+
+    @Label("Tasks")
+    public int tasks;
+
+    @Label("Bytes Read")
+    @DataAmount
+    public long bytes;
+
+    @Label("Format")
+    public String format;
+}
@@ -0,0 +1,32 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for writing the save file (on the persister thread).
+ */
+@Name("todo.TaskSave")
+@Label("Task Save")
+@Category({"Smart To-Do List", "Persistence"})
+@Description("Writing the whole task list to the save file")
+@StackTrace(false)
+public class TaskSaveEvent extends jdk.jfr.Event {
+
+    @Label("Tasks")
+    public int tasks;
+
+    @Label("Bytes Written")
+    @DataAmount
+    public long bytes;
+
+    @Label("Format")
+    public String format;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+}
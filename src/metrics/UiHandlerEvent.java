@@ -0,0 +1,129 @@
+package metrics;
+
+import javafx.beans.property.ObjectProperty;
+import javafx.event.ActionEvent;
+import javafx.event.EventHandler;
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.control.ButtonBase;
+import javafx.scene.control.ContextMenu;
+import javafx.scene.control.Control;
+import javafx.scene.control.Menu;
+import javafx.scene.control.MenuBar;
+import javafx.scene.control.MenuItem;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for one run of an @FXML handler, on the JavaFX thread.
+ * The handlers don't open it themselves: {@link #instrument} wraps the action
+ * handlers of a freshly loaded FXML view once, so every button and menu item
+ * records an event named after the controller and the control, e.g.
+ * "MainController.addTaskButton" (the fx:id, or the text without one).
+ * A handler that opens a modal dialog lasts until the dialog closes; the
+ * dialog's own handlers show up nested inside it.
+ *
+ * It also remembers which handler is running, recording or not, so the
+ * {@link FxStallWatchdog} can say whose fault a stall was.
+ */
+@Name("todo.UiHandler")
+@Label("UI Handler")
+@Category({"Smart To-Do List", "JavaFX"})
+@Description("An @FXML event handler running on the JavaFX thread")
+@StackTrace(false)
+public class UiHandlerEvent extends jdk.jfr.Event implements AutoCloseable {
+
+    // The innermost handler running on the JavaFX thread right now (null if none)
+    private static volatile String running;
+
+    @Label("Handler")
+    public String handler;
+
+    private transient String outer; // Transient: not part of the recorded event
+
+    public static UiHandlerEvent begin(String handler) {
+        UiHandlerEvent event = new UiHandlerEvent();
+        event.handler = handler;
+        event.outer = running;
+        running = handler;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Wraps the onAction handlers of the buttons and menu items (context menus
+     * included) of the view {@code loader} just loaded, so each run of one is
+     * recorded. Call it right after {@code load()}, on the JavaFX thread.
+     */
+    public static void instrument(FXMLLoader loader) {
+        Object controller = loader.getController();
+        String owner = controller == null ? "" : controller.getClass().getSimpleName() + ".";
+        instrument(loader.<Node>getRoot(), owner);
+    }
+
+    private static void instrument(Node node, String owner) {
+        if (node instanceof ButtonBase) {
+            ButtonBase button = (ButtonBase) node;
+            wrap(button.onActionProperty(), owner + (button.getId() != null ? button.getId() : button.getText()));
+        }
+        if (node instanceof MenuBar) {
+            for (Menu menu : ((MenuBar) node).getMenus()) {
+                instrument(menu, owner);
+            }
+        }
+        if (node instanceof Control) {
+            ContextMenu contextMenu = ((Control) node).getContextMenu();
+            if (contextMenu != null) {
+                for (MenuItem item : contextMenu.getItems()) {
+                    instrument(item, owner);
+                }
+            }
+        }
+        if (node instanceof Parent) {
+            for (Node child : ((Parent) node).getChildrenUnmodifiable()) {
+                instrument(child, owner);
+            }
+        }
+    }
+
+    private static void instrument(MenuItem item, String owner) {
+        wrap(item.onActionProperty(), owner + (item.getId() != null ? item.getId() : item.getText()));
+        if (item instanceof Menu) {
+            for (MenuItem child : ((Menu) item).getItems()) {
+                instrument(child, owner);
+            }
+        }
+    }
+
+    private static void wrap(ObjectProperty<EventHandler<ActionEvent>> onAction, String handler) {
+        EventHandler<ActionEvent> inner = onAction.get();
+        if (inner == null) {
+            return;
+        }
+        onAction.set(action -> {
+            UiHandlerEvent event = begin(handler);
+            try {
+                inner.handle(action);
+            } finally {
+                event.close(); // However the handler ends
+            }
+        });
+    }
+
+    /**
+     * The handler the JavaFX thread is in right now, or null. Safe to call from any thread.
+     */
+    public static String running() {
+        return running;
+    }
+
+    @Override
+    public void close() {
+        running = outer;
+        commit(); // Does nothing unless a recording has this event enabled
+    }
+}
@@ -1,6 +1,7 @@
 package model;
 
 import java.time.LocalDate;
+import java.util.Objects;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.property.SimpleStringProperty;
@@ -9,158 +10,249 @@ import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.BooleanProperty;
 
 /**
- * This new Task class is designed to be compatible with both
- * JavaFX (which needs Properties) and Gson (which needs simple fields).
+ * A task, as seen by the controllers and the TableView.
+ * The data itself lives in a {@link TaskStore} row; a Task is only a small
+ * view of that row (plus the JavaFX properties, once something asks for them).
+ * Saving to JSON goes through util.TaskTypeAdapter.
+ *
+ * Every edit is reported to the store's {@link TaskChangeListener}s, so lists
+ * and indexes can follow tasks without creating any properties. Properties are
+ * only made for the rows a TableView cell actually shows.
  */
 public class Task {
 
-    // --- 1. Plain Java Fields (for Gson to save) ---
-    // Gson will save and load these fields directly.
-    private String title;
-    private String description;
-    private LocalDate dueDate;
-    private String category;
-    private String priority;
-    private boolean completed;
-    private boolean isDeleted;
+    // --- 1. Where the data lives ---
+    private final TaskStore store;
+    private final int row;
 
     // --- 2. JavaFX Properties (for the TableView) ---
-    // These are marked 'transient' so Gson ignores them completely.
-    private transient StringProperty titleProperty;
-    private transient StringProperty descriptionProperty;
-    private transient ObjectProperty<LocalDate> dueDateProperty;
-    private transient StringProperty categoryProperty;
-    private transient StringProperty priorityProperty;
-    private transient BooleanProperty completedProperty;
-    private transient BooleanProperty deletedProperty;
+    // Created the first time someone asks for one, and kept together so a task
+    // that is never shown only pays for one empty reference.
+    private Properties properties;
+
+    private static class Properties {
+        StringProperty title;
+        StringProperty description;
+        ObjectProperty<LocalDate> dueDate;
+        StringProperty category;
+        StringProperty priority;
+        BooleanProperty completed;
+        BooleanProperty deleted;
+    }
 
     /**
      * Constructor for a new Task.
      */
     public Task(String title, String description, LocalDate dueDate, String category, String priority) {
-        this.title = title;
-        this.description = description;
-        this.dueDate = dueDate;
-        this.category = category;
-        this.priority = priority;
-        this.completed = false; // New tasks start as not completed
-        this.isDeleted = false; // Default to NOT deleted
+        this.store = TaskStore.getDefault();
+        // New tasks start as not completed and NOT deleted
+        this.row = store.addRow(title, description, dueDate, category, priority, false, false);
     }
 
     /**
-     * No-argument constructor required by Gson.
+     * No-argument constructor (an empty task).
      */
     public Task() {
-        this.completed = false;
-        this.isDeleted = false;
+        this(null, null, null, null, null);
+    }
+
+    /**
+     * A view of an existing row.
+     */
+    public Task(TaskStore store, int row) {
+        this.store = store;
+        this.row = row;
     }
 
+    public TaskStore getStore() { return store; }
+    public int getRow() { return row; }
+
+    /**
+     * The task's id: unique, never reused, and the same in every copy and save file.
+     */
+    public long getId() { return store.getId(row); }
+
     // --- 3. "Lazy-Loaded" Property Getters ---
     // These methods create the JavaFX property on-the-fly the first
-    // time the TableView asks for it. This works for both
-    // new tasks and tasks loaded from the JSON file.
+    // time the TableView asks for it.
+    // Each property's bean is the task, so one shared listener can tell tasks apart.
+    // The store is updated from an invalidation listener added right here: it runs
+    // before every other listener, so anyone who reacts to the change already
+    // reads the new value from the store.
+
+    private Properties properties() {
+        if (properties == null) {
+            properties = new Properties();
+        }
+        return properties;
+    }
 
     public StringProperty titleProperty() {
-        if (titleProperty == null) {
-            titleProperty = new SimpleStringProperty(title);
-            // Link the property so it updates the base field
-            titleProperty.addListener((obs, oldVal, newVal) -> title = newVal);
+        Properties p = properties();
+        if (p.title == null) {
+            p.title = new SimpleStringProperty(this, "title", getTitle());
+            p.title.addListener(obs -> changeTitle(p.title.get()));
         }
-        return titleProperty;
+        return p.title;
     }
 
     public StringProperty descriptionProperty() {
-        if (descriptionProperty == null) {
-            descriptionProperty = new SimpleStringProperty(description);
-            descriptionProperty.addListener((obs, oldVal, newVal) -> description = newVal);
+        Properties p = properties();
+        if (p.description == null) {
+            p.description = new SimpleStringProperty(this, "description", getDescription());
+            p.description.addListener(obs -> changeDescription(p.description.get()));
         }
-        return descriptionProperty;
+        return p.description;
     }
 
     public ObjectProperty<LocalDate> dueDateProperty() {
-        if (dueDateProperty == null) {
-            dueDateProperty = new SimpleObjectProperty<>(dueDate);
-            dueDateProperty.addListener((obs, oldVal, newVal) -> dueDate = newVal);
+        Properties p = properties();
+        if (p.dueDate == null) {
+            p.dueDate = new SimpleObjectProperty<>(this, "dueDate", getDueDate());
+            p.dueDate.addListener(obs -> changeDueDate(p.dueDate.get()));
         }
-        return dueDateProperty;
+        return p.dueDate;
     }
 
     public StringProperty categoryProperty() {
-        if (categoryProperty == null) {
-            categoryProperty = new SimpleStringProperty(category);
-            categoryProperty.addListener((obs, oldVal, newVal) -> category = newVal);
+        Properties p = properties();
+        if (p.category == null) {
+            p.category = new SimpleStringProperty(this, "category", getCategory());
+            p.category.addListener(obs -> changeCategory(p.category.get()));
         }
-        return categoryProperty;
+        return p.category;
     }
 
     public StringProperty priorityProperty() {
-        if (priorityProperty == null) {
-            priorityProperty = new SimpleStringProperty(priority);
-            priorityProperty.addListener((obs, oldVal, newVal) -> priority = newVal);
+        Properties p = properties();
+        if (p.priority == null) {
+            p.priority = new SimpleStringProperty(this, "priority", getPriority());
+            p.priority.addListener(obs -> changePriority(p.priority.get()));
         }
-        return priorityProperty;
+        return p.priority;
     }
 
     public BooleanProperty completedProperty() {
-        if (completedProperty == null) {
-            completedProperty = new SimpleBooleanProperty(completed);
-            completedProperty.addListener((obs, oldVal, newVal) -> completed = newVal);
+        Properties p = properties();
+        if (p.completed == null) {
+            p.completed = new SimpleBooleanProperty(this, "completed", isCompleted());
+            p.completed.addListener(obs -> changeCompleted(p.completed.get()));
         }
-        return completedProperty;
+        return p.completed;
     }
 
     public BooleanProperty deletedProperty() {
-        if(deletedProperty == null) {
-           deletedProperty = new SimpleBooleanProperty(isDeleted);
-           deletedProperty.addListener((obs, oldVal, newVal) -> isDeleted = newVal);
+        Properties p = properties();
+        if (p.deleted == null) {
+            p.deleted = new SimpleBooleanProperty(this, "deleted", isDeleted());
+            p.deleted.addListener(obs -> changeDeleted(p.deleted.get()));
         }
-        return deletedProperty;
+        return p.deleted;
     }
 
-    public boolean isDeleted() {return isDeleted;}
+    // --- 4. Standard Getters & Setters ---
+    // Getters read the store. Setters go through the property when it exists
+    // (so the TableView sees the change), otherwise straight to change...().
 
+    public boolean isDeleted() { return store.isDeleted(row); }
+    // The day the task went to the trash (null if it is not deleted)
+    public LocalDate getDeletedOn() { return store.getDeletedOn(row); }
     public void setDeleted(boolean deleted) {
-        this.isDeleted = isDeleted;
-        if(deletedProperty != null) {deletedProperty.set(isDeleted);}
+        if (properties != null && properties.deleted != null) properties.deleted.set(deleted);
+        else changeDeleted(deleted);
     }
 
-    // --- 4. Standard Getters & Setters ---
-    // These now update both the plain field and the (if it exists)
-    // the JavaFX property, keeping them in sync.
-
-    public String getTitle() { return title; }
+    public String getTitle() { return store.getTitle(row); }
     public void setTitle(String title) {
-        this.title = title;
-        if (titleProperty != null) titleProperty.set(title);
+        if (properties != null && properties.title != null) properties.title.set(title);
+        else changeTitle(title);
     }
 
-    public String getDescription() { return description; }
+    public String getDescription() { return store.getDescription(row); }
     public void setDescription(String description) {
-        this.description = description;
-        if (descriptionProperty != null) descriptionProperty.set(description);
+        if (properties != null && properties.description != null) properties.description.set(description);
+        else changeDescription(description);
     }
 
-    public LocalDate getDueDate() { return dueDate; }
+    public LocalDate getDueDate() { return store.getDueDate(row); }
     public void setDueDate(LocalDate dueDate) {
-        this.dueDate = dueDate;
-        if (dueDateProperty != null) dueDateProperty.set(dueDate);
+        if (properties != null && properties.dueDate != null) properties.dueDate.set(dueDate);
+        else changeDueDate(dueDate);
     }
 
-    public String getCategory() { return category; }
+    public String getCategory() { return store.getCategory(row); }
     public void setCategory(String category) {
-        this.category = category;
-        if (categoryProperty != null) categoryProperty.set(category);
+        if (properties != null && properties.category != null) properties.category.set(category);
+        else changeCategory(category);
     }
 
-    public String getPriority() { return priority; }
+    public String getPriority() { return store.getPriority(row); }
     public void setPriority(String priority) {
-        this.priority = priority;
-        if (priorityProperty != null) priorityProperty.set(priority);
+        if (properties != null && properties.priority != null) properties.priority.set(priority);
+        else changePriority(priority);
     }
 
-    public boolean isCompleted() { return completed; }
+    public boolean isCompleted() { return store.isCompleted(row); }
     public void setCompleted(boolean completed) {
-        this.completed = completed;
-        if (completedProperty != null) completedProperty.set(completed);
+        if (properties != null && properties.completed != null) properties.completed.set(completed);
+        else changeCompleted(completed);
+    }
+
+    // --- 5. The single place each field is changed: update the store, then tell its listeners ---
+
+    private void changeTitle(String title) {
+        String old = getTitle();
+        if (!Objects.equals(old, title)) {
+            store.setTitle(row, title);
+            store.fireChanged(this, TaskField.TITLE, old);
+        }
+    }
+
+    private void changeDescription(String description) {
+        String old = getDescription();
+        if (!Objects.equals(old, description)) {
+            store.setDescription(row, description);
+            store.fireChanged(this, TaskField.DESCRIPTION, old);
+        }
+    }
+
+    private void changeDueDate(LocalDate dueDate) {
+        LocalDate old = getDueDate();
+        if (!Objects.equals(old, dueDate)) {
+            store.setDueDate(row, dueDate);
+            store.fireChanged(this, TaskField.DUE_DATE, old);
+        }
+    }
+
+    private void changeCategory(String category) {
+        String old = getCategory();
+        if (!Objects.equals(old, category)) {
+            store.setCategory(row, category);
+            store.fireChanged(this, TaskField.CATEGORY, old);
+        }
+    }
+
+    private void changePriority(String priority) {
+        String old = getPriority();
+        if (!Objects.equals(old, priority)) {
+            store.setPriority(row, priority);
+            store.fireChanged(this, TaskField.PRIORITY, old);
+        }
+    }
+
+    private void changeCompleted(boolean completed) {
+        boolean old = isCompleted();
+        if (old != completed) {
+            store.setCompleted(row, completed);
+            store.fireChanged(this, TaskField.COMPLETED, old);
+        }
+    }
+
+    private void changeDeleted(boolean deleted) {
+        boolean old = isDeleted();
+        if (old != deleted) {
+            store.setDeleted(row, deleted);
+            store.fireChanged(this, TaskField.DELETED, old);
+        }
     }
-}
\ No newline at end of file
+}
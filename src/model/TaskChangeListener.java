@@ -0,0 +1,16 @@
+package model;
+
+/**
+ * Told about every edit to a task in a {@link TaskStore}, whether it was made
+ * through a setter or through a JavaFX property. Unlike a property listener it
+ * needs no property objects, so it can watch a million tasks for free.
+ */
+public interface TaskChangeListener {
+
+    /**
+     * Called right after the store was updated (on the thread that made the edit).
+     *
+     * @param oldValue the value before the edit: a String, LocalDate or Boolean
+     */
+    void taskChanged(Task task, TaskField field, Object oldValue);
+}
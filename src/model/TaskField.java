@@ -0,0 +1,14 @@
+package model;
+
+/**
+ * The fields of a task, for change notifications.
+ */
+public enum TaskField {
+    TITLE,
+    DESCRIPTION,
+    DUE_DATE,
+    CATEGORY,
+    PRIORITY,
+    COMPLETED,
+    DELETED
+}
@@ -0,0 +1,100 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from task id to list position, on plain long/int arrays so that a
+ * million tasks don't need a million boxed Long and Integer objects.
+ * Open addressing with linear probing; id 0 marks an empty slot (ids start at 1).
+ * Not thread-safe: fill it, then share it read-only if need be.
+ */
+public class TaskIdIndex {
+
+    private long[] keys = new long[64];
+    private int[] values = new int[64];
+    private int size;
+
+    /**
+     * The position stored for the id, or -1.
+     */
+    public int get(long id) {
+        int mask = keys.length - 1;
+        for (int slot = slotOf(id, mask); keys[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == id) {
+                return values[slot];
+            }
+        }
+        return -1;
+    }
+
+    public void put(long id, int position) {
+        if ((size + 1) * 2 > keys.length) {
+            grow();
+        }
+        int mask = keys.length - 1;
+        int slot = slotOf(id, mask);
+        while (keys[slot] != 0 && keys[slot] != id) {
+            slot = (slot + 1) & mask;
+        }
+        if (keys[slot] == 0) {
+            keys[slot] = id;
+            size++;
+        }
+        values[slot] = position;
+    }
+
+    void remove(long id) {
+        int mask = keys.length - 1;
+        int slot = slotOf(id, mask);
+        while (keys[slot] != id) {
+            if (keys[slot] == 0) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = 0;
+        size--;
+
+        // Move later entries of the same run back, so lookups never stop at the hole too early
+        int next = (slot + 1) & mask;
+        while (keys[next] != 0) {
+            long key = keys[next];
+            int home = slotOf(key, mask);
+            // Move it if its home slot is not between the hole and where it is now
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                keys[slot] = key;
+                values[slot] = values[next];
+                keys[next] = 0;
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+    }
+
+    void clear() {
+        Arrays.fill(keys, 0);
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private static int slotOf(long id, int mask) {
+        long hash = id * 0x9E3779B97F4A7C15L; // Spreads consecutive ids over the table
+        return (int) (hash >>> 32) & mask;
+    }
+}
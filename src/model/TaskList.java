@@ -0,0 +1,427 @@
+package model;
+
+import javafx.collections.ModifiableObservableListBase;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * An observable task list that fires "updated" changes when a watched field of
+ * one of its tasks changes, like a list made with an extractor, but without
+ * creating two JavaFX properties (and their listeners) for every task in it.
+ * It listens to the task stores instead, through one shared listener.
+ *
+ * It also keeps a task id to position index, so finding a task (indexOf,
+ * remove, contains, or {@link #indexOfId}) is a hash lookup instead of a scan.
+ * Positions after an insert or removal in the middle are fixed up lazily, on
+ * the next lookup, so appending and bulk loading stay cheap.
+ *
+ * Many edits can be grouped with {@link #batch}: listeners then get a single
+ * change event at the end, however many tasks were added, removed or edited.
+ *
+ * The tasks are kept in a persistent {@link TaskVector}, so {@link #snapshot}
+ * can hand a background thread (a save, an export, statistics) the whole list,
+ * values included, in constant time instead of copying it.
+ */
+public class TaskList extends ModifiableObservableListBase<Task> {
+
+    private TaskVector tasks = TaskVector.empty();
+    private final List<TaskStore> stores = new ArrayList<>(); // Every store a task of this list lives in
+    private final Set<TaskField> watchedFields;
+    private final TaskChangeListener changeListener = this::taskChanged;
+    private TaskStore lastStore; // Skips re-registering for every task of the same store
+    private final TaskIdIndex positions = new TaskIdIndex();
+    private int positionsValidBelow; // The index is right for every task before this position
+
+    // --- Batches (see batch()) ---
+    private int batchDepth;
+    private final List<Task> changedInBatch = new ArrayList<>(); // May hold a task more than once
+
+    /**
+     * @param watchedFields changes to these fields are reported as list updates
+     */
+    public TaskList(Set<TaskField> watchedFields) {
+        this.watchedFields = EnumSet.copyOf(watchedFields);
+    }
+
+    @Override
+    public Task get(int index) {
+        return tasks.get(index);
+    }
+
+    @Override
+    public int size() {
+        return tasks.size();
+    }
+
+    @Override
+    protected void doAdd(int index, Task task) {
+        watch(task);
+        tasks = tasks.insert(index, task);
+        if (index == positionsValidBelow && index == tasks.size() - 1) {
+            positions.put(task.getId(), index); // Appended: nothing moved
+            positionsValidBelow++;
+        } else {
+            positionsMoved(index);
+        }
+    }
+
+    @Override
+    protected Task doSet(int index, Task task) {
+        watch(task);
+        Task old = tasks.get(index);
+        tasks = tasks.replace(index, task);
+        positions.remove(old.getId());
+        if (index < positionsValidBelow) {
+            positions.put(task.getId(), index);
+        }
+        return old;
+    }
+
+    @Override
+    protected Task doRemove(int index) {
+        Task old = tasks.get(index);
+        tasks = tasks.delete(index);
+        positions.remove(old.getId());
+        positionsMoved(index);
+        return old;
+    }
+
+    // --- Bulk versions: one rebuild of the vector instead of one change per task ---
+
+    @Override
+    public boolean addAll(Collection<? extends Task> added) {
+        return addAll(size(), added);
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends Task> added) {
+        if (index < 0 || index > size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        if (added.isEmpty()) {
+            return false;
+        }
+        for (Task task : added) {
+            watch(task);
+        }
+        beginChange();
+        try {
+            boolean appended = index == tasks.size() && index == positionsValidBelow;
+            tasks = tasks.insertAll(index, added);
+            if (appended) {
+                for (int i = index; i < tasks.size(); i++) {
+                    positions.put(tasks.get(i).getId(), i);
+                }
+                positionsValidBelow = tasks.size();
+            } else {
+                positionsMoved(index);
+            }
+            nextAdd(index, index + added.size());
+            modCount++;
+        } finally {
+            endChange();
+        }
+        return true;
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        if (fromIndex == toIndex) {
+            return;
+        }
+        beginChange();
+        try {
+            List<Task> range = tasks.subList(fromIndex, toIndex); // The old vector never changes: no copy needed
+            for (Task task : range) {
+                positions.remove(task.getId());
+            }
+            nextRemove(fromIndex, range);
+            tasks = tasks.deleteRange(fromIndex, toIndex);
+            positionsMoved(fromIndex);
+            modCount++;
+        } finally {
+            endChange();
+        }
+    }
+
+    // --- Lookup by id ---
+
+    /**
+     * The position of the task with this id, or -1 if it is not in the list.
+     */
+    public int indexOfId(long id) {
+        int index = positions.get(id);
+        if (index < 0 || index >= positionsValidBelow) {
+            // Not known, or known from before something moved: bring the index up to date
+            updatePositions();
+            index = positions.get(id);
+        }
+        return index >= 0 && index < tasks.size() && tasks.get(index).getId() == id ? index : -1;
+    }
+
+    /**
+     * The task with this id, or null.
+     */
+    public Task getById(long id) {
+        int index = indexOfId(id);
+        return index < 0 ? null : tasks.get(index);
+    }
+
+    /**
+     * Removes the task with this id and returns it (null if there is none).
+     */
+    public Task removeById(long id) {
+        int index = indexOfId(id);
+        return index < 0 ? null : remove(index);
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if (!(o instanceof Task)) {
+            return -1;
+        }
+        int index = indexOfId(((Task) o).getId());
+        if (index < 0 || tasks.get(index) == o) {
+            return index;
+        }
+        return tasks.indexOf(o); // Another object with the same id (a copy): look for this one
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        int index = indexOf(o);
+        if (index < 0) {
+            return false;
+        }
+        remove(index);
+        return true;
+    }
+
+    /**
+     * Tasks from {@code index} on may have moved: their positions are redone on the next lookup.
+     */
+    private void positionsMoved(int index) {
+        positionsValidBelow = Math.min(positionsValidBelow, index);
+    }
+
+    private void updatePositions() {
+        for (int i = positionsValidBelow; i < tasks.size(); i++) {
+            positions.put(tasks.get(i).getId(), i);
+        }
+        positionsValidBelow = tasks.size();
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> removed) {
+        // 1. Find the positions to remove (hash lookups, not a scan of the list per task)
+        BitSet doomed = new BitSet(tasks.size());
+        for (Object o : removed) {
+            int index = indexOf(o);
+            if (index >= 0) {
+                doomed.set(index);
+            }
+        }
+        if (doomed.isEmpty()) {
+            return false;
+        }
+
+        beginChange();
+        try {
+            // 2. Report each run of removed tasks, at its position once the runs before it are gone
+            int removedSoFar = 0;
+            int from = doomed.nextSetBit(0);
+            while (from >= 0) {
+                int to = doomed.nextClearBit(from);
+                List<Task> run = tasks.subList(from, to);
+                for (Task task : run) {
+                    positions.remove(task.getId());
+                }
+                nextRemove(from - removedSoFar, run);
+                removedSoFar += to - from;
+                from = doomed.nextSetBit(to);
+            }
+
+            // 3. Close the gaps in one pass
+            List<Task> kept = new ArrayList<>(tasks.size() - doomed.cardinality());
+            int index = 0;
+            for (Task task : tasks) {
+                if (!doomed.get(index++)) {
+                    kept.add(task);
+                }
+            }
+            tasks = TaskVector.of(kept);
+            positionsMoved(doomed.nextSetBit(0));
+            modCount++;
+        } finally {
+            endChange();
+        }
+        return true;
+    }
+
+    // --- Batches ---
+
+    /**
+     * Runs the changes as one: listeners get a single change event when they are
+     * done (so one journal write, one re-filter and one counter update), instead of
+     * one per task. Inside a batch, an edit to any field of a task in the list is
+     * reported as an update, not only the watched fields, so nothing the batch did
+     * is missed. Batches may be nested; the outermost one fires the event.
+     */
+    public void batch(Runnable changes) {
+        batchDepth++;
+        beginChange();
+        try {
+            changes.run();
+        } finally {
+            batchDepth--;
+            if (batchDepth == 0) {
+                reportBatchUpdates();
+            }
+            endChange();
+        }
+    }
+
+    /**
+     * True while a {@link #batch} is running.
+     */
+    public boolean isBatchOpen() {
+        return batchDepth > 0;
+    }
+
+    /**
+     * Adds an update for every edited task still in the list, once each and in
+     * position order (which the change builder handles in one pass).
+     */
+    private void reportBatchUpdates() {
+        if (changedInBatch.isEmpty()) {
+            return;
+        }
+        int[] updated = new int[changedInBatch.size()];
+        int count = 0;
+        for (Task task : changedInBatch) {
+            int index = indexOfId(task.getId());
+            if (index >= 0 && tasks.get(index) == task) {
+                updated[count++] = index;
+            }
+        }
+        changedInBatch.clear();
+        Arrays.sort(updated, 0, count);
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || updated[i] != updated[i - 1]) {
+                nextUpdate(updated[i]);
+            }
+        }
+    }
+
+    // --- Snapshots ---
+
+    /**
+     * The list as it is right now, for reading on any thread: the same tasks in
+     * the same order, with the field values they have now, however the list and
+     * its tasks change afterwards. Constant time: the task vector is immutable
+     * already, and each task store is frozen (shared until its next write).
+     * The tasks in the snapshot are read-only views; setters throw.
+     */
+    public List<Task> snapshot() {
+        Map<TaskStore, TaskStore> frozen = new IdentityHashMap<>();
+        for (TaskStore store : stores) {
+            frozen.put(store, store.freeze());
+        }
+        return new Snapshot(tasks, frozen);
+    }
+
+    /**
+     * A frozen task vector. The views onto the frozen stores are made as they are read.
+     */
+    private static class Snapshot extends AbstractList<Task> implements RandomAccess {
+        private final TaskVector tasks;
+        private final Map<TaskStore, TaskStore> frozen;
+
+        Snapshot(TaskVector tasks, Map<TaskStore, TaskStore> frozen) {
+            this.tasks = tasks;
+            this.frozen = frozen;
+        }
+
+        @Override
+        public Task get(int index) {
+            return frozenView(tasks.get(index));
+        }
+
+        @Override
+        public int size() {
+            return tasks.size();
+        }
+
+        @Override
+        public Iterator<Task> iterator() {
+            Iterator<Task> live = tasks.iterator();
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return live.hasNext();
+                }
+
+                @Override
+                public Task next() {
+                    return frozenView(live.next());
+                }
+            };
+        }
+
+        private Task frozenView(Task task) {
+            return new Task(frozen.get(task.getStore()), task.getRow());
+        }
+    }
+
+    private void watch(Task task) {
+        TaskStore store = task.getStore();
+        if (store != lastStore) {
+            store.addChangeListener(changeListener);
+            if (!stores.contains(store)) {
+                stores.add(store);
+            }
+            lastStore = store;
+        }
+    }
+
+    /**
+     * Turns a task edit into an "updated" change at the task's position(s).
+     * The store tells us about every task it holds, so this also skips tasks
+     * that are not in this list (or copies of tasks that are).
+     */
+    private void taskChanged(Task task, TaskField field, Object oldValue) {
+        if (batchDepth > 0) {
+            changedInBatch.add(task); // Reported once, when the batch ends
+            return;
+        }
+        if (!watchedFields.contains(field)) {
+            return;
+        }
+        int index = indexOfId(task.getId());
+        if (index >= 0 && tasks.get(index) == task) {
+            fireUpdate(index);
+        }
+    }
+
+    private void fireUpdate(int index) {
+        beginChange();
+        nextUpdate(index);
+        endChange();
+    }
+}
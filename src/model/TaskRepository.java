@@ -0,0 +1,301 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javafx.collections.ListChangeListener;
+import metrics.Counter;
+import metrics.LatencyHistogram;
+import metrics.Metrics;
+
+/**
+ * The task list for threads other than the one that owns it (the JavaFX
+ * thread in the app). The window keeps using the {@link TaskList} itself;
+ * everyone else (the HTTP API, background jobs) reads and writes through here.
+ *
+ * Reads are lock-free: after every burst of changes the owner thread takes a
+ * {@link TaskList#snapshot} (constant time) and publishes it with a version
+ * number. A reader sees one state of the list from start to end, and never
+ * waits for a writer or the window.
+ *
+ * Writes from any thread are queued. The owner thread applies everything
+ * queued so far in one {@link TaskList#batch} (one change event, so one journal
+ * write and one re-filter for the lot; only a conditional write, see below,
+ * needs a batch of its own), publishes a new snapshot and only then
+ * completes the writers' futures, so a writer always reads its own writes.
+ * Many concurrent writers cost one trip to the owner thread, not one each, and
+ * since only that thread touches the live list no locks are needed around it.
+ *
+ * A read-modify-write from another thread (read a snapshot, decide, write back)
+ * can use {@link #submitIfUnchanged}: the write is refused if the task changed
+ * after the snapshot it was based on, by the window or another writer. The
+ * repository remembers the version each task last changed in, for every change
+ * the list reports (watched fields, batches, set() and removals, which covers
+ * everything the window does).
+ */
+public class TaskRepository {
+
+    private static final LatencyHistogram writeBatchTime = Metrics.histogram("repository.write.batch");
+    private static final Counter writesApplied = Metrics.counter("repository.write.applied");
+    private static final Counter writeBatches = Metrics.counter("repository.write.batches");
+    private static final Counter writeConflicts = Metrics.counter("repository.write.conflicts");
+
+    /**
+     * A change to the live list. Runs on the owner thread, inside a batch.
+     * Whatever it throws fails its own write only.
+     */
+    public interface Change<T> {
+        T apply(TaskList tasks) throws Exception;
+    }
+
+    /**
+     * The list at one moment: read-only tasks, readable from any thread.
+     */
+    public static class Snapshot {
+        private final List<Task> tasks;
+        private final long version;
+        private volatile TaskIdIndex positions; // Built by the first lookup by id
+
+        Snapshot(List<Task> tasks, long version) {
+            this.tasks = tasks;
+            this.version = version;
+        }
+
+        public List<Task> getTasks() { return tasks; }
+
+        /**
+         * Goes up by one with every snapshot published; a client can tell whether anything changed.
+         */
+        public long getVersion() { return version; }
+
+        /**
+         * The task with that id, or null.
+         */
+        public Task getById(long id) {
+            TaskIdIndex index = positions;
+            if (index == null) {
+                // Two threads may both build it; same result, and it is only published when full
+                index = new TaskIdIndex();
+                for (int i = 0; i < tasks.size(); i++) {
+                    index.put(tasks.get(i).getId(), i);
+                }
+                positions = index;
+            }
+            int position = index.get(id);
+            return position < 0 ? null : tasks.get(position);
+        }
+    }
+
+    /**
+     * A queued write and the future its writer waits on.
+     */
+    private static class PendingWrite<T> {
+        final Change<T> change;
+        final long id;          // For submitIfUnchanged, else 0
+        final long seenVersion;
+        final CompletableFuture<T> done = new CompletableFuture<>();
+        T result;
+        Throwable failure;
+
+        PendingWrite(Change<T> change, long id, long seenVersion) {
+            this.change = change;
+            this.id = id;
+            this.seenVersion = seenVersion;
+        }
+
+        void finish() {
+            if (failure != null) {
+                done.completeExceptionally(failure);
+            } else {
+                done.complete(result);
+            }
+        }
+    }
+
+    private final TaskList tasks;
+    private final Executor owner;
+    private final Thread ownerThread;
+    private volatile Snapshot snapshot;
+
+    // --- Owner thread only ---
+    private long version;
+    private boolean applying; // applyAll publishes a snapshot itself
+    // Task id -> version of the first snapshot that shows its last change. Versions are
+    // counted per burst of changes, so an int lasts; tasks only ever added aren't in it.
+    private final TaskIdIndex changedIn = new TaskIdIndex();
+
+    private final ConcurrentLinkedQueue<PendingWrite<?>> writes = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainQueued = new AtomicBoolean();
+    private final AtomicBoolean refreshQueued = new AtomicBoolean();
+
+    /**
+     * Must be called on the thread that owns the list; {@code owner} runs jobs
+     * on it (Platform::runLater in the app).
+     */
+    public TaskRepository(TaskList tasks, Executor owner) {
+        this.tasks = tasks;
+        this.owner = owner;
+        this.ownerThread = Thread.currentThread();
+        refreshSnapshot();
+        // Every change, ours or the window's, marks its tasks and shows up in the next snapshot
+        tasks.addListener((ListChangeListener.Change<? extends Task> c) -> {
+            recordChanges(c);
+            if (!applying && refreshQueued.compareAndSet(false, true)) {
+                owner.execute(this::refreshSnapshot);
+            }
+        });
+    }
+
+    /**
+     * The live list, for the owner thread only.
+     */
+    public TaskList getList() {
+        return tasks;
+    }
+
+    /**
+     * The latest published snapshot. Any thread, never blocks.
+     */
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Queues a change; the future completes once it is applied and in the
+     * snapshot. On the owner thread the change is applied right away.
+     */
+    public <T> CompletableFuture<T> submit(Change<T> change) {
+        return enqueue(new PendingWrite<>(change, 0, 0));
+    }
+
+    /**
+     * Like {@link #submit}, but the change is only applied if the task with
+     * that id has not changed since the snapshot with version
+     * {@code seenVersion}; if it has, the future fails with a
+     * ConcurrentModificationException and the writer should read again.
+     */
+    public <T> CompletableFuture<T> submitIfUnchanged(long id, long seenVersion, Change<T> change) {
+        return enqueue(new PendingWrite<>(change, id, seenVersion));
+    }
+
+    private <T> CompletableFuture<T> enqueue(PendingWrite<T> write) {
+        if (Thread.currentThread() == ownerThread) {
+            applyAll(List.of(write)); // Waiting for ourselves would never end
+            return write.done;
+        }
+        writes.add(write);
+        if (drainQueued.compareAndSet(false, true)) {
+            owner.execute(this::drainWrites);
+        }
+        return write.done;
+    }
+
+    // --- Owner thread ---
+
+    /**
+     * True if the task with that id changed after the snapshot with version
+     * {@code seenVersion} was published. Owner thread only (inside a change, say).
+     */
+    public boolean changedSince(long id, long seenVersion) {
+        return changedIn.get(id) > seenVersion;
+    }
+
+    private void drainWrites() {
+        // A bulk edit of the window's is still running (it pumps events): join after it
+        if (tasks.isBatchOpen()) {
+            owner.execute(this::drainWrites);
+            return;
+        }
+        drainQueued.set(false); // Before polling: anything queued after this gets a drain of its own
+        List<PendingWrite<?>> batch = new ArrayList<>();
+        PendingWrite<?> write;
+        while ((write = writes.poll()) != null) {
+            batch.add(write);
+        }
+        if (!batch.isEmpty()) {
+            applyAll(batch);
+        }
+    }
+
+    private void applyAll(List<PendingWrite<?>> batch) {
+        // 1. The changes, in as few batches of the list as possible. A conditional write
+        //    starts a batch of its own: the tasks changed before it are only marked once
+        //    their batch has been reported, and it has to be checked against them.
+        long start = System.nanoTime();
+        applying = true;
+        try {
+            int from = 0;
+            while (from < batch.size()) {
+                int to = from + 1;
+                while (to < batch.size() && batch.get(to).id == 0) {
+                    to++;
+                }
+                List<PendingWrite<?>> run = batch.subList(from, to);
+                tasks.batch(() -> {
+                    for (PendingWrite<?> pending : run) {
+                        apply(pending);
+                    }
+                });
+                from = to;
+            }
+        } finally {
+            applying = false;
+        }
+
+        // 2. Publish before answering, so the writers read their own writes
+        refreshSnapshot();
+        writeBatchTime.recordSince(start);
+        writeBatches.increment();
+        writesApplied.add(batch.size());
+
+        // 3. Answer
+        for (PendingWrite<?> pending : batch) {
+            pending.finish();
+        }
+    }
+
+    private <T> void apply(PendingWrite<T> pending) {
+        try {
+            if (pending.id != 0 && changedSince(pending.id, pending.seenVersion)) {
+                writeConflicts.increment();
+                throw new ConcurrentModificationException(
+                        "Task " + pending.id + " has changed since version " + pending.seenVersion);
+            }
+            pending.result = pending.change.apply(tasks);
+        } catch (Exception e) {
+            pending.failure = e; // Only this write fails; the rest of the batch goes ahead
+        }
+    }
+
+    /**
+     * Marks the edited, replaced and removed tasks of a change event with the next version.
+     */
+    private void recordChanges(ListChangeListener.Change<? extends Task> c) {
+        int next = (int) (version + 1);
+        while (c.next()) {
+            if (c.wasUpdated()) {
+                for (int i = c.getFrom(); i < c.getTo(); i++) {
+                    changedIn.put(tasks.get(i).getId(), next);
+                }
+            } else if (c.wasReplaced()) {
+                for (Task task : c.getAddedSubList()) {
+                    changedIn.put(task.getId(), next); // An edit saved with set()
+                }
+            } else if (c.wasRemoved()) {
+                for (Task task : c.getRemoved()) {
+                    changedIn.remove(task.getId()); // Writes to it fail by themselves now
+                }
+            }
+        }
+        c.reset();
+    }
+
+    private void refreshSnapshot() {
+        refreshQueued.set(false);
+        snapshot = new Snapshot(tasks.snapshot(), ++version);
+    }
+}
@@ -0,0 +1,877 @@
+package model;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * The task data itself, stored column by column ("struct of arrays") instead of
+ * as one object per task. A {@link Task} is just a view of one row of a store.
+ *
+ * Per row this keeps the due date as an int epoch day, category and priority as
+ * codes into a dictionary of the distinct values, the completed/deleted flags as bits
+ * (plus the day a deleted task went to the trash, so it can be purged later),
+ * and the title and description as UTF-8 bytes in one shared byte array (the
+ * "arena"). That is a few dozen bytes per task plus the text, where a Task
+ * object with its own Strings, LocalDate and duplicate category strings used
+ * a few hundred, and it leaves the garbage collector far fewer objects to trace.
+ *
+ * Every row also has a task id: a 64-bit number handed out in increasing order
+ * and saved with the task, so a task can be found again (and told apart from
+ * another task with the same title) without comparing object identities.
+ *
+ * The columns are cut into pages of {@link #PAGE_SIZE} rows, so {@link #freeze}
+ * can hand out a read-only copy of the whole store without copying anything:
+ * the copy shares every page, and the live store copies a page (once) before
+ * it next writes to it. The text arena is append-only between compactions, so
+ * it is shared as it is.
+ *
+ * Rows are never renumbered, since Task views point at them, but the row of a
+ * task that is gone for good can be handed back ({@link #releaseRow}) and is
+ * then used for the next task added to the store.
+ *
+ * The JavaFX thread, the loader and the background filter all read tasks, so
+ * the store is guarded by a StampedLock: writes take the write lock, reads are
+ * optimistic (no locking at all unless a write happened in between).
+ */
+public class TaskStore {
+
+    public static final int NO_DATE = Integer.MIN_VALUE;
+
+    // Rows per page; a page is the unit freeze() shares and the live store copies on write
+    static final int PAGE_SHIFT = 10;
+    static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private static final byte FLAG_COMPLETED = 1;
+    private static final byte FLAG_DELETED = 2;
+
+    // Dictionary code 0 means "no value"
+    private static final int FIRST_CODES = 16;
+    // The arena is compacted once dead text takes up at least this much, and over half of it
+    private static final int MIN_COMPACT_BYTES = 1 << 20;
+
+    // The store every task created with "new Task(...)" lives in
+    private static final TaskStore DEFAULT = new TaskStore(1024);
+
+    // The highest task id handed out so far (by any store)
+    private static final AtomicLong lastId = new AtomicLong();
+
+    private final StampedLock lock = new StampedLock();
+    private final CopyOnWriteArrayList<TaskChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final boolean frozen; // A read-only copy made by freeze()
+
+    // --- 1. Columns: a page table per column, each page holding PAGE_SIZE rows ---
+    private long[][] ids;
+    private int[][] dueDays;
+    private int[][] deletedDays;        // Epoch day the task was deleted, NO_DATE if it is not
+    private int[][] categories;
+    private int[][] priorities;
+    private byte[][] flags;             // FLAG_COMPLETED | FLAG_DELETED
+    private int[][] titleStarts;
+    private int[][] titleLengths;       // -1 for a null title
+    private int[][] descriptionStarts;
+    private int[][] descriptionLengths; // -1 for a null description
+    private int size;                   // Rows in use or released
+    private final int firstPageSize;    // Small stores (one task, one page of a file) stay small
+    private int[] freeRows = new int[0]; // Released rows, reused before new ones (live store only)
+    private int freeCount;
+
+    // --- 2. Copy-on-write bookkeeping (live store only) ---
+    private int epoch;                  // Bumped by every freeze()
+    private int[] pageEpochs;           // A page whose epoch is older than the store's is shared
+    private boolean tablesShared;       // The page tables themselves are shared with a frozen copy
+
+    // --- 3. The text arena ---
+    private byte[] text = new byte[4096];
+    private int textSize;
+    private int deadTextBytes; // Left behind by edits, reclaimed by compactText()
+
+    // --- 4. Category / priority dictionaries (codeValues[code]; code 0 = no value) ---
+    private String[] codeValues = new String[FIRST_CODES];
+    private final Map<String, Integer> codes = new HashMap<>();
+    private int nextCode = 1;
+
+    public TaskStore() {
+        this(16);
+    }
+
+    public TaskStore(int capacity) {
+        capacity = Math.max(capacity, 1);
+        int pages = (capacity + PAGE_SIZE - 1) >>> PAGE_SHIFT;
+        frozen = false;
+        firstPageSize = Math.min(capacity, PAGE_SIZE);
+        ids = new long[pages][];
+        dueDays = new int[pages][];
+        deletedDays = new int[pages][];
+        categories = new int[pages][];
+        priorities = new int[pages][];
+        flags = new byte[pages][];
+        titleStarts = new int[pages][];
+        titleLengths = new int[pages][];
+        descriptionStarts = new int[pages][];
+        descriptionLengths = new int[pages][];
+        pageEpochs = new int[pages];
+    }
+
+    /**
+     * A read-only copy of {@code live}, sharing its pages, arena and dictionary.
+     */
+    private TaskStore(TaskStore live) {
+        frozen = true;
+        firstPageSize = live.firstPageSize;
+        ids = live.ids;
+        dueDays = live.dueDays;
+        deletedDays = live.deletedDays;
+        categories = live.categories;
+        priorities = live.priorities;
+        flags = live.flags;
+        titleStarts = live.titleStarts;
+        titleLengths = live.titleLengths;
+        descriptionStarts = live.descriptionStarts;
+        descriptionLengths = live.descriptionLengths;
+        size = live.size;
+        text = live.text;
+        textSize = live.textSize;
+        // Shared: codes are never reassigned, and new ones only go past the codes this copy's rows use
+        codeValues = live.codeValues;
+    }
+
+    public static TaskStore getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Hands out a new task id, higher than every id handed out or reserved before.
+     */
+    public static long newId() {
+        return lastId.incrementAndGet();
+    }
+
+    /**
+     * Makes sure ids up to and including {@code id} are never handed out again,
+     * e.g. the ids found in a save file.
+     */
+    public static void reserveIds(long id) {
+        lastId.accumulateAndGet(id, Math::max);
+    }
+
+    /**
+     * The highest task id handed out or reserved so far. Saved with the tasks, so
+     * ids of deleted tasks are not reused after a restart either.
+     */
+    public static long getLastId() {
+        return lastId.get();
+    }
+
+    /**
+     * Copies the given tasks, in order, into a new private store and returns views
+     * of the copies. Used for snapshots that a background thread writes to disk
+     * while the originals keep changing. The text is copied as bytes, not decoded.
+     * A {@link TaskList} can do the same without copying, see {@link TaskList#snapshot}.
+     */
+    public static List<Task> snapshot(List<? extends Task> tasks) {
+        TaskStore copy = new TaskStore(tasks.size());
+        List<Task> views = new ArrayList<>(tasks.size());
+        for (Task task : tasks) {
+            views.add(new Task(copy, copy.copyRow(task.getStore(), task.getRow())));
+        }
+        return views;
+    }
+
+    /**
+     * Returns a read-only copy of the store as it is right now, in constant time:
+     * nothing is copied until the live store next writes to a page, and then only
+     * that page. Views of the same row numbers in the copy keep showing today's
+     * values however the live tasks are edited later, so the copy can be read
+     * from any thread. Writing to the copy throws UnsupportedOperationException.
+     */
+    public TaskStore freeze() {
+        if (frozen) {
+            return this;
+        }
+        long stamp = lock.writeLock();
+        try {
+            epoch++;
+            tablesShared = true;
+            return new TaskStore(this);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * Adds a row for a new task (with a new id) and returns its number.
+     */
+    public int addRow(String title, String description, LocalDate dueDate, String category,
+                      String priority, boolean isCompleted, boolean isDeleted) {
+        return addRow(0, title, description, dueDate, category, priority, isCompleted, isDeleted);
+    }
+
+    /**
+     * Adds a row for a task that already has an id (e.g. one read from a save file)
+     * and returns its number. An id of 0 means "none yet": a new one is handed out.
+     */
+    public int addRow(long id, String title, String description, LocalDate dueDate, String category,
+                      String priority, boolean isCompleted, boolean isDeleted) {
+        if (id == 0) {
+            id = newId();
+        } else {
+            reserveIds(id);
+        }
+        long stamp = writeLock();
+        try {
+            int categoryCode = codeOf(category);
+            int priorityCode = codeOf(priority);
+            int row = newRow();
+            int page = row >>> PAGE_SHIFT;
+            int slot = row & PAGE_MASK;
+            ids[page][slot] = id;
+            setText(row, title, true);
+            setText(row, description, false);
+            dueDays[page][slot] = dueDate == null ? NO_DATE : (int) dueDate.toEpochDay();
+            categories[page][slot] = categoryCode;
+            priorities[page][slot] = priorityCode;
+            flags[page][slot] = flagsOf(isCompleted, isDeleted);
+            deletedDays[page][slot] = isDeleted ? today() : NO_DATE; // Loaders set the saved day afterwards
+            return row;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Copies a row of another store into this one and returns the new row number.
+     */
+    public int copyRow(TaskStore source, int sourceRow) {
+        // 1. Read the source row under its own lock (the stores may be the same, so not nested)
+        long id;
+        int dueDay;
+        int deletedDay;
+        String category;
+        String priority;
+        byte rowFlags;
+        byte[] title;
+        byte[] description;
+        int sourcePage = sourceRow >>> PAGE_SHIFT;
+        int sourceSlot = sourceRow & PAGE_MASK;
+        long sourceStamp = source.lock.readLock();
+        try {
+            id = source.ids[sourcePage][sourceSlot];
+            dueDay = source.dueDays[sourcePage][sourceSlot];
+            deletedDay = source.deletedDays[sourcePage][sourceSlot];
+            category = source.valueOf(source.categories[sourcePage][sourceSlot]);
+            priority = source.valueOf(source.priorities[sourcePage][sourceSlot]);
+            rowFlags = source.flags[sourcePage][sourceSlot];
+            title = source.textBytes(source.titleStarts[sourcePage][sourceSlot],
+                    source.titleLengths[sourcePage][sourceSlot]);
+            description = source.textBytes(source.descriptionStarts[sourcePage][sourceSlot],
+                    source.descriptionLengths[sourcePage][sourceSlot]);
+        } finally {
+            source.lock.unlockRead(sourceStamp);
+        }
+
+        // 2. Write it here
+        long stamp = writeLock();
+        try {
+            int categoryCode = codeOf(category);
+            int priorityCode = codeOf(priority);
+            int row = newRow();
+            int page = row >>> PAGE_SHIFT;
+            int slot = row & PAGE_MASK;
+            ids[page][slot] = id; // A copy is the same task, so it keeps the id
+            setTextBytes(row, title, true);
+            setTextBytes(row, description, false);
+            dueDays[page][slot] = dueDay;
+            deletedDays[page][slot] = deletedDay;
+            categories[page][slot] = categoryCode;
+            priorities[page][slot] = priorityCode;
+            flags[page][slot] = rowFlags;
+            return row;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Registers a listener for edits to any task in this store. Adding the same
+     * listener twice has no effect, so callers can simply add it for every task.
+     */
+    public void addChangeListener(TaskChangeListener listener) {
+        if (!frozen) {
+            listeners.addIfAbsent(listener); // A frozen copy never changes, so nothing to tell
+        }
+    }
+
+    public void removeChangeListener(TaskChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Called by Task after it changed one of its fields.
+     */
+    void fireChanged(Task task, TaskField field, Object oldValue) {
+        for (TaskChangeListener listener : listeners) {
+            listener.taskChanged(task, field, oldValue);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.tryOptimisticRead();
+        int value = size;
+        if (lock.validate(stamp)) {
+            return value;
+        }
+        stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // --- 5. Reads (optimistic; retried under the read lock if a write got in the way) ---
+
+    public long getId(int row) {
+        int page = row >>> PAGE_SHIFT;
+        int slot = row & PAGE_MASK;
+        long stamp = lock.tryOptimisticRead();
+        try {
+            long value = ids[page][slot];
+            if (lock.validate(stamp)) {
+                return value;
+            }
+        } catch (RuntimeException e) {
+            // Read half-way through a write (a page or page table was swapped): retry below
+        }
+        stamp = lock.readLock();
+        try {
+            return ids[page][slot];
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public String getTitle(int row) {
+        return readText(row, true);
+    }
+
+    public String getDescription(int row) {
+        return readText(row, false);
+    }
+
+    public int getDueEpochDay(int row) {
+        return readDay(row, false);
+    }
+
+    public LocalDate getDueDate(int row) {
+        int day = getDueEpochDay(row);
+        return day == NO_DATE ? null : LocalDate.ofEpochDay(day);
+    }
+
+    public String getCategory(int row) {
+        return readCode(row, true);
+    }
+
+    public String getPriority(int row) {
+        return readCode(row, false);
+    }
+
+    public boolean isCompleted(int row) {
+        return (readFlags(row) & FLAG_COMPLETED) != 0;
+    }
+
+    public boolean isDeleted(int row) {
+        return (readFlags(row) & FLAG_DELETED) != 0;
+    }
+
+    /**
+     * The day the task was deleted, or null if it is not in the trash.
+     */
+    public LocalDate getDeletedOn(int row) {
+        int day = readDay(row, true);
+        return day == NO_DATE ? null : LocalDate.ofEpochDay(day);
+    }
+
+    // --- 6. Writes ---
+
+    public void setTitle(int row, String value) {
+        long stamp = writeLock();
+        try {
+            setText(row, value, true);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void setDescription(int row, String value) {
+        long stamp = writeLock();
+        try {
+            setText(row, value, false);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void setDueDate(int row, LocalDate value) {
+        long stamp = writeLock();
+        try {
+            int page = writablePage(row);
+            dueDays[page][row & PAGE_MASK] = value == null ? NO_DATE : (int) value.toEpochDay();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void setCategory(int row, String value) {
+        long stamp = writeLock();
+        try {
+            int code = codeOf(value);
+            categories[writablePage(row)][row & PAGE_MASK] = code;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void setPriority(int row, String value) {
+        long stamp = writeLock();
+        try {
+            int code = codeOf(value);
+            priorities[writablePage(row)][row & PAGE_MASK] = code;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void setCompleted(int row, boolean value) {
+        long stamp = writeLock();
+        try {
+            int page = writablePage(row);
+            int slot = row & PAGE_MASK;
+            flags[page][slot] = (byte) (value ? flags[page][slot] | FLAG_COMPLETED : flags[page][slot] & ~FLAG_COMPLETED);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Moves the task into the trash (dated today) or back out of it.
+     */
+    public void setDeleted(int row, boolean value) {
+        long stamp = writeLock();
+        try {
+            int page = writablePage(row);
+            int slot = row & PAGE_MASK;
+            flags[page][slot] = (byte) (value ? flags[page][slot] | FLAG_DELETED : flags[page][slot] & ~FLAG_DELETED);
+            deletedDays[page][slot] = value ? today() : NO_DATE;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * For loaders: the saved day a task that is already in the trash was deleted.
+     * Ignored for tasks that are not deleted.
+     */
+    public void setDeletedOn(int row, LocalDate value) {
+        long stamp = writeLock();
+        try {
+            int page = writablePage(row);
+            int slot = row & PAGE_MASK;
+            if ((flags[page][slot] & FLAG_DELETED) != 0 && value != null) {
+                deletedDays[page][slot] = (int) value.toEpochDay();
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Hands back the row of a task that is gone for good (purged from the trash,
+     * deleted forever): its text is dropped, so the next arena compaction reclaims
+     * it, and the row is reused for the next task added. Only call this once no
+     * live view of the row is used any more; frozen copies are not affected.
+     * Its id reads as 0 until the row is reused. Releasing a row twice does nothing.
+     */
+    public void releaseRow(int row) {
+        long stamp = writeLock();
+        try {
+            release(row);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Hands back a batch of rows under one lock, like {@link #releaseRow}, and
+     * then compacts the text arena if the batch left enough dead text behind,
+     * rather than waiting for it to reach half the arena.
+     */
+    public void releaseRows(int[] rows) {
+        long stamp = writeLock();
+        try {
+            for (int row : rows) {
+                release(row);
+            }
+            if (deadTextBytes >= MIN_COMPACT_BYTES) {
+                compactText();
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void release(int row) {
+        int page = writablePage(row);
+        int slot = row & PAGE_MASK;
+        if (ids[page][slot] == 0) {
+            return; // Already released
+        }
+        setTextBytes(row, null, true);
+        setTextBytes(row, null, false);
+        ids[page][slot] = 0;
+        if (freeCount == freeRows.length) {
+            freeRows = Arrays.copyOf(freeRows, Math.max(16, freeCount * 2));
+        }
+        freeRows[freeCount++] = row;
+    }
+
+    /**
+     * How many rows hold a task (rows in use, not counting released ones).
+     */
+    public int liveRows() {
+        long stamp = lock.readLock();
+        try {
+            return size - freeCount;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Rough heap size of the store, for the console and the heap comparison.
+     * Pages shared with frozen copies are counted here too.
+     */
+    public long estimateBytes() {
+        long stamp = lock.readLock();
+        try {
+            long perRow = 8 + 4 + 4 + 4 + 4 + 1 + 4 * 4;
+            long rows = 0;
+            for (long[] page : ids) {
+                if (page != null) {
+                    rows += page.length;
+                }
+            }
+            return perRow * rows + text.length;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // --- 7. Internals (callers hold the lock) ---
+
+    private long writeLock() {
+        if (frozen) {
+            throw new UnsupportedOperationException("A frozen task store is read-only");
+        }
+        return lock.writeLock();
+    }
+
+    private int newRow() {
+        if (freeCount > 0) {
+            int row = freeRows[--freeCount];
+            int page = writablePage(row);
+            titleLengths[page][row & PAGE_MASK] = -1; // Released rows have no text left to count as dead
+            descriptionLengths[page][row & PAGE_MASK] = -1;
+            return row;
+        }
+        int row = size;
+        int page = row >>> PAGE_SHIFT;
+        if (page == ids.length) {
+            growTables(ids.length * 2);
+        } else if (tablesShared) {
+            unshareTables();
+        }
+        if (ids[page] == null) {
+            resizePage(page, page == 0 ? firstPageSize : PAGE_SIZE);
+        } else if ((row & PAGE_MASK) == ids[page].length) {
+            resizePage(page, Math.min(PAGE_SIZE, ids[page].length * 2)); // Only the first page starts small
+        } else {
+            writablePage(row); // The last page may be shared with a frozen copy
+        }
+        titleLengths[page][row & PAGE_MASK] = -1;
+        descriptionLengths[page][row & PAGE_MASK] = -1;
+        size++;
+        return row;
+    }
+
+    /**
+     * Makes the page holding {@code row} safe to write, copying it first if a
+     * frozen copy still shares it, and returns its number.
+     */
+    private int writablePage(int row) {
+        int page = row >>> PAGE_SHIFT;
+        if (pageEpochs[page] == epoch) {
+            return page;
+        }
+        if (tablesShared) {
+            unshareTables();
+        }
+        ids[page] = ids[page].clone();
+        dueDays[page] = dueDays[page].clone();
+        deletedDays[page] = deletedDays[page].clone();
+        categories[page] = categories[page].clone();
+        priorities[page] = priorities[page].clone();
+        flags[page] = flags[page].clone();
+        titleStarts[page] = titleStarts[page].clone();
+        titleLengths[page] = titleLengths[page].clone();
+        descriptionStarts[page] = descriptionStarts[page].clone();
+        descriptionLengths[page] = descriptionLengths[page].clone();
+        pageEpochs[page] = epoch;
+        return page;
+    }
+
+    /**
+     * Gives a page a new length, in new arrays (so never shared), or creates it.
+     */
+    private void resizePage(int page, int length) {
+        if (tablesShared) {
+            unshareTables();
+        }
+        ids[page] = ids[page] == null ? new long[length] : Arrays.copyOf(ids[page], length);
+        dueDays[page] = dueDays[page] == null ? new int[length] : Arrays.copyOf(dueDays[page], length);
+        deletedDays[page] = deletedDays[page] == null ? new int[length] : Arrays.copyOf(deletedDays[page], length);
+        categories[page] = categories[page] == null ? new int[length] : Arrays.copyOf(categories[page], length);
+        priorities[page] = priorities[page] == null ? new int[length] : Arrays.copyOf(priorities[page], length);
+        flags[page] = flags[page] == null ? new byte[length] : Arrays.copyOf(flags[page], length);
+        titleStarts[page] = titleStarts[page] == null ? new int[length] : Arrays.copyOf(titleStarts[page], length);
+        titleLengths[page] = titleLengths[page] == null ? new int[length] : Arrays.copyOf(titleLengths[page], length);
+        descriptionStarts[page] = descriptionStarts[page] == null
+                ? new int[length] : Arrays.copyOf(descriptionStarts[page], length);
+        descriptionLengths[page] = descriptionLengths[page] == null
+                ? new int[length] : Arrays.copyOf(descriptionLengths[page], length);
+        pageEpochs[page] = epoch;
+    }
+
+    /**
+     * Gives this store its own page tables (the pages themselves stay shared).
+     */
+    private void unshareTables() {
+        growTables(ids.length);
+    }
+
+    private void growTables(int pages) {
+        ids = Arrays.copyOf(ids, pages);
+        dueDays = Arrays.copyOf(dueDays, pages);
+        deletedDays = Arrays.copyOf(deletedDays, pages);
+        categories = Arrays.copyOf(categories, pages);
+        priorities = Arrays.copyOf(priorities, pages);
+        flags = Arrays.copyOf(flags, pages);
+        titleStarts = Arrays.copyOf(titleStarts, pages);
+        titleLengths = Arrays.copyOf(titleLengths, pages);
+        descriptionStarts = Arrays.copyOf(descriptionStarts, pages);
+        descriptionLengths = Arrays.copyOf(descriptionLengths, pages);
+        pageEpochs = Arrays.copyOf(pageEpochs, pages);
+        tablesShared = false;
+    }
+
+    private String readText(int row, boolean title) {
+        long stamp = lock.tryOptimisticRead();
+        try {
+            String value = decode(row, title);
+            if (lock.validate(stamp)) {
+                return value;
+            }
+        } catch (RuntimeException e) {
+            // Read half-way through a write (e.g. the arena was just compacted): retry below
+        }
+        stamp = lock.readLock();
+        try {
+            return decode(row, title);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private String decode(int row, boolean title) {
+        int page = row >>> PAGE_SHIFT;
+        int slot = row & PAGE_MASK;
+        int length = title ? titleLengths[page][slot] : descriptionLengths[page][slot];
+        if (length < 0) {
+            return null;
+        }
+        int start = title ? titleStarts[page][slot] : descriptionStarts[page][slot];
+        return new String(text, start, length, StandardCharsets.UTF_8);
+    }
+
+    private int readDay(int row, boolean deleted) {
+        int page = row >>> PAGE_SHIFT;
+        int slot = row & PAGE_MASK;
+        long stamp = lock.tryOptimisticRead();
+        try {
+            int value = deleted ? deletedDays[page][slot] : dueDays[page][slot];
+            if (lock.validate(stamp)) {
+                return value;
+            }
+        } catch (RuntimeException e) {
+            // Read half-way through a write: retry below
+        }
+        stamp = lock.readLock();
+        try {
+            return deleted ? deletedDays[page][slot] : dueDays[page][slot];
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private String readCode(int row, boolean category) {
+        int page = row >>> PAGE_SHIFT;
+        int slot = row & PAGE_MASK;
+        long stamp = lock.tryOptimisticRead();
+        try {
+            String value = valueOf(category ? categories[page][slot] : priorities[page][slot]);
+            if (lock.validate(stamp)) {
+                return value;
+            }
+        } catch (RuntimeException e) {
+            // Read half-way through a write: retry below
+        }
+        stamp = lock.readLock();
+        try {
+            return valueOf(category ? categories[page][slot] : priorities[page][slot]);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private byte readFlags(int row) {
+        int page = row >>> PAGE_SHIFT;
+        int slot = row & PAGE_MASK;
+        long stamp = lock.tryOptimisticRead();
+        try {
+            byte value = flags[page][slot];
+            if (lock.validate(stamp)) {
+                return value;
+            }
+        } catch (RuntimeException e) {
+            // Read half-way through a write: retry below
+        }
+        stamp = lock.readLock();
+        try {
+            return flags[page][slot];
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private byte[] textBytes(int start, int length) {
+        return length < 0 ? null : Arrays.copyOfRange(text, start, start + length);
+    }
+
+    private void setText(int row, String value, boolean title) {
+        setTextBytes(row, value == null ? null : value.getBytes(StandardCharsets.UTF_8), title);
+    }
+
+    private void setTextBytes(int row, byte[] bytes, boolean title) {
+        int page = writablePage(row);
+        int slot = row & PAGE_MASK;
+
+        // 1. The old text (if any) becomes dead space in the arena
+        int oldLength = title ? titleLengths[page][slot] : descriptionLengths[page][slot];
+        if (oldLength > 0) {
+            deadTextBytes += oldLength;
+        }
+
+        // 2. Append the new text at the end of the arena (frozen copies never look past their own end)
+        int start = textSize;
+        int length = -1;
+        if (bytes != null) {
+            ensureTextCapacity(bytes.length);
+            System.arraycopy(bytes, 0, text, textSize, bytes.length);
+            textSize += bytes.length;
+            length = bytes.length;
+        }
+        if (title) {
+            titleStarts[page][slot] = start;
+            titleLengths[page][slot] = length;
+        } else {
+            descriptionStarts[page][slot] = start;
+            descriptionLengths[page][slot] = length;
+        }
+
+        if (deadTextBytes >= MIN_COMPACT_BYTES && deadTextBytes > textSize / 2) {
+            compactText();
+        }
+    }
+
+    private void ensureTextCapacity(int extra) {
+        if (textSize + extra > text.length) {
+            text = Arrays.copyOf(text, Math.max(text.length * 2, textSize + extra));
+        }
+    }
+
+    /**
+     * Copies the live text into a fresh arena, dropping what edits left behind.
+     * Frozen copies keep the old arena.
+     */
+    private void compactText() {
+        byte[] compacted = new byte[Math.max(4096, (textSize - deadTextBytes) * 3 / 2)];
+        int position = 0;
+        for (int row = 0; row < size; row++) {
+            int page = writablePage(row);
+            int slot = row & PAGE_MASK;
+            if (titleLengths[page][slot] >= 0) {
+                System.arraycopy(text, titleStarts[page][slot], compacted, position, titleLengths[page][slot]);
+                titleStarts[page][slot] = position;
+                position += titleLengths[page][slot];
+            }
+            if (descriptionLengths[page][slot] >= 0) {
+                System.arraycopy(text, descriptionStarts[page][slot], compacted, position, descriptionLengths[page][slot]);
+                descriptionStarts[page][slot] = position;
+                position += descriptionLengths[page][slot];
+            }
+        }
+        text = compacted;
+        textSize = position;
+        deadTextBytes = 0;
+    }
+
+    private int codeOf(String value) {
+        if (value == null) {
+            return 0;
+        }
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = nextCode++;
+            if (code == codeValues.length) {
+                codeValues = Arrays.copyOf(codeValues, code * 2); // Frozen copies keep the old array
+            }
+            codeValues[code] = value;
+            codes.put(value, code);
+        }
+        return code;
+    }
+
+    private String valueOf(int code) {
+        return codeValues[code];
+    }
+
+    private static byte flagsOf(boolean isCompleted, boolean isDeleted) {
+        return (byte) ((isCompleted ? FLAG_COMPLETED : 0) | (isDeleted ? FLAG_DELETED : 0));
+    }
+
+    private static int today() {
+        return (int) LocalDate.now().toEpochDay();
+    }
+}
@@ -0,0 +1,381 @@
+package model;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * An immutable list of tasks. Every change returns a new list and leaves this
+ * one as it was, so holding on to a TaskVector is a snapshot of the list that
+ * never changes under you, whichever thread reads it. (The java.util.List
+ * methods that would change it throw UnsupportedOperationException; use
+ * {@link #replace}, {@link #insert}, {@link #delete} and friends instead.)
+ *
+ * It is a tree of nodes with up to {@link #WIDTH} children, tasks in the leaves,
+ * and every branch knowing how many tasks are below each child. A change copies
+ * only the nodes on the path to the task it touches (O(log n), a few small
+ * arrays) and shares everything else with the old list. Bulk changes (addAll,
+ * removing a range) reuse the untouched leaves as they are.
+ */
+public class TaskVector extends AbstractList<Task> implements RandomAccess {
+
+    private static final int WIDTH = 32;
+
+    private static final TaskVector EMPTY = new TaskVector(new Leaf(new Task[0]));
+
+    private final Node root;
+
+    // --- 1. Nodes ---
+
+    private abstract static class Node {
+        abstract int size();
+    }
+
+    private static class Leaf extends Node {
+        final Task[] tasks;
+
+        Leaf(Task[] tasks) {
+            this.tasks = tasks;
+        }
+
+        @Override
+        int size() {
+            return tasks.length;
+        }
+    }
+
+    private static class Branch extends Node {
+        final Node[] children;
+        final int[] ends; // ends[i] = tasks in children 0..i
+
+        Branch(Node[] children) {
+            this.children = children;
+            this.ends = new int[children.length];
+            int total = 0;
+            for (int i = 0; i < children.length; i++) {
+                total += children[i].size();
+                ends[i] = total;
+            }
+        }
+
+        @Override
+        int size() {
+            return ends.length == 0 ? 0 : ends[ends.length - 1];
+        }
+
+        /**
+         * The child holding the task at {@code index}.
+         */
+        int childAt(int index) {
+            int low = 0;
+            int high = ends.length - 1;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (ends[middle] <= index) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        int startOf(int child) {
+            return child == 0 ? 0 : ends[child - 1];
+        }
+    }
+
+    private TaskVector(Node root) {
+        this.root = root;
+    }
+
+    public static TaskVector empty() {
+        return EMPTY;
+    }
+
+    /**
+     * A vector holding the given tasks, built bottom-up in one pass.
+     */
+    public static TaskVector of(Collection<? extends Task> tasks) {
+        List<Node> leaves = new ArrayList<>(tasks.size() / WIDTH + 1);
+        appendLeaves(leaves, tasks.toArray(new Task[0]));
+        return fromLeaves(leaves);
+    }
+
+    // --- 2. Reads ---
+
+    @Override
+    public int size() {
+        return root.size();
+    }
+
+    @Override
+    public Task get(int index) {
+        checkIndex(index, size());
+        Node node = root;
+        while (node instanceof Branch) {
+            Branch branch = (Branch) node;
+            int child = branch.childAt(index);
+            index -= branch.startOf(child);
+            node = branch.children[child];
+        }
+        return ((Leaf) node).tasks[index];
+    }
+
+    /**
+     * Walks the leaves in order instead of going down from the root for every task.
+     */
+    @Override
+    public Iterator<Task> iterator() {
+        return new Iterator<>() {
+            private final List<Leaf> leaves = leaves();
+            private int leaf;
+            private int position;
+
+            @Override
+            public boolean hasNext() {
+                while (leaf < leaves.size() && position == leaves.get(leaf).tasks.length) {
+                    leaf++;
+                    position = 0;
+                }
+                return leaf < leaves.size();
+            }
+
+            @Override
+            public Task next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return leaves.get(leaf).tasks[position++];
+            }
+        };
+    }
+
+    // --- 3. Changes (each returns a new vector) ---
+
+    public TaskVector replace(int index, Task task) {
+        checkIndex(index, size());
+        return new TaskVector(set(root, index, task));
+    }
+
+    /**
+     * Inserts a task at {@code index} (index == size() appends).
+     */
+    public TaskVector insert(int index, Task task) {
+        checkIndex(index, size() + 1);
+        Node[] result = insert(root, index, task);
+        return new TaskVector(result.length == 1 ? result[0] : new Branch(result));
+    }
+
+    public TaskVector delete(int index) {
+        checkIndex(index, size());
+        Node node = remove(root, index);
+        // Drop levels with a single child, so the tree gets shallower as it shrinks
+        while (node instanceof Branch && ((Branch) node).children.length == 1) {
+            node = ((Branch) node).children[0];
+        }
+        return node.size() == 0 ? EMPTY : new TaskVector(node);
+    }
+
+    /**
+     * Inserts many tasks at {@code index}. The leaves before and after stay as
+     * they are; only the leaf at {@code index} is split and the branches rebuilt.
+     */
+    public TaskVector insertAll(int index, Collection<? extends Task> added) {
+        checkIndex(index, size() + 1);
+        if (added.isEmpty()) {
+            return this;
+        }
+        if (size() == 0) {
+            return of(added);
+        }
+        List<Leaf> leaves = leaves();
+        List<Node> result = new ArrayList<>(leaves.size() + added.size() / WIDTH + 2);
+        int start = 0;
+        boolean inserted = false;
+        for (Leaf leaf : leaves) {
+            int end = start + leaf.tasks.length;
+            if (!inserted && index <= end) {
+                // Split this leaf around the new tasks (if the last leaf, they are appended to it)
+                int offset = index - start;
+                Task[] merged = new Task[leaf.tasks.length + added.size()];
+                System.arraycopy(leaf.tasks, 0, merged, 0, offset);
+                int position = offset;
+                for (Task task : added) {
+                    merged[position++] = task;
+                }
+                System.arraycopy(leaf.tasks, offset, merged, position, leaf.tasks.length - offset);
+                appendLeaves(result, merged);
+                inserted = true;
+            } else {
+                result.add(leaf);
+            }
+            start = end;
+        }
+        return fromLeaves(result);
+    }
+
+    /**
+     * Removes the tasks from {@code from} (inclusive) to {@code to} (exclusive).
+     */
+    public TaskVector deleteRange(int from, int to) {
+        checkIndex(from, size() + 1);
+        checkIndex(to, size() + 1);
+        if (from >= to) {
+            return this;
+        }
+        List<Node> result = new ArrayList<>();
+        int start = 0;
+        for (Leaf leaf : leaves()) {
+            int end = start + leaf.tasks.length;
+            if (end <= from || start >= to) {
+                result.add(leaf); // Untouched
+            } else {
+                // Keep the parts of this leaf outside the range
+                int keepBefore = Math.max(0, from - start);
+                int keepAfter = Math.max(0, end - to);
+                if (keepBefore + keepAfter > 0) {
+                    Task[] kept = new Task[keepBefore + keepAfter];
+                    System.arraycopy(leaf.tasks, 0, kept, 0, keepBefore);
+                    System.arraycopy(leaf.tasks, leaf.tasks.length - keepAfter, kept, keepBefore, keepAfter);
+                    result.add(new Leaf(kept));
+                }
+            }
+            start = end;
+        }
+        return fromLeaves(result);
+    }
+
+    // --- 4. Internals ---
+
+    private static Node set(Node node, int index, Task task) {
+        if (node instanceof Leaf) {
+            Task[] tasks = ((Leaf) node).tasks.clone();
+            tasks[index] = task;
+            return new Leaf(tasks);
+        }
+        Branch branch = (Branch) node;
+        int child = branch.childAt(index);
+        Node[] children = branch.children.clone();
+        children[child] = set(children[child], index - branch.startOf(child), task);
+        return new Branch(children);
+    }
+
+    /**
+     * Returns the new node, or two nodes if it had to be split.
+     */
+    private static Node[] insert(Node node, int index, Task task) {
+        if (node instanceof Leaf) {
+            Task[] old = ((Leaf) node).tasks;
+            Task[] tasks = new Task[old.length + 1];
+            System.arraycopy(old, 0, tasks, 0, index);
+            tasks[index] = task;
+            System.arraycopy(old, index, tasks, index + 1, old.length - index);
+            if (tasks.length <= WIDTH) {
+                return new Node[] {new Leaf(tasks)};
+            }
+            int half = tasks.length / 2;
+            return new Node[] {new Leaf(Arrays.copyOfRange(tasks, 0, half)),
+                    new Leaf(Arrays.copyOfRange(tasks, half, tasks.length))};
+        }
+        Branch branch = (Branch) node;
+        // An index at a boundary goes into the child on its left, so appending stays on the right edge
+        int child = index == branch.size() ? branch.children.length - 1 : branch.childAt(index);
+        Node[] replaced = insert(branch.children[child], index - branch.startOf(child), task);
+        Node[] children = new Node[branch.children.length + replaced.length - 1];
+        System.arraycopy(branch.children, 0, children, 0, child);
+        System.arraycopy(replaced, 0, children, child, replaced.length);
+        System.arraycopy(branch.children, child + 1, children, child + replaced.length,
+                branch.children.length - child - 1);
+        if (children.length <= WIDTH) {
+            return new Node[] {new Branch(children)};
+        }
+        int half = children.length / 2;
+        return new Node[] {new Branch(Arrays.copyOfRange(children, 0, half)),
+                new Branch(Arrays.copyOfRange(children, half, children.length))};
+    }
+
+    /**
+     * Returns the node without the task; children left empty are dropped.
+     */
+    private static Node remove(Node node, int index) {
+        if (node instanceof Leaf) {
+            Task[] old = ((Leaf) node).tasks;
+            Task[] tasks = new Task[old.length - 1];
+            System.arraycopy(old, 0, tasks, 0, index);
+            System.arraycopy(old, index + 1, tasks, index, old.length - index - 1);
+            return new Leaf(tasks);
+        }
+        Branch branch = (Branch) node;
+        int child = branch.childAt(index);
+        Node replaced = remove(branch.children[child], index - branch.startOf(child));
+        if (replaced.size() > 0) {
+            Node[] children = branch.children.clone();
+            children[child] = replaced;
+            return new Branch(children);
+        }
+        Node[] children = new Node[branch.children.length - 1];
+        System.arraycopy(branch.children, 0, children, 0, child);
+        System.arraycopy(branch.children, child + 1, children, child, children.length - child);
+        return new Branch(children);
+    }
+
+    /**
+     * The leaves in order (skipping empty ones).
+     */
+    private List<Leaf> leaves() {
+        List<Leaf> leaves = new ArrayList<>(size() / WIDTH + 1);
+        collectLeaves(root, leaves);
+        return leaves;
+    }
+
+    private static void collectLeaves(Node node, List<Leaf> leaves) {
+        if (node instanceof Leaf) {
+            if (node.size() > 0) {
+                leaves.add((Leaf) node);
+            }
+            return;
+        }
+        for (Node child : ((Branch) node).children) {
+            collectLeaves(child, leaves);
+        }
+    }
+
+    /**
+     * Cuts the tasks into full leaves (the last one may be shorter).
+     */
+    private static void appendLeaves(List<Node> leaves, Task[] tasks) {
+        for (int from = 0; from < tasks.length; from += WIDTH) {
+            leaves.add(new Leaf(Arrays.copyOfRange(tasks, from, Math.min(tasks.length, from + WIDTH))));
+        }
+    }
+
+    /**
+     * Builds the branches over a row of leaves, one level at a time.
+     */
+    private static TaskVector fromLeaves(List<Node> level) {
+        if (level.isEmpty()) {
+            return EMPTY;
+        }
+        while (level.size() > 1) {
+            List<Node> parents = new ArrayList<>(level.size() / WIDTH + 1);
+            for (int from = 0; from < level.size(); from += WIDTH) {
+                List<Node> children = level.subList(from, Math.min(level.size(), from + WIDTH));
+                parents.add(new Branch(children.toArray(new Node[0])));
+            }
+            level = parents;
+        }
+        return new TaskVector(level.get(0));
+    }
+
+    private static void checkIndex(int index, int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
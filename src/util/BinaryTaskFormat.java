@@ -0,0 +1,178 @@
+package util;
+
+import model.Task;
+import model.TaskStore;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary snapshot format, much cheaper to load than pretty-printed JSON.
+ *
+ * Layout (all numbers big-endian):
+ *   header      "TODO" magic, u16 version, i64 journal seq, i64 last task id, i32 task count
+ *   dictionaries category names, then priority names (varint count + strings)
+ *   tasks       per task: varint task id, title, description, i32 due date (epoch day),
+ *               varint category code, varint priority code, u8 flags,
+ *               and for a deleted task, i32 day it was deleted (epoch day)
+ *
+ * Version 1 files (still readable) have no task ids: no last task id in the
+ * header and no id in front of each task. Version 2 files have no deletion day.
+ *
+ * Strings are a varint (0 = null, n + 1 = n bytes) followed by UTF-8 bytes.
+ * Category/priority codes are 0 for null, otherwise index + 1 in the dictionary.
+ * The DurableFile checksum trailer follows the last task.
+ */
+public class BinaryTaskFormat {
+
+    static final int MAGIC = 0x544F444F; // "TODO"
+    static final int VERSION = 3;
+    static final int FIRST_VERSION_WITH_IDS = 2;
+    static final int FIRST_VERSION_WITH_DELETED_DAY = 3;
+
+    static final int NO_DATE = Integer.MIN_VALUE;
+    static final int FLAG_COMPLETED = 1;
+    static final int FLAG_DELETED = 2;
+
+    /**
+     * Writes the tasks in binary form.
+     */
+    public static void write(OutputStream target, List<Task> tasks, long journalSeq) throws IOException {
+        // 1. Collect the distinct categories and priorities
+        Map<String, Integer> categories = new LinkedHashMap<>();
+        Map<String, Integer> priorities = new LinkedHashMap<>();
+        for (Task task : tasks) {
+            if (task.getCategory() != null) categories.putIfAbsent(task.getCategory(), categories.size());
+            if (task.getPriority() != null) priorities.putIfAbsent(task.getPriority(), priorities.size());
+        }
+
+        // Small writes, so buffer before they reach the checksummed stream
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(target, 1 << 16));
+
+        // 2. Header and dictionaries
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeLong(journalSeq);
+        out.writeLong(TaskStore.getLastId());
+        out.writeInt(tasks.size());
+        writeDictionary(out, categories);
+        writeDictionary(out, priorities);
+
+        // 3. One record per task
+        for (Task task : tasks) {
+            writeVarint(out, task.getId());
+            writeString(out, task.getTitle());
+            writeString(out, task.getDescription());
+            LocalDate dueDate = task.getDueDate();
+            out.writeInt(dueDate != null ? (int) dueDate.toEpochDay() : NO_DATE);
+            writeVarint(out, code(categories, task.getCategory()));
+            writeVarint(out, code(priorities, task.getPriority()));
+            int flags = (task.isCompleted() ? FLAG_COMPLETED : 0) | (task.isDeleted() ? FLAG_DELETED : 0);
+            out.writeByte(flags);
+            if (task.isDeleted()) {
+                LocalDate deletedOn = task.getDeletedOn();
+                out.writeInt(deletedOn != null ? (int) deletedOn.toEpochDay() : NO_DATE);
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Checks the first bytes of a file for the binary magic number.
+     */
+    public static boolean isBinary(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] start = in.readNBytes(4);
+            return start.length == 4
+                    && ((start[0] & 0xFF) << 24 | (start[1] & 0xFF) << 16 | (start[2] & 0xFF) << 8 | (start[3] & 0xFF)) == MAGIC;
+        }
+    }
+
+    private static int code(Map<String, Integer> dictionary, String value) {
+        return value == null ? 0 : dictionary.get(value) + 1;
+    }
+
+    private static void writeDictionary(DataOutputStream out, Map<String, Integer> dictionary) throws IOException {
+        writeVarint(out, dictionary.size());
+        for (String value : dictionary.keySet()) {
+            writeString(out, value);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            writeVarint(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    private static void writeVarint(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /**
+     * Prints load time and bytes read for the same tasks in both formats.
+     * Usage: java util.BinaryTaskFormat [tasks.json]
+     */
+    public static void main(String[] args) throws IOException {
+        Path source = Path.of(args.length > 0 ? args[0] : "tasks.json");
+
+        // 1. Load the source (either format) and write it out both ways
+        List<Task> tasks = readAll(source);
+        Path json = Files.createTempFile("tasks-compare", ".json");
+        Path binary = Files.createTempFile("tasks-compare", ".bin");
+        DataManager.writeSnapshotFile(json, tasks, 0, false);
+        DataManager.writeSnapshotFile(binary, tasks, 0, true);
+
+        // 2. Time a full load of each one
+        System.out.printf("%-8s %12s %12s %10s%n", "format", "file bytes", "bytes read", "load ms");
+        for (Path file : List.of(json, binary)) {
+            long start = System.nanoTime();
+            long bytesRead;
+            try (TaskReader reader = DataManager.openSnapshotFile(file)) {
+                TaskStore store = new TaskStore();
+                while (reader.next(store) != null) {
+                    // Just decode
+                }
+                bytesRead = reader.getBytesRead();
+            }
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            System.out.printf("%-8s %12d %12d %10d%n", file == json ? "json" : "binary",
+                    Files.size(file), bytesRead, millis);
+        }
+        System.out.println(tasks.size() + " tasks");
+
+        Files.delete(json);
+        Files.delete(binary);
+    }
+
+    private static List<Task> readAll(Path file) throws IOException {
+        List<Task> tasks = new ArrayList<>();
+        try (TaskReader reader = DataManager.openSnapshotFile(file)) {
+            TaskStore store = new TaskStore();
+            Task task;
+            while ((task = reader.next(store)) != null) {
+                tasks.add(task);
+            }
+        }
+        return tasks;
+    }
+}
@@ -0,0 +1,210 @@
+package util;
+
+import model.Task;
+import model.TaskStore;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+
+/**
+ * Reads a binary snapshot (see BinaryTaskFormat) through a memory-mapped buffer,
+ * so the operating system pages the file in and no reflection is involved.
+ */
+public class BinaryTaskReader implements TaskReader {
+
+    private final MappedByteBuffer buffer;
+    private final long contentLength;
+    private final long journalSeq;
+    private final long lastTaskId;
+    private final boolean hasIds;
+    private final boolean hasDeletedDays;
+    private final int taskCount;
+    private final String[] categories;
+    private final String[] priorities;
+
+    private int tasksRead;
+    private byte[] scratch = new byte[256];
+
+    /**
+     * @param contentLength how many bytes of the file to map (the rest is the checksum trailer)
+     */
+    public BinaryTaskReader(Path file, long contentLength) throws IOException {
+        if (contentLength > Integer.MAX_VALUE) {
+            throw new IOException(file + " is too large to map, save it as JSON instead");
+        }
+        this.contentLength = contentLength;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, contentLength);
+        }
+
+        try {
+            if (buffer.getInt() != BinaryTaskFormat.MAGIC) {
+                throw new DurableFile.CorruptFileException(file + ": not a binary task snapshot");
+            }
+            int version = buffer.getShort();
+            if (version < 1 || version > BinaryTaskFormat.VERSION) {
+                throw new IOException(file + ": unsupported snapshot version " + version);
+            }
+            this.hasIds = version >= BinaryTaskFormat.FIRST_VERSION_WITH_IDS;
+            this.hasDeletedDays = version >= BinaryTaskFormat.FIRST_VERSION_WITH_DELETED_DAY;
+            this.journalSeq = buffer.getLong();
+            this.lastTaskId = hasIds ? buffer.getLong() : -1;
+            this.taskCount = buffer.getInt();
+            this.categories = readDictionary();
+            this.priorities = readDictionary();
+        } catch (RuntimeException e) {
+            throw new DurableFile.CorruptFileException(file + ": damaged header");
+        }
+    }
+
+    @Override
+    public Task next(TaskStore store) throws IOException {
+        if (tasksRead == taskCount) {
+            return null;
+        }
+        try {
+            long id = hasIds ? readVarlong() : 0; // 0: an old file, the store hands out a new id
+            String title = readString();
+            String description = readString();
+            LocalDate dueDate = readDate();
+            String category = lookup(categories, readVarint());
+            String priority = lookup(priorities, readVarint());
+            int flags = buffer.get();
+            boolean deleted = (flags & BinaryTaskFormat.FLAG_DELETED) != 0;
+            LocalDate deletedOn = deleted && hasDeletedDays ? readDate() : null;
+            int row = store.addRow(id, title, description, dueDate, category, priority,
+                    (flags & BinaryTaskFormat.FLAG_COMPLETED) != 0, deleted);
+            store.setDeletedOn(row, deletedOn);
+            tasksRead++;
+            return new Task(store, row);
+        } catch (RuntimeException e) {
+            throw new IOException("Damaged task data at task " + tasksRead, e);
+        }
+    }
+
+    /**
+     * Steps over the next task without decoding its text.
+     *
+     * @return the due date (epoch day, or BinaryTaskFormat.NO_DATE) in the high 32 bits
+     *         and the flags in the low byte
+     */
+    public long skip() throws IOException {
+        if (tasksRead == taskCount) {
+            throw new IOException("No more tasks to skip");
+        }
+        try {
+            if (hasIds) {
+                readVarlong();
+            }
+            skipString();
+            skipString();
+            int dueDay = buffer.getInt();
+            readVarint();
+            readVarint();
+            int flags = buffer.get() & 0xFF;
+            if ((flags & BinaryTaskFormat.FLAG_DELETED) != 0 && hasDeletedDays) {
+                buffer.getInt();
+            }
+            tasksRead++;
+            return ((long) dueDay << 32) | flags;
+        } catch (RuntimeException e) {
+            throw new IOException("Damaged task data at task " + tasksRead, e);
+        }
+    }
+
+    /**
+     * Where the next task starts, for {@link #seek}.
+     */
+    public int position() {
+        return buffer.position();
+    }
+
+    /**
+     * Continues reading at a position returned by {@link #position}, which was
+     * the start of task number {@code taskIndex}.
+     */
+    public void seek(int position, int taskIndex) {
+        buffer.position(position);
+        tasksRead = taskIndex;
+    }
+
+    public int getTaskCount() {
+        return taskCount;
+    }
+
+    @Override
+    public long getJournalSeq() { return journalSeq; }
+
+    @Override
+    public long getLastTaskId() { return lastTaskId; }
+
+    @Override
+    public long getBytesRead() { return buffer.position(); }
+
+    @Override
+    public long getContentLength() { return contentLength; }
+
+    @Override
+    public void close() {
+        // Nothing to release: the mapping goes away with the buffer
+    }
+
+    private LocalDate readDate() {
+        int epochDay = buffer.getInt();
+        return epochDay == BinaryTaskFormat.NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    private static String lookup(String[] dictionary, int code) {
+        return code == 0 ? null : dictionary[code - 1];
+    }
+
+    private String[] readDictionary() {
+        String[] values = new String[readVarint()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = readString();
+        }
+        return values;
+    }
+
+    private String readString() {
+        int length = readVarint();
+        if (length == 0) {
+            return null;
+        }
+        length--;
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        buffer.get(scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private void skipString() {
+        int length = readVarint();
+        if (length > 0) {
+            buffer.position(buffer.position() + length - 1);
+        }
+    }
+
+    private int readVarint() {
+        return (int) readVarlong();
+    }
+
+    private long readVarlong() {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -2,73 +2,959 @@ package util;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
-import javafx.collections.FXCollections;
+import com.google.gson.stream.JsonWriter;
+import javafx.application.Platform;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
+import metrics.Counter;
+import metrics.Gauge;
+import metrics.LatencyHistogram;
+import metrics.Metrics;
+import metrics.TaskLoadEvent;
+import metrics.TaskSaveEvent;
 import model.Task;
+import model.TaskField;
+import model.TaskList;
+import model.TaskStore;
 
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.lang.reflect.Type;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
-
-import javafx.beans.Observable;
-import javafx.util.Callback;
+import java.util.concurrent.Semaphore;
 
 public class DataManager {
 
     private static final String SAVE_FILE = "tasks.json";
+    private static final String JOURNAL_FILE = "tasks.journal";
+
+    // The snapshot starts with this comment so we know which journal records it already contains
+    private static final String SEQ_HEADER = JsonTaskReader.SEQ_HEADER;
+    private static final String LAST_ID_HEADER = JsonTaskReader.LAST_ID_HEADER;
+
+    // Snapshot format for new saves: "json" (default) or "binary" (-Dtodo.save.format=binary).
+    // Loading always detects the format from the file itself.
+    private static final boolean SAVE_BINARY = "binary".equalsIgnoreCase(System.getProperty("todo.save.format", "json"));
+
+    // Browse a big binary save file page by page instead of loading it (-Dtodo.table.paged=true).
+    // The table is read-only in this mode; todo.table.cachePages bounds how many pages stay decoded.
+    private static final boolean TABLE_PAGED = Boolean.getBoolean("todo.table.paged");
+    private static final int TABLE_CACHE_PAGES = Integer.getInteger("todo.table.cachePages", 64);
+
+    // Write-behind settings (override with -Dtodo.save.debounceMs / -Dtodo.save.maxDelayMs)
+    private static final long SAVE_DEBOUNCE_MS = Long.getLong("todo.save.debounceMs", 300);
+    private static final long SAVE_MAX_DELAY_MS = Long.getLong("todo.save.maxDelayMs", 2000);
+
+    // The journal is folded into a new snapshot once it grows past either limit
+    private static final int JOURNAL_MAX_RECORDS = Integer.getInteger("todo.journal.maxRecords", 10_000);
+    private static final long JOURNAL_MAX_BYTES = Long.getLong("todo.journal.maxBytes", 4L << 20);
+
+    // Async loading publishes small chunks so the first rows appear quickly
+    private static final int FIRST_CHUNK_SIZE = 200;
+    private static final int CHUNK_SIZE = 5_000;
+    private static final int MAX_CHUNKS_IN_FLIGHT = 2;
+
+    // Tasks streamed from one file into another go through stores of this many rows
+    private static final int STREAM_STORE_ROWS = 4096;
+
+    // Load and save timings, sizes and task counts (see metrics.Metrics)
+    private static final LatencyHistogram loadTime = Metrics.histogram("load.duration");
+    private static final LatencyHistogram readTime = Metrics.histogram("load.read");
+    private static final Gauge loadedTaskCount = Metrics.gauge("load.tasks");
+    private static final Gauge loadedBytes = Metrics.gauge("load.bytes");
+    private static final LatencyHistogram snapshotTime = Metrics.histogram("save.snapshot");
+    private static final LatencyHistogram saveTime = Metrics.histogram("save.duration");
+    private static final Gauge savedTaskCount = Metrics.gauge("save.tasks");
+    private static final Gauge savedBytes = Metrics.gauge("save.bytes");
+    private static final Counter saveFailures = Metrics.counter("save.failures");
+    private static volatile String lastReadFormat; // For the load event: set by reportLoad
+
+    private static TaskPersister<Snapshot> persister;
+    private static TaskJournal journal;
+
+    // Set while loaded tasks are being added, so those adds are not journaled again
+    private static boolean publishing;
+    private static volatile boolean loading;
+
+    // --- Sharing the save file with other programs (see SaveFileLock and SaveFileWatcher) ---
+    private static SaveFileLock saveLock;
+    private static volatile boolean readOnly; // Another program holds the lock: nothing is saved
+    // The tasks as the save file holds them, as far as we know: what we last wrote or loaded.
+    // The base an outside change is compared to.
+    private static volatile List<Task> lastSavedTasks;
+    private static volatile String lastOwnSave; // Fingerprint of the save file we last wrote
+    private static volatile boolean externalChangesWatched; // A SaveFileWatcher is running
+    private static volatile Snapshot heldSave; // Not written because an outside change waits to be merged
 
+    /**
+     * The task list together with the last journal record it contains.
+     */
+    private static class Snapshot {
+        final List<Task> tasks;
+        final long journalSeq;
+        boolean migrated; // Read from a file without task ids
+
+        Snapshot(List<Task> tasks, long journalSeq) {
+            this.tasks = tasks;
+            this.journalSeq = journalSeq;
+        }
+    }
+
+    // For writing tasks: this Gson can't read them (see TaskTypeAdapter)
     private static Gson createGson() {
         return new GsonBuilder()
                 .registerTypeAdapter(LocalDate.class, new LocalDateAdapter())
+                .registerTypeAdapter(Task.class, new TaskTypeAdapter())
                 .setPrettyPrinting()
                 .create();
     }
 
+    // Journal records are one line each, so no pretty printing there. The adapter
+    // decides where the tasks of records read back go (a plain one only writes).
+    private static Gson createCompactGson(TaskTypeAdapter taskAdapter) {
+        return new GsonBuilder()
+                .registerTypeAdapter(LocalDate.class, new LocalDateAdapter())
+                .registerTypeAdapter(Task.class, taskAdapter)
+                .create();
+    }
+
+    /**
+     * Creates an empty "smart" list that fires update events when a task's
+     * completed flag, due date or deleted flag changes. Unlike a list with an
+     * extractor, it doesn't create JavaFX properties for every task to do that.
+     */
+    public static TaskList createTaskList() {
+        return new TaskList(EnumSet.of(TaskField.COMPLETED, TaskField.DUE_DATE, TaskField.DELETED));
+    }
+
+    /**
+     * Loads every task before returning (snapshot plus journal replay).
+     * The UI uses loadTasksAsync instead so it does not block the JavaFX thread.
+     */
     public static ObservableList<Task> loadTasks() {
-        Gson gson = createGson();
+        long start = System.nanoTime();
+        TaskLoadEvent event = new TaskLoadEvent();
+        event.begin();
+        ObservableList<Task> observableTasks = createTaskList();
+
+        // 1. Load the tasks from the newest save file that passes its checksum
+        Snapshot snapshot = readNewestGoodGeneration(TaskStore.getDefault());
+        List<Task> loadedTasks = snapshot != null ? snapshot.tasks : new ArrayList<>();
+        long snapshotSeq = snapshot != null ? snapshot.journalSeq : 0;
+
+        // 2. Re-apply the edits that were journaled after that snapshot
+        List<TaskJournal.Record> records = readJournal(TaskStore.getDefault(), snapshot == null);
+        replayJournal(loadedTasks, records, snapshotSeq);
+
+        // 3. Add all the loaded tasks into our smart list
+        observableTasks.addAll(loadedTasks);
+        if (snapshot != null && snapshot.migrated) {
+            saveMigratedTasks(observableTasks);
+        }
+        loadTime.recordSince(start);
+        loadedTaskCount.set(observableTasks.size());
+        commitLoadEvent(event, observableTasks.size());
+        return observableTasks;
+    }
+
+    /**
+     * Loads the tasks on a background thread and adds them to {@code target} in chunks,
+     * so the table can show the first rows long before a big file is fully parsed.
+     * The listener is called on the JavaFX thread. Journal replay happens at the end,
+     * so the list should not be edited until onFinished has been called.
+     */
+    public static void loadTasksAsync(ObservableList<Task> target, TaskLoadListener listener) {
+        loading = true;
+        long start = System.nanoTime();
+        TaskLoadEvent event = new TaskLoadEvent(); // Committed on the JavaFX thread when done
+        event.begin();
+
+        Thread loader = new Thread(() -> {
+            Semaphore chunksInFlight = new Semaphore(MAX_CHUNKS_IN_FLIGHT);
+            int[] published = {0};
+            long snapshotSeq = 0;
+            boolean usedSnapshot = false;
+            boolean migrated = false;
+
+            // 1. Stream the newest good generation, publishing a chunk at a time
+            try (TaskReader reader = openNewestGoodGeneration()) {
+                if (reader != null) {
+                    usedSnapshot = true;
+                    snapshotSeq = reader.getJournalSeq();
+                    migrated = reader.getLastTaskId() < 0;
+                    int chunkSize = FIRST_CHUNK_SIZE; // Small first page so something shows up quickly
+                    List<Task> chunk = new ArrayList<>(chunkSize);
+                    int parsed = 0;
+                    Task task;
+                    while ((task = reader.next(TaskStore.getDefault())) != null) {
+                        parsed++;
+                        chunk.add(task);
+                        if (chunk.size() == chunkSize) {
+                            publishChunk(target, chunk, reader, listener, chunksInFlight, published, start);
+                            chunkSize = CHUNK_SIZE;
+                            chunk = new ArrayList<>(chunkSize);
+                        }
+                    }
+                    publishChunk(target, chunk, reader, listener, chunksInFlight, published, start);
+                    reportLoad(reader, parsed, start);
+                }
+            } catch (IOException e) {
+                System.err.println("Error while loading tasks, the list may be incomplete: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            // 2. Read the journal here, then replay it on the JavaFX thread once everything is in
+            List<TaskJournal.Record> records = readJournal(TaskStore.getDefault(), !usedSnapshot);
+            long seq = snapshotSeq;
+            boolean saveIds = migrated;
+            Platform.runLater(() -> {
+                // What the file holds, before the journal goes on top
+                lastSavedTasks = target instanceof TaskList ? ((TaskList) target).snapshot() : TaskStore.snapshot(target);
+                publishing = true;
+                try {
+                    replayJournal(target, records, seq);
+                } finally {
+                    publishing = false;
+                    loading = false;
+                }
+                if (saveIds) {
+                    saveMigratedTasks(target);
+                }
+                loadTime.recordSince(start);
+                loadedTaskCount.set(target.size());
+                commitLoadEvent(event, target.size());
+                long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+                System.out.println("Loaded " + target.size() + " tasks in " + elapsedMillis + " ms");
+                listener.onFinished(target.size(), elapsedMillis);
+            });
+        }, "task-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Hands one chunk to the JavaFX thread. At most a couple of chunks wait in the
+     * event queue at a time, so a fast parser cannot flood the UI thread.
+     */
+    private static void publishChunk(ObservableList<Task> target, List<Task> chunk, TaskReader reader,
+                                     TaskLoadListener listener, Semaphore chunksInFlight, int[] published,
+                                     long start) throws InterruptedException {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        double fraction = reader.getContentLength() > 0
+                ? (double) reader.getBytesRead() / reader.getContentLength() : 1.0;
+
+        chunksInFlight.acquire();
+        Platform.runLater(() -> {
+            publishing = true;
+            try {
+                target.addAll(chunk);
+            } finally {
+                publishing = false;
+                chunksInFlight.release();
+            }
+            if (published[0] == 0) {
+                System.out.println("First " + chunk.size() + " tasks visible after "
+                        + (System.nanoTime() - start) / 1_000_000 + " ms");
+            }
+            published[0] += chunk.size();
+            listener.onProgress(published[0], fraction);
+        });
+    }
+
+    /**
+     * The save file was written before tasks had ids, so the ids just handed out
+     * only exist in memory: save once so they stay the same from now on.
+     */
+    private static void saveMigratedTasks(List<Task> tasks) {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        System.out.println("Gave " + tasks.size() + " tasks from an older save file an id, saving them.");
+        saveTasks(tasks);
+    }
+
+    /**
+     * True until an async load (including journal replay) has finished.
+     */
+    public static boolean isLoading() {
+        return loading;
+    }
 
-        // 1. Define the "extractor" that will watch for changes
-        Callback<Task, Observable[]> extractor = task -> new Observable[]{
-                task.completedProperty(), // Will fire an update when 'completed' changes
-                task.dueDateProperty()    // Will fire an update when 'dueDate' changes
-        };
+    /**
+     * Reads the journal, the tasks of its records into the given store.
+     */
+    private static List<TaskJournal.Record> readJournal(TaskStore store, boolean noSnapshot) {
+        List<TaskJournal.Record> records = TaskJournal.readAll(Path.of(JOURNAL_FILE),
+                createCompactGson(new TaskTypeAdapter(store)));
+        if (noSnapshot && records.isEmpty()) {
+            System.out.println("No save file found. Starting with a new list.");
+        }
+        return records;
+    }
+
+    private static void replayJournal(List<Task> tasks, List<TaskJournal.Record> records, long snapshotSeq) {
+        if (!TaskJournal.replay(tasks, records, snapshotSeq)) {
+            System.err.println("Task journal does not match the save file, some recent edits were skipped.");
+        }
+        getJournal().startAfter(snapshotSeq);
+        getJournal().resume(records);
+    }
 
-        // 2. Create a new, empty "smart" list that USES this extractor
-        //    (This is a valid and simple constructor)
-        ObservableList<Task> observableTasks = FXCollections.observableArrayList(extractor);
+    /**
+     * Tries the save file and then its previous generation, returning the first one
+     * that is complete and parses, its tasks read into the given store. Returns null
+     * if there is nothing usable.
+     */
+    private static Snapshot readNewestGoodGeneration(TaskStore store) {
+        Path saveFile = Path.of(SAVE_FILE);
+        for (Path candidate : DurableFile.generations(saveFile)) {
+            if (!Files.exists(candidate)) {
+                continue;
+            }
+            long start = System.nanoTime();
+            try (TaskReader reader = openGeneration(candidate, true)) {
+                Snapshot snapshot = readAll(reader, store);
+                if (candidate != saveFile) {
+                    System.out.println("Recovered tasks from the previous save: " + candidate);
+                }
+                reportLoad(reader, snapshot.tasks.size(), start);
+                return snapshot;
+            } catch (IOException e) {
+                System.err.println("Save file is damaged, skipping it: " + e.getMessage());
+            }
+        }
+        keepDamagedSaveFile(saveFile);
+        return null;
+    }
 
-        try (FileReader reader = new FileReader(SAVE_FILE)) {
-            Type taskListType = new TypeToken<ArrayList<Task>>() {}.getType();
+    /**
+     * Reads the newest generation that passes its checksum, without what loading
+     * does on the side (load metrics, messages, keeping a damaged file aside):
+     * for compaction, which reads the files again while the app runs.
+     */
+    private static Snapshot readNewestGoodGenerationQuietly(TaskStore store) {
+        for (Path candidate : DurableFile.generations(Path.of(SAVE_FILE))) {
+            if (!Files.exists(candidate)) {
+                continue;
+            }
+            try (TaskReader reader = openGeneration(candidate, true)) {
+                return readAll(reader, store);
+            } catch (IOException e) {
+                // Try the previous generation
+            }
+        }
+        return null;
+    }
 
-            // 3. Load the tasks from the JSON file into a temporary, simple list
-            List<Task> loadedTasks = gson.fromJson(reader, taskListType);
+    private static Snapshot readAll(TaskReader reader, TaskStore store) throws IOException {
+        List<Task> tasks = new ArrayList<>();
+        Task task;
+        while ((task = reader.next(store)) != null) {
+            tasks.add(task);
+        }
+        Snapshot snapshot = new Snapshot(tasks, reader.getJournalSeq());
+        snapshot.migrated = reader.getLastTaskId() < 0;
+        return snapshot;
+    }
 
-            if (loadedTasks != null) {
-                // 4. Add all the loaded tasks into our new smart list
-                observableTasks.addAll(loadedTasks);
+    /**
+     * Like readNewestGoodGeneration, but returns an open reader so the caller can
+     * stream the tasks. The checksum is verified before any task is handed out.
+     */
+    private static TaskReader openNewestGoodGeneration() {
+        Path saveFile = Path.of(SAVE_FILE);
+        for (Path candidate : DurableFile.generations(saveFile)) {
+            if (!Files.exists(candidate)) {
+                continue;
             }
+            try {
+                TaskReader reader = openGeneration(candidate, true);
+                if (candidate != saveFile) {
+                    System.out.println("Recovered tasks from the previous save: " + candidate);
+                }
+                return reader;
+            } catch (IOException e) {
+                System.err.println("Save file is damaged, skipping it: " + e.getMessage());
+            }
+        }
+        keepDamagedSaveFile(saveFile);
+        return null;
+    }
 
+    public static boolean isPagedMode() {
+        return TABLE_PAGED;
+    }
+
+    /**
+     * Opens the newest good save file for paged browsing. Only binary snapshots
+     * can be read page by page; returns null (so the caller loads normally) for
+     * a JSON save file or when there is no usable one.
+     * Journal records newer than the snapshot are not shown in this mode.
+     */
+    public static PagedTaskSource openPagedTaskSource() {
+        Path saveFile = Path.of(SAVE_FILE);
+        for (Path candidate : DurableFile.generations(saveFile)) {
+            if (!Files.exists(candidate)) {
+                continue;
+            }
+            long start = System.nanoTime();
+            try {
+                long contentLength = DurableFile.verify(candidate);
+                if (!BinaryTaskFormat.isBinary(candidate)) {
+                    System.out.println("Paged browsing needs a binary save file (-Dtodo.save.format=binary), loading normally.");
+                    return null;
+                }
+                PagedTaskSource source = new PagedTaskSource(candidate, contentLength, TABLE_CACHE_PAGES);
+                System.out.println("Opened " + source.size() + " tasks for paged browsing in "
+                        + (System.nanoTime() - start) / 1_000_000 + " ms");
+                int newer = 0;
+                for (TaskJournal.Record record : readJournal(new TaskStore(), false)) { // Only counted
+                    if (record.getSeq() > source.getJournalSeq()) {
+                        newer++;
+                    }
+                }
+                if (newer > 0) {
+                    System.out.println(newer + " journaled edits are newer than the save file and are not shown.");
+                }
+                return source;
+            } catch (IOException e) {
+                System.err.println("Save file is damaged, skipping it: " + e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Opens a snapshot file of either format after checking its checksum.
+     */
+    public static TaskReader openSnapshotFile(Path file) throws IOException {
+        return openGeneration(file, true);
+    }
+
+    /**
+     * Opens a snapshot file of either format; with {@code checkChecksum} false only
+     * the trailer is checked (see {@link DurableFile#contentLength}), so a big file
+     * can be streamed from the first byte without reading it twice.
+     */
+    public static TaskReader openSnapshotFile(Path file, boolean checkChecksum) throws IOException {
+        return openGeneration(file, checkChecksum);
+    }
+
+    private static TaskReader openGeneration(Path file, boolean checkChecksum) throws IOException {
+        long contentLength = checkChecksum ? DurableFile.verify(file) : DurableFile.contentLength(file);
+        TaskReader reader = BinaryTaskFormat.isBinary(file)
+                ? new BinaryTaskReader(file, contentLength)
+                : new JsonTaskReader(file, contentLength);
+        // Ids of tasks deleted before the file was saved are not handed out again either
+        TaskStore.reserveIds(reader.getLastTaskId());
+        return reader;
+    }
+
+    private static void commitLoadEvent(TaskLoadEvent event, int taskCount) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.tasks = taskCount;
+            event.bytes = loadedBytes.get();
+            event.format = lastReadFormat != null ? lastReadFormat : "none";
+            event.commit();
+        }
+    }
+
+    private static void reportLoad(TaskReader reader, int taskCount, long startNanos) {
+        readTime.recordSince(startNanos);
+        loadedBytes.set(reader.getBytesRead());
+        String format = reader instanceof BinaryTaskReader ? "binary" : "json";
+        lastReadFormat = format;
+        System.out.println("Read " + taskCount + " tasks (" + format + ", " + reader.getBytesRead()
+                + " bytes) in " + (System.nanoTime() - startNanos) / 1_000_000 + " ms");
+    }
+
+    /**
+     * If the save file exists but could not be used, keep a copy of it instead of
+     * letting the next save rotate it away.
+     */
+    private static void keepDamagedSaveFile(Path saveFile) {
+        if (!Files.exists(saveFile)) {
+            return;
+        }
+        try {
+            Files.copy(saveFile, saveFile.resolveSibling(SAVE_FILE + ".corrupt"), StandardCopyOption.REPLACE_EXISTING);
         } catch (IOException e) {
-            System.out.println("No save file found or file is empty. Starting with a new list.");
+            // Nothing more we can do here
         }
+        System.err.println("No usable save file found.");
+    }
 
-        // 5. Return the smart list (it's either full of tasks or empty)
-        return observableTasks;
+    /**
+     * Journals the changes described by a list change event: one small record per
+     * added, removed or updated task, so an edit costs the same no matter how big
+     * the list is. Call this from the list's ListChangeListener.
+     */
+    public static void recordChanges(ListChangeListener.Change<? extends Task> change) {
+        if (publishing || readOnly) {
+            return; // Tasks coming from the save file are already on disk
+        }
+        TaskJournal taskJournal = getJournal();
+        List<? extends Task> list = change.getList();
+
+        // A big batch (e.g. a bulk edit of the whole list) is cheaper as one snapshot
+        // than as a journal record per task, which would only be compacted right away
+        if (countJournalRecords(change) > JOURNAL_MAX_RECORDS) {
+            saveTasks(list);
+            return;
+        }
+        change.reset();
+
+        while (change.next()) {
+            if (change.wasPermutated()) {
+                // Reordering is rare; just write the whole list again
+                saveTasks(list);
+            } else if (change.wasReplaced() && change.getRemovedSize() == change.getAddedSize()) {
+                // list.set(...) - e.g. after editing a task in the form. An update names the
+                // task it changes, so a task put in another one's place is a delete and an add.
+                List<? extends Task> removed = change.getRemoved();
+                for (int i = change.getFrom(); i < change.getTo(); i++) {
+                    Task task = list.get(i);
+                    long oldId = removed.get(i - change.getFrom()).getId();
+                    if (oldId != task.getId()) {
+                        taskJournal.recordDelete(i, new long[] {oldId});
+                        taskJournal.recordAdd(i, task);
+                    } else {
+                        taskJournal.recordUpdate(i, task);
+                    }
+                }
+            } else if (change.wasUpdated()) {
+                // A watched property changed (completed, due date, moved to or out of the trash)
+                for (int i = change.getFrom(); i < change.getTo(); i++) {
+                    taskJournal.recordUpdate(i, list.get(i));
+                }
+            } else {
+                if (change.wasRemoved()) {
+                    List<? extends Task> removed = change.getRemoved();
+                    long[] ids = new long[removed.size()];
+                    for (int i = 0; i < ids.length; i++) {
+                        ids[i] = removed.get(i).getId();
+                    }
+                    taskJournal.recordDelete(change.getFrom(), ids);
+                }
+                if (change.wasAdded()) {
+                    for (int i = change.getFrom(); i < change.getTo(); i++) {
+                        taskJournal.recordAdd(i, list.get(i));
+                    }
+                }
+            }
+        }
     }
 
-    public static void saveTasks(ObservableList<Task> tasks) {
-        Gson gson = createGson();
-        try (FileWriter writer = new FileWriter(SAVE_FILE)) {
-            gson.toJson(tasks, writer);
+    /**
+     * How many journal records recordChanges would write for this change.
+     */
+    private static int countJournalRecords(ListChangeListener.Change<? extends Task> change) {
+        int records = 0;
+        while (change.next()) {
+            if (change.wasPermutated()) {
+                records++; // Saved as a whole anyway
+            } else if (change.wasUpdated() || change.wasAdded()) {
+                records += change.getTo() - change.getFrom();
+            }
+            if (change.wasRemoved()) {
+                records += change.getRemovedSize(); // One record per range, but it lists every id
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Schedules a full save of the given list. This only snapshots the tasks (free for
+     * a TaskList, one column copy otherwise) on the calling thread; the file is written
+     * later on the persister thread, and a burst of changes ends up as a single write.
+     */
+    public static void saveTasks(List<? extends Task> tasks) {
+        if (readOnly) {
+            return; // The save file belongs to whoever holds its lock
+        }
+        long start = System.nanoTime();
+        List<Task> copy = tasks instanceof TaskList
+                ? ((TaskList) tasks).snapshot() // Shares the list and the task columns until they change
+                : TaskStore.snapshot(tasks); // One column-by-column copy of the whole list
+        snapshotTime.recordSince(start);
+        long journalSeq = getJournal().getLastAssignedSeq();
+        getPersister().submit(new Snapshot(Collections.unmodifiableList(copy), journalSeq));
+    }
+
+    /**
+     * Blocks until every scheduled save and journal record has been written to disk.
+     * Call this before the application exits.
+     */
+    public static void flushSaves() {
+        TaskPersister<Snapshot> taskPersister = getPersister();
+        taskPersister.flush();
+        taskPersister.runAndWait(getJournal()::force);
+    }
+
+    private static synchronized TaskPersister<Snapshot> getPersister() {
+        if (persister == null) {
+            persister = new TaskPersister<>(DataManager::writeSnapshot, SAVE_DEBOUNCE_MS, SAVE_MAX_DELAY_MS);
+        }
+        return persister;
+    }
+
+    private static synchronized TaskJournal getJournal() {
+        if (journal == null) {
+            journal = new TaskJournal(Path.of(JOURNAL_FILE), createCompactGson(new TaskTypeAdapter()),
+                    getPersister()::execute, DataManager::compactIfNeeded);
+        }
+        return journal;
+    }
+
+    /**
+     * Writes the tasks to the save file right away (runs on the persister thread).
+     * The old file stays intact until the new one is completely on disk.
+     */
+    private static void writeSnapshot(Snapshot snapshot) {
+        long start = System.nanoTime();
+        TaskSaveEvent event = new TaskSaveEvent();
+        event.begin();
+        event.tasks = snapshot.tasks.size();
+        event.format = SAVE_BINARY ? "binary" : "json";
+        try {
+            Path saveFile = Path.of(SAVE_FILE);
+            // Changed by someone else since our last save: the watcher merges that first, then saves again
+            if (externalChangesWatched && lastOwnSave != null && Files.exists(saveFile) && !isOwnSave()) {
+                System.out.println(SAVE_FILE + " was changed outside the app, saving once that is merged.");
+                heldSave = snapshot;
+                return;
+            }
+            heldSave = null;
+            writeSnapshotFile(saveFile, snapshot.tasks, snapshot.journalSeq, SAVE_BINARY);
+            saveTime.recordSince(start);
+            savedTaskCount.set(snapshot.tasks.size());
+            savedBytes.set(Files.size(saveFile));
+            lastSavedTasks = snapshot.tasks;
+            lastOwnSave = fingerprint(saveFile);
+            event.bytes = savedBytes.get();
+            event.succeeded = true;
             System.out.println("Tasks saved successfully to " + SAVE_FILE);
         } catch (IOException e) {
+            saveFailures.increment();
             System.err.println("Error saving tasks to file!");
             e.printStackTrace();
+            return;
+        } finally {
+            event.commit();
+        }
+
+        // Every journaled edit is now part of the snapshot, so the journal can start over
+        TaskJournal taskJournal = getJournal();
+        if (taskJournal.getLastWrittenSeq() <= snapshot.journalSeq) {
+            taskJournal.truncate();
+        }
+    }
+
+    /**
+     * Atomically writes a snapshot file in the given format.
+     */
+    public static void writeSnapshotFile(Path file, List<Task> tasks, long journalSeq, boolean binary) throws IOException {
+        if (binary) {
+            DurableFile.write(file, out -> BinaryTaskFormat.write(out, tasks, journalSeq));
+            return;
         }
+        Gson gson = createGson();
+        DurableFile.write(file, out -> {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            writer.write(SEQ_HEADER + journalSeq + "\n");
+            writer.write(LAST_ID_HEADER + TaskStore.getLastId() + "\n");
+            gson.toJson(tasks, writer);
+            writer.flush();
+        });
+    }
+
+    /**
+     * Atomically writes a JSON snapshot file of the tasks a reader hands out, one
+     * at a time, so the list never has to be in memory. The journal position is
+     * the reader's, so journaled edits newer than its file still apply afterwards.
+     */
+    public static void writeSnapshotFile(Path file, TaskReader tasks) throws IOException {
+        DurableFile.write(file, out -> {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            writer.write(SEQ_HEADER + tasks.getJournalSeq() + "\n");
+            writer.write(LAST_ID_HEADER + TaskStore.getLastId() + "\n");
+            writeJsonArray(tasks, writer);
+            writer.flush();
+        });
+    }
+
+    /**
+     * Writes the tasks a reader hands out as plain JSON (no header or checksum),
+     * one at a time. The writer is flushed, not closed.
+     */
+    public static void exportJson(TaskReader tasks, Writer target) throws IOException {
+        writeJsonArray(tasks, target);
+        target.flush();
+    }
+
+    // The same JSON createGson().toJson(list) writes, without needing the list (or a Gson).
+    // The tasks are read into a store of their own, started over every STREAM_STORE_ROWS.
+    private static void writeJsonArray(TaskReader tasks, Writer target) throws IOException {
+        TaskTypeAdapter adapter = new TaskTypeAdapter();
+        JsonWriter json = new JsonWriter(target);
+        json.setIndent("  "); // Gson's pretty printing
+        json.setHtmlSafe(true); // And its escaping
+        json.beginArray();
+        TaskStore store = new TaskStore(STREAM_STORE_ROWS);
+        Task task;
+        while ((task = tasks.next(store)) != null) {
+            adapter.write(json, task);
+            if (store.size() >= STREAM_STORE_ROWS) {
+                store = new TaskStore(STREAM_STORE_ROWS);
+            }
+        }
+        json.endArray();
+        json.flush();
+    }
+
+    /**
+     * True if the app's journal holds edits that are not in {@code saveFile} yet
+     * (they are folded in the next time the app loads it).
+     */
+    public static boolean hasJournaledEdits(Path saveFile) {
+        try {
+            Path journalFile = Path.of(JOURNAL_FILE);
+            return saveFile.toAbsolutePath().normalize().equals(Path.of(SAVE_FILE).toAbsolutePath())
+                    && Files.exists(journalFile) && Files.size(journalFile) > 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes the tasks as plain JSON (no header or checksum), for other tools to read.
+     */
+    public static void exportJson(List<? extends Task> tasks, Path target) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+            createGson().toJson(tasks, writer);
+        }
+    }
+
+    // --- Sharing the save file ---
+
+    /**
+     * Takes the save file's lock for this app, for as long as it runs. Returns
+     * false if another program holds it: then this app is read-only (nothing is
+     * saved or journaled) until {@link #takeOverSaves} succeeds.
+     */
+    public static boolean acquireSaveLock() {
+        try {
+            saveLock = SaveFileLock.tryAcquire(Path.of(SAVE_FILE));
+        } catch (IOException e) {
+            System.err.println("Could not lock " + SAVE_FILE + ", saving anyway: " + e.getMessage());
+            return true;
+        }
+        readOnly = saveLock == null;
+        if (readOnly) {
+            System.out.println(SAVE_FILE + " is open in " + SaveFileLock.describeHolder(Path.of(SAVE_FILE))
+                    + ", opening it read-only.");
+        }
+        return !readOnly;
+    }
+
+    public static boolean isReadOnly() {
+        return readOnly;
+    }
+
+    public static String describeSaveLockHolder() {
+        return SaveFileLock.describeHolder(Path.of(SAVE_FILE));
+    }
+
+    static Path getSaveFile() {
+        return Path.of(SAVE_FILE);
+    }
+
+    static Path getJournalFile() {
+        return Path.of(JOURNAL_FILE);
+    }
+
+    /**
+     * The save file as this app last wrote or loaded it, or null before loading is done.
+     */
+    static List<Task> getLastSavedTasks() {
+        return lastSavedTasks;
+    }
+
+    /**
+     * True if the save file is still the one this app wrote last.
+     */
+    static boolean isOwnSave() {
+        String current = fingerprint(Path.of(SAVE_FILE));
+        return current != null && current.equals(lastOwnSave);
+    }
+
+    /**
+     * The tasks on disk right now: the save file, plus (with {@code withJournal})
+     * the journal replayed on top, which is what another instance of the app has.
+     * The tasks live in a store of their own, which goes when the DiskState does.
+     */
+    static class DiskState {
+        final List<Task> tasks;
+        final long snapshotSeq;
+        final List<TaskJournal.Record> records;
+
+        DiskState(List<Task> tasks, long snapshotSeq, List<TaskJournal.Record> records) {
+            this.tasks = tasks;
+            this.snapshotSeq = snapshotSeq;
+            this.records = records;
+        }
+    }
+
+    /**
+     * Reads the save file (only the newest generation, checksum checked) and with
+     * {@code withJournal} replays the journal on it. Returns null if the files are
+     * missing or caught in the middle of a write; the next change to them will tell.
+     */
+    static DiskState readDiskState(boolean withJournal) {
+        Path saveFile = Path.of(SAVE_FILE);
+        TaskStore store = new TaskStore(); // Not the default store: it would keep every read for good
+        List<Task> tasks = new ArrayList<>();
+        long snapshotSeq = 0;
+        if (!Files.exists(saveFile)) {
+            // Gone in the middle of a save (the old one is already the previous generation),
+            // or deleted; either way nothing to go by, unless there never was a save file
+            if (!withJournal || Files.exists(DurableFile.previousGeneration(saveFile))) {
+                return null;
+            }
+        } else {
+            try (TaskReader reader = openGeneration(saveFile, true)) {
+                Task task;
+                while ((task = reader.next(store)) != null) {
+                    tasks.add(task);
+                }
+                snapshotSeq = reader.getJournalSeq();
+            } catch (IOException e) {
+                return null; // Half written (by a program that doesn't write atomically): wait for the rest
+            }
+        }
+        List<TaskJournal.Record> records = new ArrayList<>();
+        if (withJournal) {
+            records = TaskJournal.readAll(Path.of(JOURNAL_FILE), createCompactGson(new TaskTypeAdapter(store)));
+            if (!TaskJournal.replay(tasks, records, snapshotSeq)) {
+                return null;
+            }
+        }
+        return new DiskState(tasks, snapshotSeq, records);
+    }
+
+    static void setExternalChangesWatched(boolean watched) {
+        externalChangesWatched = watched;
+        // Nobody merges from now on (the app is closing): write what was held back after all
+        Snapshot held = heldSave;
+        if (!watched && held != null) {
+            getPersister().submit(held);
+        }
+    }
+
+    /**
+     * Called on the JavaFX thread once outside changes are in the list. The disk's
+     * tasks are the new base; and unless read-only, everything is saved right away,
+     * so the file holds this app's version of any conflicting task, and the journal
+     * (numbered against our older snapshot) starts over.
+     */
+    static void externalChangesApplied(DiskState disk, List<? extends Task> tasks) {
+        lastSavedTasks = disk.tasks;
+        if (!readOnly) {
+            lastOwnSave = fingerprint(Path.of(SAVE_FILE)); // Merged: ours to overwrite now
+            saveTasks(tasks);
+        }
+    }
+
+    /**
+     * The save file changed but can't be read (not even after the burst of writes
+     * settled): writes this app's tasks over it; the file it replaces is kept as the
+     * previous generation. JavaFX thread.
+     */
+    static void keepOwnVersion(List<? extends Task> tasks) {
+        if (readOnly) {
+            return;
+        }
+        System.err.println(SAVE_FILE + " was changed outside the app but can't be read, writing ours over it.");
+        lastOwnSave = fingerprint(Path.of(SAVE_FILE));
+        saveTasks(tasks);
+    }
+
+    /**
+     * For a read-only app once the other program lets go of the save file: takes
+     * its lock and carries on its journal. Call on the JavaFX thread, after the
+     * list has caught up with {@code disk}. Returns false if the lock is still taken.
+     */
+    static boolean takeOverSaves(DiskState disk) {
+        try {
+            saveLock = SaveFileLock.tryAcquire(Path.of(SAVE_FILE));
+        } catch (IOException e) {
+            return false;
+        }
+        if (saveLock == null) {
+            return false;
+        }
+        getJournal().startAfter(disk.snapshotSeq);
+        getJournal().resume(disk.records);
+        lastSavedTasks = disk.tasks;
+        readOnly = false;
+        System.out.println("Took over " + SAVE_FILE + " from the other window, saving from now on.");
+        return true;
+    }
+
+    /**
+     * Tells one version of a file from the next: a save replaces the file, so its
+     * file key (inode) changes as well as its time and size. Null if there is no file.
+     */
+    private static String fingerprint(Path file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return attributes.fileKey() + "/" + attributes.size() + "/" + attributes.lastModifiedTime().toMillis();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Folds the journal into a fresh snapshot once it gets too long (runs on the persister
+     * thread, so no journal writes can happen in between). The snapshot is rebuilt from
+     * the files on disk, not from the live list, so the JavaFX thread is never involved.
+     */
+    private static void compactIfNeeded() {
+        TaskJournal taskJournal = getJournal();
+        if (taskJournal.getRecordCount() < JOURNAL_MAX_RECORDS && taskJournal.getByteSize() < JOURNAL_MAX_BYTES) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        // Read into a store of our own, dropped with the tasks once the new snapshot is written
+        TaskStore store = new TaskStore();
+        Snapshot onDisk = readNewestGoodGenerationQuietly(store);
+        List<Task> tasks = onDisk != null ? onDisk.tasks : new ArrayList<>();
+        long snapshotSeq = onDisk != null ? onDisk.journalSeq : 0;
+
+        List<TaskJournal.Record> records = TaskJournal.readAll(Path.of(JOURNAL_FILE),
+                createCompactGson(new TaskTypeAdapter(store)));
+        if (!TaskJournal.replay(tasks, records, snapshotSeq)) {
+            System.err.println("Task journal does not match the save file, not compacting.");
+            return;
+        }
+
+        writeSnapshot(new Snapshot(tasks, taskJournal.getLastWrittenSeq()));
+        System.out.println("Compacted " + records.size() + " journal records in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
     }
-}
\ No newline at end of file
+}
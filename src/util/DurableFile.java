@@ -0,0 +1,268 @@
+package util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Crash-safe writing and checked reading of the save file.
+ *
+ * A save never touches the real file while it is being written:
+ * 1. The content goes to a sibling ".tmp" file through a large direct buffer.
+ * 2. A checksum trailer is appended and the temp file is forced to disk.
+ * 3. The current file becomes the ".prev" generation and the temp file is
+ *    atomically moved into its place.
+ * So at any moment there is at least one complete, checksummed copy on disk.
+ */
+public class DurableFile {
+
+    private static final int BUFFER_SIZE = 1 << 20; // 1 MiB
+
+    // The trailer is a "//" comment, which Gson's lenient reader skips
+    private static final String TRAILER_PREFIX = "\n// crc32:";
+    private static final int MAX_TRAILER_LENGTH = 64;
+
+    /**
+     * Something that can write the file content to a stream.
+     */
+    public interface Content {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Thrown when a file is incomplete or fails its checksum.
+     */
+    public static class CorruptFileException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public CorruptFileException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Atomically replaces {@code target} with the given content.
+     */
+    public static void write(Path target, Content content) throws IOException {
+        Path temp = tempFile(target);
+        CRC32 crc = new CRC32();
+        long length;
+
+        // 1. Write everything to the temp file and force it to disk
+        try (FileChannel channel = FileChannel.open(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ChannelOutputStream out = new ChannelOutputStream(channel, crc);
+            content.writeTo(out);
+            length = out.count;
+
+            String trailer = String.format("%s%08x length:%d%n", TRAILER_PREFIX, crc.getValue(), length);
+            out.writeUnchecked(trailer.getBytes(StandardCharsets.US_ASCII));
+            out.flushBuffer();
+            channel.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        // 2. Keep the current file as the previous generation, then swap the new one in
+        if (Files.exists(target)) {
+            Files.move(target, previousGeneration(target), StandardCopyOption.ATOMIC_MOVE);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(target);
+    }
+
+    /**
+     * Checks a file against its trailer without loading it into memory and returns
+     * the length of the content (everything before the trailer). Files written before
+     * checksums existed (no trailer) are accepted as they are.
+     */
+    public static long verify(Path file) throws IOException {
+        return readTrailer(file, true);
+    }
+
+    /**
+     * Like {@link #verify}, but only checks the trailer and the length, not the
+     * checksum, so it costs the same for any file size. For tools that stream
+     * through a file once anyway and would rather start right away; the reader
+     * still stops at damaged data, it just can't tell a flipped bit in a title.
+     */
+    public static long contentLength(Path file) throws IOException {
+        return readTrailer(file, false);
+    }
+
+    private static long readTrailer(Path file, boolean checkCrc) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+
+            // 1. The trailer lives in the last few bytes
+            int tailLength = (int) Math.min(size, MAX_TRAILER_LENGTH);
+            ByteBuffer tail = ByteBuffer.allocate(tailLength);
+            readFully(channel, tail, size - tailLength);
+            byte[] tailBytes = tail.array();
+
+            int trailerStart = findTrailer(tailBytes, tailLength);
+            if (trailerStart < 0) {
+                return size; // Legacy file: the JSON parser will catch garbage
+            }
+            long contentLength = size - tailLength + trailerStart;
+
+            // 2. Parse "crc32:xxxxxxxx length:n"
+            String trailer = new String(tailBytes, trailerStart + TRAILER_PREFIX.length(),
+                    tailLength - trailerStart - TRAILER_PREFIX.length(), StandardCharsets.US_ASCII).trim();
+            String[] parts = trailer.split(" length:");
+            long expectedCrc;
+            long expectedLength;
+            try {
+                expectedCrc = Long.parseLong(parts[0], 16);
+                expectedLength = Long.parseLong(parts[1]);
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                throw new CorruptFileException(file + ": unreadable checksum trailer");
+            }
+            if (expectedLength != contentLength) {
+                throw new CorruptFileException(file + ": expected " + expectedLength + " bytes but found " + contentLength);
+            }
+            if (!checkCrc) {
+                return contentLength;
+            }
+
+            // 3. Stream the content through the checksum
+            CRC32 crc = new CRC32();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            long position = 0;
+            while (position < contentLength) {
+                buffer.clear();
+                buffer.limit((int) Math.min(BUFFER_SIZE, contentLength - position));
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new CorruptFileException(file + ": file ended early");
+                }
+                buffer.flip();
+                crc.update(buffer);
+                position += read;
+            }
+            if (crc.getValue() != expectedCrc) {
+                throw new CorruptFileException(file + ": checksum mismatch");
+            }
+            return contentLength;
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * The files to try when loading, newest first.
+     */
+    public static List<Path> generations(Path target) {
+        return List.of(target, previousGeneration(target));
+    }
+
+    public static Path previousGeneration(Path target) {
+        return target.resolveSibling(target.getFileName() + ".prev");
+    }
+
+    private static Path tempFile(Path target) {
+        return target.resolveSibling(target.getFileName() + ".tmp");
+    }
+
+    private static int findTrailer(byte[] bytes, int length) {
+        byte[] prefix = TRAILER_PREFIX.getBytes(StandardCharsets.US_ASCII);
+        int stop = Math.max(0, length - MAX_TRAILER_LENGTH);
+        for (int start = length - prefix.length; start >= stop; start--) {
+            int i = 0;
+            while (i < prefix.length && bytes[start + i] == prefix[i]) {
+                i++;
+            }
+            if (i == prefix.length) {
+                return start;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Makes the rename itself durable. Not supported on every platform (e.g. Windows),
+     * where the rename is already durable enough, so failures are ignored.
+     */
+    private static void syncDirectory(Path target) {
+        Path dir = target.toAbsolutePath().getParent();
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException | UnsupportedOperationException e) {
+            // Best effort only
+        }
+    }
+
+    /**
+     * An OutputStream that fills a direct buffer and writes it to the channel in
+     * large blocks, computing the checksum on the way.
+     */
+    private static class ChannelOutputStream extends OutputStream {
+        private final FileChannel channel;
+        private final CRC32 crc;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private long count;
+
+        ChannelOutputStream(FileChannel channel, CRC32 crc) {
+            this.channel = channel;
+            this.crc = crc;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (!buffer.hasRemaining()) {
+                flushBuffer();
+            }
+            buffer.put((byte) b);
+            crc.update(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            crc.update(bytes, offset, length);
+            count += length;
+            writeUnchecked(bytes, offset, length);
+        }
+
+        void writeUnchecked(byte[] bytes) throws IOException {
+            writeUnchecked(bytes, 0, bytes.length);
+        }
+
+        private void writeUnchecked(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                if (!buffer.hasRemaining()) {
+                    flushBuffer();
+                }
+                int chunk = Math.min(length, buffer.remaining());
+                buffer.put(bytes, offset, chunk);
+                offset += chunk;
+                length -= chunk;
+            }
+        }
+
+        void flushBuffer() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package util;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import model.Task;
+import model.TaskStore;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Reads tasks one at a time from a JSON save file, so the whole file never
+ * has to be in memory at once. Call next() until it returns null.
+ */
+public class JsonTaskReader implements TaskReader {
+
+    // First line of a snapshot: the last journal record it already contains
+    static final String SEQ_HEADER = "// journal-seq:";
+    // Second line: the highest task id handed out so far
+    static final String LAST_ID_HEADER = "// last-task-id:";
+
+    private final CountingInputStream counter;
+    private final JsonReader json;
+    private final TaskTypeAdapter taskAdapter = new TaskTypeAdapter();
+    private final long contentLength;
+    private final long journalSeq;
+    private final long lastTaskId;
+    private boolean finished;
+
+    /**
+     * @param contentLength how many bytes of the file to read (the rest is the checksum trailer)
+     */
+    public JsonTaskReader(Path file, long contentLength) throws IOException {
+        this.contentLength = contentLength;
+        this.counter = new CountingInputStream(Files.newInputStream(file), contentLength);
+
+        BufferedInputStream in = new BufferedInputStream(counter, 1 << 16);
+        this.journalSeq = readHeader(in, SEQ_HEADER, 0);
+        this.lastTaskId = readHeader(in, LAST_ID_HEADER, -1);
+
+        this.json = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        this.json.setLenient(true); // Skips any other "//" comments
+        try {
+            if (json.peek() == JsonToken.BEGIN_ARRAY) {
+                json.beginArray();
+            } else {
+                throw new DurableFile.CorruptFileException(file + ": not a task list");
+            }
+        } catch (EOFException e) {
+            counter.close();
+            throw new DurableFile.CorruptFileException(file + ": file is empty");
+        }
+    }
+
+    @Override
+    public Task next(TaskStore store) throws IOException {
+        if (finished) {
+            return null;
+        }
+        try {
+            if (!json.hasNext()) {
+                json.endArray();
+                finished = true;
+                return null;
+            }
+            return taskAdapter.read(json, store);
+        } catch (JsonParseException | IllegalStateException e) {
+            throw new IOException("Damaged task data: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public long getJournalSeq() { return journalSeq; }
+
+    @Override
+    public long getLastTaskId() { return lastTaskId; }
+
+    @Override
+    public long getBytesRead() { return counter.count; }
+
+    @Override
+    public long getContentLength() { return contentLength; }
+
+    @Override
+    public void close() throws IOException {
+        counter.close();
+    }
+
+    /**
+     * Reads an optional "// header:N" line and leaves the stream after it.
+     * Returns {@code missing} (and reads nothing) if the next line is something else.
+     */
+    private static long readHeader(BufferedInputStream in, String header, long missing) throws IOException {
+        in.mark(64);
+        byte[] start = in.readNBytes(header.length());
+        if (!new String(start, StandardCharsets.US_ASCII).equals(header)) {
+            in.reset();
+            return missing;
+        }
+        long value = 0;
+        int c;
+        while ((c = in.read()) >= '0' && c <= '9') {
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Counts the bytes read (for progress) and stops at the end of the content.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private final long limit;
+        private long count;
+
+        CountingInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (count >= limit) {
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (count >= limit) {
+                return -1;
+            }
+            int read = super.read(bytes, offset, (int) Math.min(length, limit - count));
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package util;
+
+import index.TaskQuery;
+import javafx.application.Platform;
+import javafx.collections.ObservableListBase;
+import model.Task;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * The rows of a {@link PagedTaskSource} as a read-only observable list for the
+ * TableView. The list itself is only an array of file positions (in the order
+ * the table shows them), so the table only makes Task objects for the rows it
+ * actually draws, and those come out of the source's page cache.
+ *
+ * Filtering and sorting scan the file on a background thread and then swap in
+ * the new positions in one change. A newer refresh cancels an older one.
+ */
+public class PagedTaskList extends ObservableListBase<Task> {
+
+    private final PagedTaskSource source;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "task-page-filter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // The positions shown, or null for "every task in file order"
+    private int[] view;
+    private volatile long generation;
+
+    /**
+     * One matching task during a sorted refresh: its sort key and where it is in the file.
+     */
+    private static class Entry<K> {
+        final K key;
+        final int position;
+
+        Entry(K key, int position) {
+            this.key = key;
+            this.position = position;
+        }
+    }
+
+    public PagedTaskList(PagedTaskSource source) {
+        this.source = source;
+    }
+
+    @Override
+    public Task get(int index) {
+        if (view == null) {
+            return source.get(index);
+        }
+        if (index < 0 || index >= view.length) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + view.length);
+        }
+        return source.get(view[index]);
+    }
+
+    @Override
+    public int size() {
+        return view == null ? source.size() : view.length;
+    }
+
+    public PagedTaskSource getSource() {
+        return source;
+    }
+
+    /**
+     * Shows the tasks matching the query in file order.
+     */
+    public void refresh(TaskQuery query, Runnable onDone) {
+        refresh(query, null, true, onDone);
+    }
+
+    /**
+     * Shows the tasks matching the query, sorted by a key (nulls first, ties in
+     * file order). Only the keys of the matching tasks are kept while sorting.
+     *
+     * @param sortKey  the value to sort by, or null for file order
+     * @param onDone   runs on the JavaFX thread once the new rows are shown
+     */
+    public <K extends Comparable<? super K>> void refresh(TaskQuery query, Function<Task, K> sortKey,
+                                                         boolean ascending, Runnable onDone) {
+        long current = ++generation;
+
+        // 1. Nothing to filter or sort (and no deleted tasks to hide): show the file as it is, no scan needed
+        if ((query == null || query.isEmpty()) && sortKey == null && source.getDeletedCount() == 0) {
+            setView(null);
+            onDone.run();
+            return;
+        }
+
+        // 2. Otherwise scan the file in the background
+        executor.execute(() -> {
+            int[] positions;
+            try {
+                positions = sortKey == null ? filter(query, current) : filterAndSort(query, sortKey, ascending, current);
+            } catch (CancellationException e) {
+                return; // A newer refresh has started
+            } catch (IOException e) {
+                System.err.println("Error reading " + source.getFile() + ": " + e.getMessage());
+                return;
+            }
+            Platform.runLater(() -> {
+                if (current == generation) {
+                    setView(positions);
+                    onDone.run();
+                }
+            });
+        });
+    }
+
+    private int[] filter(TaskQuery query, long current) throws IOException {
+        int[][] found = {new int[1024]};
+        int[] count = {0};
+        source.scan((position, task) -> {
+            checkCancelled(position, current);
+            if (query == null || query.matches(task)) {
+                if (count[0] == found[0].length) {
+                    found[0] = Arrays.copyOf(found[0], count[0] * 2);
+                }
+                found[0][count[0]++] = position;
+            }
+        });
+        return Arrays.copyOf(found[0], count[0]);
+    }
+
+    private <K extends Comparable<? super K>> int[] filterAndSort(TaskQuery query, Function<Task, K> sortKey,
+                                                                  boolean ascending, long current) throws IOException {
+        List<Entry<K>> entries = new ArrayList<>();
+        source.scan((position, task) -> {
+            checkCancelled(position, current);
+            if (query == null || query.matches(task)) {
+                entries.add(new Entry<>(sortKey.apply(task), position));
+            }
+        });
+
+        Comparator<K> keyOrder = Comparator.nullsFirst(Comparator.<K>naturalOrder());
+        if (!ascending) {
+            keyOrder = keyOrder.reversed();
+        }
+        Comparator<Entry<K>> order = Comparator.comparing((Entry<K> e) -> e.key, keyOrder)
+                .thenComparingInt(e -> e.position);
+        entries.sort(order);
+
+        int[] positions = new int[entries.size()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = entries.get(i).position;
+        }
+        return positions;
+    }
+
+    private void checkCancelled(int position, long current) {
+        if (position % PagedTaskSource.PAGE_SIZE == 0 && current != generation) {
+            throw new CancellationException();
+        }
+    }
+
+    /**
+     * Replaces every row in one change. The removed rows are only read from the
+     * page cache if a listener actually looks at them.
+     */
+    private void setView(int[] positions) {
+        int[] oldView = view;
+        int oldSize = size();
+        view = positions;
+        beginChange();
+        nextReplace(0, size(), new AbstractList<Task>() {
+            @Override
+            public Task get(int index) {
+                return source.get(oldView == null ? index : oldView[index]);
+            }
+
+            @Override
+            public int size() {
+                return oldSize;
+            }
+        });
+        endChange();
+    }
+}
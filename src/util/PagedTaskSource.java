@@ -0,0 +1,177 @@
+package util;
+
+import model.Task;
+import model.TaskStore;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Random access to the tasks of a binary snapshot without loading them all.
+ * Opening the file only records where every page of {@link #PAGE_SIZE} tasks
+ * starts (and counts tasks for the sidebar); a page is decoded the first time
+ * one of its tasks is asked for and kept in a small LRU cache, so the heap
+ * holds at most {@code maxPages} pages no matter how big the file is.
+ *
+ * {@link #get} is meant for the JavaFX thread. Background work goes through
+ * {@link #scan}, which reads the file with a reader of its own.
+ */
+public class PagedTaskSource implements Closeable {
+
+    public static final int PAGE_SIZE = 256;
+
+    // Asking for a task this close to the end of its page also loads the next page
+    private static final int PREFETCH_MARGIN = 32;
+
+    private final Path file;
+    private final long contentLength;
+    private final BinaryTaskReader reader;
+    private final int size;
+    private final int[] pageStarts;
+    private final Map<Integer, Task[]> pages;
+    private int pagesLoaded;
+
+    // Sidebar counts, taken while the pages are located
+    private int completedCount;
+    private int dueTodayCount;
+    private int overdueCount;
+    private int upcomingCount;
+    private int deletedCount;
+
+    /**
+     * Visits tasks during a {@link #scan}.
+     */
+    public interface Visitor {
+        void visit(int position, Task task);
+    }
+
+    /**
+     * @param contentLength the checksummed length of the file (see DurableFile.verify)
+     * @param maxPages      how many decoded pages to keep
+     */
+    public PagedTaskSource(Path file, long contentLength, int maxPages) throws IOException {
+        this.file = file;
+        this.contentLength = contentLength;
+        this.reader = new BinaryTaskReader(file, contentLength);
+        this.size = reader.getTaskCount();
+        this.pageStarts = new int[(size + PAGE_SIZE - 1) / PAGE_SIZE];
+        this.pages = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Task[]> eldest) {
+                return size() > maxPages;
+            }
+        };
+        locatePages();
+    }
+
+    /**
+     * One pass over the file that skips the text of every task: remembers where
+     * each page starts and counts tasks the way TaskSummary does.
+     */
+    private void locatePages() throws IOException {
+        int today = (int) LocalDate.now().toEpochDay();
+        for (int i = 0; i < size; i++) {
+            if (i % PAGE_SIZE == 0) {
+                pageStarts[i / PAGE_SIZE] = reader.position();
+            }
+            long info = reader.skip();
+            int dueDay = (int) (info >> 32);
+            if ((info & BinaryTaskFormat.FLAG_DELETED) != 0) {
+                deletedCount++; // In the trash: not in any other count
+            } else if ((info & BinaryTaskFormat.FLAG_COMPLETED) != 0) {
+                completedCount++;
+            } else if (dueDay == BinaryTaskFormat.NO_DATE || dueDay > today) {
+                upcomingCount++;
+            } else if (dueDay == today) {
+                dueTodayCount++;
+            } else {
+                overdueCount++;
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The task at a position in the file, decoding its page if it is not cached.
+     */
+    public Task get(int position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("Position: " + position + ", Size: " + size);
+        }
+        int page = position / PAGE_SIZE;
+        Task task = page(page)[position % PAGE_SIZE];
+        if (position % PAGE_SIZE >= PAGE_SIZE - PREFETCH_MARGIN && page + 1 < pageStarts.length
+                && !pages.containsKey(page + 1)) {
+            page(page + 1); // The table is probably scrolling down
+        }
+        return task;
+    }
+
+    private Task[] page(int page) {
+        Task[] tasks = pages.get(page);
+        if (tasks == null) {
+            try {
+                tasks = readPage(reader, page);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e); // The checksum was fine at open, so the file changed under us
+            }
+            pages.put(page, tasks);
+            pagesLoaded++;
+        }
+        return tasks;
+    }
+
+    /**
+     * Decodes one page into a store of its own, so an evicted page is garbage as a whole.
+     */
+    private Task[] readPage(BinaryTaskReader pageReader, int page) throws IOException {
+        int first = page * PAGE_SIZE;
+        int count = Math.min(PAGE_SIZE, size - first);
+        TaskStore store = new TaskStore(count);
+        Task[] tasks = new Task[count];
+        pageReader.seek(pageStarts[page], first);
+        for (int i = 0; i < count; i++) {
+            tasks[i] = pageReader.next(store);
+        }
+        return tasks;
+    }
+
+    /**
+     * Visits every task in file order, page by page, without touching the cache.
+     * Safe to call from a background thread. The visitor may throw to stop early.
+     */
+    public void scan(Visitor visitor) throws IOException {
+        BinaryTaskReader scanReader = new BinaryTaskReader(file, contentLength);
+        for (int page = 0; page < pageStarts.length; page++) {
+            Task[] tasks = readPage(scanReader, page);
+            for (int i = 0; i < tasks.length; i++) {
+                visitor.visit(page * PAGE_SIZE + i, tasks[i]);
+            }
+        }
+    }
+
+    public int getCachedPageCount() { return pages.size(); }
+    public int getPagesLoaded() { return pagesLoaded; }
+    public long getJournalSeq() { return reader.getJournalSeq(); }
+    public Path getFile() { return file; }
+
+    public int getCompletedCount() { return completedCount; }
+    public int getDueTodayCount() { return dueTodayCount; }
+    public int getOverdueCount() { return overdueCount; }
+    public int getUpcomingCount() { return upcomingCount; }
+    public int getDeletedCount() { return deletedCount; }
+
+    @Override
+    public void close() {
+        pages.clear();
+        reader.close();
+    }
+}
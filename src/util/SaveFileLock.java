@@ -0,0 +1,88 @@
+package util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Keeps two programs from writing the same save file at once: only the holder
+ * of the lock on "{save file}.lock" may write the save file and its journal.
+ * The app holds it for as long as it runs (a second window opens read-only),
+ * the command line only while it rewrites the file.
+ *
+ * It is an operating system file lock, so it goes away with its process however
+ * that ends; a lock file left behind by a crash is simply locked again. The
+ * holder writes its process id into the file, to tell the others who has it.
+ */
+public class SaveFileLock implements AutoCloseable {
+
+    // The locked byte lies past the process id, so the id stays readable where locks are mandatory (Windows)
+    private static final long LOCKED_BYTE = 1 << 20;
+
+    private final FileChannel channel;
+    private final FileLock lock;
+
+    private SaveFileLock(FileChannel channel, FileLock lock) {
+        this.channel = channel;
+        this.lock = lock;
+    }
+
+    public static Path lockFileOf(Path saveFile) {
+        return saveFile.resolveSibling(saveFile.getFileName() + ".lock");
+    }
+
+    /**
+     * Takes the lock without waiting; null if another program (or another part
+     * of this one) holds it.
+     */
+    public static SaveFileLock tryAcquire(Path saveFile) throws IOException {
+        FileChannel channel = FileChannel.open(lockFileOf(saveFile),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = channel.tryLock(LOCKED_BYTE, 1, false);
+        } catch (OverlappingFileLockException e) {
+            lock = null; // Held in this JVM already
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        if (lock == null) {
+            channel.close();
+            return null;
+        }
+        channel.truncate(0);
+        channel.write(ByteBuffer.wrap((ProcessHandle.current().pid() + "\n").getBytes(StandardCharsets.US_ASCII)), 0);
+        return new SaveFileLock(channel, lock);
+    }
+
+    /**
+     * Who holds the lock, for messages: "process 1234", as far as the lock file tells.
+     */
+    public static String describeHolder(Path saveFile) {
+        try {
+            String pid = Files.readString(lockFileOf(saveFile), StandardCharsets.US_ASCII).trim();
+            return pid.isEmpty() ? "another program" : "process " + pid;
+        } catch (IOException e) {
+            return "another program";
+        }
+    }
+
+    /**
+     * Releases the lock. The file stays: deleting it could race with the next holder.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            lock.release();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package util;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import metrics.Counter;
+import metrics.Metrics;
+import model.Task;
+import model.TaskRepository;
+
+/**
+ * Notices when another program changes the save file and brings the list up to
+ * date with it, so the next save doesn't silently undo that change.
+ *
+ * A background thread watches the save file's folder. After a burst of file
+ * events has settled it reads the file, compares it task by task with the list
+ * ({@link TaskDiff}) and applies only the differences, through the repository,
+ * in one batch: the table keeps its rows, selection and scroll position. Tasks
+ * changed on both sides are reported to the listener.
+ *
+ * The app's own saves are recognised and skipped. A read-only app (another
+ * window holds the save lock) follows the journal as well, where the other
+ * window's edits go first, and takes over saving once that window closes.
+ */
+public class SaveFileWatcher {
+
+    // File events come in bursts (a save renames twice); act once they have stopped for this long
+    private static final long SETTLE_MS = Long.getLong("todo.watch.settleMs", 250);
+    // How often a read-only app checks whether the save lock has come free
+    private static final long LOCK_RETRY_MS = Long.getLong("todo.watch.lockRetryMs", 2000);
+
+    private static final Counter externalChanges = Metrics.counter("watch.external.changes");
+    private static final Counter conflictCount = Metrics.counter("watch.conflicts");
+
+    /**
+     * Told about outside changes, on the JavaFX thread.
+     */
+    public interface Listener {
+        /**
+         * Another program's changes are in the list; {@code conflicts} are the titles
+         * of the tasks that were changed here too and kept this app's version.
+         */
+        void externalChangesApplied(int changes, List<String> conflicts);
+
+        /**
+         * The other window closed; this app now saves (it was read-only until now).
+         */
+        void becameWritable();
+    }
+
+    private final TaskRepository repository;
+    private final Executor uiThread;
+    private final Listener listener;
+    private final Path saveFile = DataManager.getSaveFile().toAbsolutePath();
+    private final Path journalFile = DataManager.getJournalFile().toAbsolutePath();
+    private WatchService watchService;
+    private volatile boolean stopped;
+
+    public SaveFileWatcher(TaskRepository repository, Executor uiThread, Listener listener) {
+        this.repository = repository;
+        this.uiThread = uiThread;
+        this.listener = listener;
+    }
+
+    /**
+     * Starts watching. Call once loading is done.
+     */
+    public void start() {
+        try {
+            watchService = saveFile.getFileSystem().newWatchService();
+            saveFile.getParent().register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            System.err.println("Can't watch " + saveFile + " for outside changes: " + e.getMessage());
+            return;
+        }
+        DataManager.setExternalChangesWatched(true);
+        Thread thread = new Thread(this::watch, "save-file-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        stopped = true;
+        DataManager.setExternalChangesWatched(false);
+        try {
+            if (watchService != null) {
+                watchService.close();
+            }
+        } catch (IOException e) {
+            // Stopping anyway
+        }
+    }
+
+    private void watch() {
+        try {
+            while (!stopped) {
+                // 1. Wait for a change to one of our files (read-only: or for the lock to come free)
+                boolean readOnly = DataManager.isReadOnly();
+                WatchKey key = readOnly ? watchService.poll(LOCK_RETRY_MS, TimeUnit.MILLISECONDS) : watchService.take();
+                boolean changed = key != null && concernsUs(key, readOnly);
+                if (changed) {
+                    // 2. Let the burst settle
+                    while ((key = watchService.poll(SETTLE_MS, TimeUnit.MILLISECONDS)) != null) {
+                        concernsUs(key, readOnly);
+                    }
+                    sync(readOnly);
+                }
+                if (readOnly) {
+                    takeOverIfFree();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Stopped
+        }
+    }
+
+    /**
+     * True if the key's events touch the save file (or, read-only, the journal).
+     */
+    private boolean concernsUs(WatchKey key, boolean readOnly) {
+        boolean ours = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                ours = true; // Lost track: look anyway
+                continue;
+            }
+            Path name = (Path) event.context();
+            if (name.equals(saveFile.getFileName()) || (readOnly && name.equals(journalFile.getFileName()))) {
+                ours = true;
+            }
+        }
+        key.reset();
+        return ours;
+    }
+
+    /**
+     * Reads the files, compares and applies. Returns the disk state used, or null if nothing was read.
+     */
+    private DataManager.DiskState sync(boolean readOnly) throws InterruptedException {
+        if (!readOnly && DataManager.isOwnSave()) {
+            return null;
+        }
+        long start = System.nanoTime();
+        DataManager.DiskState disk = DataManager.readDiskState(readOnly);
+        // Read-only there are no edits of our own, so the list itself is the base
+        TaskRepository.Snapshot local = repository.snapshot();
+        List<Task> base = readOnly ? local.getTasks() : DataManager.getLastSavedTasks();
+        if (disk == null && !readOnly && Files.exists(saveFile)) {
+            uiThread.execute(() -> DataManager.keepOwnVersion(repository.getList()));
+            return null;
+        }
+        if (disk == null || base == null) {
+            return null;
+        }
+        TaskDiff diff = TaskDiff.compute(base, local.getTasks(), disk.tasks);
+        if (diff.isEmpty()) {
+            uiThread.execute(() -> DataManager.externalChangesApplied(disk, repository.getList()));
+            return disk;
+        }
+
+        // 1. Only the differences, in one batch on the JavaFX thread
+        try {
+            repository.submit(tasks -> {
+                diff.applyTo(tasks, repository, local.getVersion());
+                return null;
+            }).get();
+        } catch (ExecutionException e) {
+            System.err.println("Could not apply the outside changes to " + saveFile + ": " + e.getCause());
+            return null;
+        }
+
+        // 2. Then the new base, and a save (outside the batch, so its journal records come first)
+        uiThread.execute(() -> {
+            DataManager.externalChangesApplied(disk, repository.getList());
+            listener.externalChangesApplied(diff.getAppliedCount(), diff.getConflicts());
+        });
+        externalChanges.add(diff.getAppliedCount());
+        conflictCount.add(diff.getConflicts().size());
+        System.out.println(saveFile.getFileName() + " changed outside the app: " + diff.getAppliedCount()
+                + " changes applied, " + diff.getConflicts().size() + " conflicts, in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return disk;
+    }
+
+    /**
+     * Read-only: once the other window has closed, catch up with its last edits and take over.
+     */
+    private void takeOverIfFree() throws InterruptedException {
+        try (SaveFileLock probe = SaveFileLock.tryAcquire(saveFile)) {
+            if (probe == null) {
+                return; // Still open over there
+            }
+        } catch (IOException e) {
+            return;
+        }
+        DataManager.DiskState disk = sync(true);
+        if (disk == null) {
+            return; // Try again on the next round
+        }
+        uiThread.execute(() -> {
+            if (DataManager.takeOverSaves(disk)) {
+                listener.becameWritable();
+            }
+        });
+        // Wait for the JavaFX thread, so the next round sees the new mode
+        try {
+            repository.submit(tasks -> null).get();
+        } catch (ExecutionException e) {
+            // Nothing was asked of it
+        }
+    }
+}
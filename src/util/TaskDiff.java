@@ -0,0 +1,176 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import model.Task;
+import model.TaskIdIndex;
+import model.TaskList;
+import model.TaskRepository;
+import model.TaskStore;
+
+/**
+ * What changed in the save file behind the app's back, task by task (matched
+ * by id), and what to do about it. Three versions of the tasks go in: what the
+ * file held when the app last wrote or read it (base), the list now (local)
+ * and the file now (disk).
+ *
+ * A task changed on disk but not here takes the disk's values; one added or
+ * removed on disk is added or removed here. A task changed on both sides, in
+ * different ways, is a conflict: it keeps this app's version (which the next
+ * save writes back) and is reported, so the user can look at it.
+ */
+public class TaskDiff {
+
+    private final List<Task> added = new ArrayList<>();   // Disk tasks new to the list
+    private final List<Task> updated = new ArrayList<>(); // Disk tasks whose values the list should take
+    private final List<Long> removed = new ArrayList<>(); // Ids gone from the disk
+    private final List<String> conflicts = new ArrayList<>(); // Titles, for the message
+    private int applied;
+
+    private TaskDiff() {
+    }
+
+    /**
+     * Compares the three versions. Any thread; the lists must not change meanwhile (snapshots).
+     */
+    public static TaskDiff compute(List<Task> base, List<Task> local, List<Task> disk) {
+        TaskDiff diff = new TaskDiff();
+        TaskIdIndex baseIndex = positions(base);
+        TaskIdIndex localIndex = positions(local);
+        TaskIdIndex diskIndex = positions(disk);
+
+        // 1. Every task on disk: new, changed, or as before
+        for (Task onDisk : disk) {
+            int b = baseIndex.get(onDisk.getId());
+            int l = localIndex.get(onDisk.getId());
+            Task here = l < 0 ? null : local.get(l);
+            if (b < 0) {
+                if (here == null) {
+                    diff.added.add(onDisk);
+                } else if (!sameValues(here, onDisk)) {
+                    diff.conflicts.add(here.getTitle()); // Both sides added a task with this id
+                }
+                continue;
+            }
+            Task before = base.get(b);
+            if (sameValues(before, onDisk)) {
+                continue; // Not changed on disk; whatever happened here stands
+            }
+            if (here != null && sameValues(before, here)) {
+                diff.updated.add(onDisk);
+            } else if (here == null || !sameValues(here, onDisk)) {
+                diff.conflicts.add((here != null ? here : onDisk).getTitle()); // Edited here, or deleted for good here
+            }
+        }
+
+        // 2. Tasks gone from the disk: removed here too, unless they were edited here since
+        for (Task before : base) {
+            if (diskIndex.get(before.getId()) >= 0) {
+                continue;
+            }
+            int l = localIndex.get(before.getId());
+            if (l < 0) {
+                continue; // Gone on both sides
+            }
+            if (sameValues(before, local.get(l))) {
+                diff.removed.add(before.getId());
+            } else {
+                diff.conflicts.add(local.get(l).getTitle());
+            }
+        }
+        return diff;
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && updated.isEmpty() && removed.isEmpty() && conflicts.isEmpty();
+    }
+
+    /**
+     * How many tasks {@link #applyTo} added, changed or removed.
+     */
+    public int getAppliedCount() {
+        return applied;
+    }
+
+    /**
+     * The titles of the tasks changed on both sides, which kept this app's version.
+     */
+    public List<String> getConflicts() {
+        return conflicts;
+    }
+
+    /**
+     * Applies the disk's changes to the live list, on the thread that owns it (the
+     * list should be in a batch). {@code localVersion} is the version of the
+     * repository snapshot the diff was computed from: a task the window changed
+     * after it becomes a conflict too, instead of losing that edit.
+     */
+    public void applyTo(TaskList tasks, TaskRepository repository, long localVersion) {
+        // 1. Changed on disk
+        for (Task onDisk : updated) {
+            Task here = tasks.getById(onDisk.getId());
+            if (here == null || repository.changedSince(here.getId(), localVersion)) {
+                conflicts.add(onDisk.getTitle());
+                continue;
+            }
+            here.setTitle(onDisk.getTitle());
+            here.setDescription(onDisk.getDescription());
+            here.setDueDate(onDisk.getDueDate());
+            here.setCategory(onDisk.getCategory());
+            here.setPriority(onDisk.getPriority());
+            here.setCompleted(onDisk.isCompleted());
+            here.setDeleted(onDisk.isDeleted());
+            here.getStore().setDeletedOn(here.getRow(), onDisk.getDeletedOn()); // Not today's date
+            applied++;
+        }
+
+        // 2. Removed on disk
+        List<Task> doomed = new ArrayList<>(removed.size());
+        for (long id : removed) {
+            Task here = tasks.getById(id);
+            if (here == null) {
+                continue;
+            }
+            if (repository.changedSince(id, localVersion)) {
+                conflicts.add(here.getTitle());
+            } else {
+                doomed.add(here);
+            }
+        }
+        tasks.removeAll(doomed);
+        for (Task task : doomed) {
+            task.getStore().releaseRow(task.getRow()); // Gone for good: the rows can be reused
+        }
+        applied += doomed.size();
+
+        // 3. Added on disk: copied into one store of their own, so the file's whole store isn't kept for them
+        List<Task> fresh = new ArrayList<>(added.size());
+        for (Task onDisk : added) {
+            if (tasks.getById(onDisk.getId()) == null) {
+                fresh.add(onDisk);
+            }
+        }
+        tasks.addAll(TaskStore.snapshot(fresh));
+        applied += fresh.size();
+    }
+
+    static boolean sameValues(Task a, Task b) {
+        return a.isCompleted() == b.isCompleted()
+                && a.isDeleted() == b.isDeleted()
+                && Objects.equals(a.getTitle(), b.getTitle())
+                && Objects.equals(a.getDescription(), b.getDescription())
+                && Objects.equals(a.getDueDate(), b.getDueDate())
+                && Objects.equals(a.getCategory(), b.getCategory())
+                && Objects.equals(a.getPriority(), b.getPriority())
+                && (!a.isDeleted() || Objects.equals(a.getDeletedOn(), b.getDeletedOn()));
+    }
+
+    private static TaskIdIndex positions(List<Task> tasks) {
+        TaskIdIndex index = new TaskIdIndex();
+        for (int i = 0; i < tasks.size(); i++) {
+            index.put(tasks.get(i).getId(), i);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,347 @@
+package util;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import model.Task;
+import model.TaskStore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of task changes (a "write-ahead journal").
+ *
+ * Every edit becomes one small line in the journal instead of a rewrite of the whole
+ * save file. Each line is "crc32 json": the checksum lets us drop a half-written last
+ * line after a crash. Records are numbered, and the snapshot file remembers the last
+ * number it already contains, so replay only applies what came after it.
+ * Records address tasks by position, and UPDATE and DELETE also say which task
+ * (by id) they expect there; replay stops at a record that doesn't fit, or at a
+ * gap in the numbers, instead of changing the wrong task.
+ *
+ * append() can be called from the JavaFX thread; all file access happens on the
+ * executor given to the constructor (the persister thread).
+ */
+public class TaskJournal {
+
+    public static final String ADD = "ADD";
+    public static final String UPDATE = "UPDATE";
+    public static final String DELETE = "DELETE";
+
+    /**
+     * One journal entry. ADD/UPDATE carry the full task, DELETE the position and
+     * the ids of the removed tasks (no ids in records from older versions).
+     */
+    public static class Record {
+        long seq;
+        String op;
+        int index;
+        int count;
+        long[] ids;
+        Task task;
+
+        public long getSeq() { return seq; }
+    }
+
+    private final Path file;
+    private final Gson gson;
+    private final Executor executor;
+    private final Runnable afterWrite;
+
+    // Records waiting to be written. A burst of edits is written with a single call.
+    private final ConcurrentLinkedQueue<Record> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+
+    // Rows per record store: once full, the next records start a new one (see copyForRecord)
+    private static final int RECORD_STORE_ROWS = 1024;
+
+    // Only touched by the thread that creates records (the JavaFX thread)
+    private long lastAssignedSeq;
+    private TaskStore recordStore = new TaskStore();
+
+    // Only touched on the executor thread
+    private FileChannel channel;
+    private volatile long lastWrittenSeq;
+    private volatile int recordCount;
+    private volatile long byteSize;
+
+    /**
+     * @param afterWrite runs on the executor after each batch of records is written
+     *                   (used to decide when to compact)
+     */
+    public TaskJournal(Path file, Gson gson, Executor executor, Runnable afterWrite) {
+        this.file = file;
+        this.gson = gson;
+        this.executor = executor;
+        this.afterWrite = afterWrite;
+    }
+
+    /**
+     * Remembers where the existing journal ends. Called once after startup replay.
+     */
+    public void resume(List<Record> existing) {
+        long last = existing.isEmpty() ? 0 : existing.get(existing.size() - 1).seq;
+        lastAssignedSeq = Math.max(lastAssignedSeq, last);
+        lastWrittenSeq = last;
+        recordCount = existing.size();
+        try {
+            byteSize = Files.exists(file) ? Files.size(file) : 0;
+        } catch (IOException e) {
+            byteSize = 0;
+        }
+    }
+
+    /**
+     * Makes sure new records are numbered after the given snapshot.
+     */
+    public void startAfter(long seq) {
+        lastAssignedSeq = Math.max(lastAssignedSeq, seq);
+    }
+
+    public long getLastAssignedSeq() { return lastAssignedSeq; }
+    public long getLastWrittenSeq() { return lastWrittenSeq; }
+    public int getRecordCount() { return recordCount; }
+    public long getByteSize() { return byteSize; }
+
+    // --- Creating records (JavaFX thread) ---
+
+    public void recordAdd(int index, Task task) {
+        append(ADD, index, 1, null, copyForRecord(task));
+    }
+
+    public void recordUpdate(int index, Task task) {
+        append(UPDATE, index, 1, null, copyForRecord(task));
+    }
+
+    /**
+     * A private copy of the task for a record, so it can be serialized on the
+     * executor while the original keeps changing. The copies share one store
+     * until it holds a page of them, instead of each getting a store (and its
+     * column arrays and text arena) of its own; a full store is dropped once
+     * the records in it have been written.
+     */
+    private Task copyForRecord(Task task) {
+        if (recordStore.size() == RECORD_STORE_ROWS) {
+            recordStore = new TaskStore();
+        }
+        return new Task(recordStore, recordStore.copyRow(task.getStore(), task.getRow()));
+    }
+
+    /**
+     * @param ids the ids of the removed tasks, in list order from {@code index}
+     */
+    public void recordDelete(int index, long[] ids) {
+        append(DELETE, index, ids.length, ids, null);
+    }
+
+    private void append(String op, int index, int count, long[] ids, Task task) {
+        Record record = new Record();
+        record.seq = ++lastAssignedSeq;
+        record.op = op;
+        record.index = index;
+        record.count = count;
+        record.ids = ids;
+        record.task = task; // A private copy (see copyForRecord)
+        pending.add(record);
+
+        // Only one drain job in the queue at a time; later records ride along with it
+        if (drainScheduled.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    // --- File access (executor thread) ---
+
+    private void drain() {
+        drainScheduled.set(false);
+
+        StringBuilder batch = new StringBuilder();
+        int lines = 0;
+        long lastSeq = 0;
+        Record record;
+        while ((record = pending.poll()) != null) {
+            String json = gson.toJson(record);
+            CRC32 crc = new CRC32();
+            crc.update(json.getBytes(StandardCharsets.UTF_8));
+            batch.append(String.format("%08x ", crc.getValue())).append(json).append('\n');
+            lastSeq = record.seq;
+            lines++;
+        }
+        if (lines == 0) {
+            return;
+        }
+
+        try {
+            byte[] bytes = batch.toString().getBytes(StandardCharsets.UTF_8);
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            FileChannel out = openChannel();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            recordCount += lines;
+            byteSize += bytes.length;
+            lastWrittenSeq = lastSeq;
+        } catch (IOException e) {
+            System.err.println("Error writing to task journal!");
+            e.printStackTrace();
+            return;
+        }
+        afterWrite.run();
+    }
+
+    /**
+     * Forces written records to disk. Called at shutdown.
+     */
+    public void force() {
+        drain();
+        if (channel != null) {
+            try {
+                channel.force(false);
+            } catch (IOException e) {
+                System.err.println("Error syncing task journal!");
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Drops every record. Only call this once a snapshot contains all of them.
+     */
+    public void truncate() {
+        try {
+            openChannel().truncate(0);
+            recordCount = 0;
+            byteSize = 0;
+        } catch (IOException e) {
+            System.err.println("Error truncating task journal!");
+            e.printStackTrace();
+        }
+    }
+
+    private FileChannel openChannel() throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            channel.position(channel.size());
+        }
+        return channel;
+    }
+
+    // --- Reading and replay ---
+
+    /**
+     * Reads every intact record. A damaged tail (from a crash during a write) is
+     * cut off so new records are appended after the last good one.
+     */
+    public static List<Record> readAll(Path file, Gson gson) {
+        List<Record> records = new ArrayList<>();
+        if (!Files.exists(file)) {
+            return records;
+        }
+
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (IOException e) {
+            System.err.println("Could not read task journal: " + e.getMessage());
+            return records;
+        }
+
+        int lineStart = 0;
+        while (lineStart < bytes.length) {
+            int lineEnd = lineStart;
+            while (lineEnd < bytes.length && bytes[lineEnd] != '\n') {
+                lineEnd++;
+            }
+            Record record = lineEnd < bytes.length ? parseLine(bytes, lineStart, lineEnd, gson) : null;
+            if (record == null) {
+                cutTail(file, lineStart);
+                break;
+            }
+            records.add(record);
+            lineStart = lineEnd + 1;
+        }
+        return records;
+    }
+
+    private static Record parseLine(byte[] bytes, int start, int end, Gson gson) {
+        // "xxxxxxxx {json}" (the line may end with \r on Windows)
+        if (end > start && bytes[end - 1] == '\r') {
+            end--;
+        }
+        if (end - start < 10 || bytes[start + 8] != ' ') {
+            return null;
+        }
+        try {
+            long expected = Long.parseLong(new String(bytes, start, 8, StandardCharsets.US_ASCII), 16);
+            CRC32 crc = new CRC32();
+            crc.update(bytes, start + 9, end - start - 9);
+            if (crc.getValue() != expected) {
+                return null;
+            }
+            return gson.fromJson(new String(bytes, start + 9, end - start - 9, StandardCharsets.UTF_8), Record.class);
+        } catch (NumberFormatException | JsonParseException e) {
+            return null;
+        }
+    }
+
+    private static void cutTail(Path file, long goodLength) {
+        System.out.println("Task journal has a damaged tail, dropping it.");
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            out.truncate(goodLength);
+        } catch (IOException e) {
+            System.err.println("Could not repair task journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Re-applies the records that are newer than the snapshot to the loaded list.
+     * Returns false if a record did not fit the list (not the task it names at its
+     * position) or a record is missing; that record and the rest are then skipped.
+     */
+    public static boolean replay(List<Task> tasks, List<Record> records, long snapshotSeq) {
+        long expectedSeq = snapshotSeq + 1;
+        for (Record record : records) {
+            if (record.seq <= snapshotSeq) {
+                continue; // Already part of the snapshot
+            }
+            if (record.seq != expectedSeq++) {
+                return false; // Numbers skipped: the list would not be the one these records were made for
+            }
+            switch (record.op) {
+                case ADD:
+                    if (record.index < 0 || record.index > tasks.size()) return false;
+                    tasks.add(record.index, record.task);
+                    break;
+                case UPDATE:
+                    if (!holds(tasks, record.index, record.task.getId())) return false;
+                    tasks.set(record.index, record.task);
+                    break;
+                case DELETE:
+                    if (record.index < 0 || record.index + record.count > tasks.size()) return false;
+                    for (int i = 0; record.ids != null && i < record.ids.length; i++) {
+                        if (!holds(tasks, record.index + i, record.ids[i])) return false;
+                    }
+                    tasks.subList(record.index, record.index + record.count).clear();
+                    break;
+                default:
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean holds(List<Task> tasks, int index, long id) {
+        return index >= 0 && index < tasks.size() && tasks.get(index).getId() == id;
+    }
+}
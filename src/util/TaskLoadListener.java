@@ -0,0 +1,20 @@
+package util;
+
+/**
+ * Gets told how a background load (DataManager.loadTasksAsync) is going.
+ * Both methods are called on the JavaFX thread.
+ */
+public interface TaskLoadListener {
+
+    /**
+     * Another chunk of tasks was added to the list.
+     * @param loadedCount how many tasks are in the list so far
+     * @param fraction    roughly how much of the file has been read (0.0 - 1.0)
+     */
+    void onProgress(int loadedCount, double fraction);
+
+    /**
+     * Everything is loaded, including edits replayed from the journal.
+     */
+    void onFinished(int totalCount, long elapsedMillis);
+}
@@ -0,0 +1,124 @@
+package util;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Write-behind saver for the task list.
+ * Instead of rewriting the save file on every single change, callers hand over
+ * an immutable snapshot and the persister merges a burst of snapshots into one
+ * write that runs on its own background thread.
+ *
+ * @param <S> the snapshot type handed to the writer
+ */
+public class TaskPersister<S> {
+
+    private final Consumer<S> writer;
+    private final long debounceMillis;
+    private final long maxDelayMillis;
+    private final ScheduledExecutorService executor;
+
+    // --- State shared with the background thread (guarded by 'this') ---
+    private S pendingSnapshot;
+    private long burstStartNanos;
+    private ScheduledFuture<?> scheduledWrite;
+
+    /**
+     * @param writer         does the actual I/O (runs on the persister thread only)
+     * @param debounceMillis how long to wait for more changes before writing
+     * @param maxDelayMillis upper bound on how long a change may stay unsaved
+     */
+    public TaskPersister(Consumer<S> writer, long debounceMillis, long maxDelayMillis) {
+        this.writer = writer;
+        this.debounceMillis = debounceMillis;
+        this.maxDelayMillis = Math.max(debounceMillis, maxDelayMillis);
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "task-persister");
+            thread.setDaemon(true); // Never keep the JVM alive on its own
+            return thread;
+        });
+    }
+
+    /**
+     * Queues a snapshot to be written. Only the newest snapshot of a burst is kept.
+     * The write happens once no new snapshot arrived for the debounce window,
+     * but never later than the max delay after the first change of the burst.
+     */
+    public synchronized void submit(S snapshot) {
+        long now = System.nanoTime();
+        pendingSnapshot = snapshot;
+
+        if (scheduledWrite == null) {
+            // 1. First change of a new burst
+            burstStartNanos = now;
+        } else {
+            // 2. Still inside a burst: push the write back
+            scheduledWrite.cancel(false);
+        }
+
+        long waitedMillis = TimeUnit.NANOSECONDS.toMillis(now - burstStartNanos);
+        long delay = Math.max(0, Math.min(debounceMillis, maxDelayMillis - waitedMillis));
+        scheduledWrite = executor.schedule(this::writePending, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes any pending snapshot right now and blocks until it is on disk.
+     * Safe to call from the JavaFX thread at shutdown.
+     */
+    public void flush() {
+        synchronized (this) {
+            if (scheduledWrite != null) {
+                scheduledWrite.cancel(false);
+            }
+        }
+        // The executor is single-threaded, so this also waits for a write in progress
+        runAndWait(this::writePending);
+    }
+
+    /**
+     * Runs another I/O job on the persister thread, after everything queued before it.
+     */
+    public void execute(Runnable job) {
+        executor.execute(() -> {
+            try {
+                job.run();
+            } catch (RuntimeException e) {
+                System.err.println("Error in background save job!");
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Runs a job on the persister thread and blocks until it (and everything queued
+     * before it) has finished.
+     */
+    public void runAndWait(Runnable job) {
+        Future<?> result = executor.submit(job);
+        try {
+            result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.err.println("Error in background save job!");
+            e.getCause().printStackTrace();
+        }
+    }
+
+    private void writePending() {
+        S snapshot;
+        synchronized (this) {
+            snapshot = pendingSnapshot;
+            pendingSnapshot = null;
+            scheduledWrite = null;
+        }
+        if (snapshot != null) {
+            writer.accept(snapshot);
+        }
+    }
+}
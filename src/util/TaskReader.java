@@ -0,0 +1,40 @@
+package util;
+
+import model.Task;
+import model.TaskStore;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Reads the tasks of a snapshot file one at a time, whatever its format.
+ */
+public interface TaskReader extends Closeable {
+
+    /**
+     * Returns the next task, read into the given store, or null when there are no
+     * more. The caller picks the store: {@link TaskStore#getDefault()} for tasks
+     * that join the app's list, a private one for tasks that are only compared or
+     * written out again (the store is dropped along with them), or a new one every
+     * so often when streaming through a big file.
+     */
+    Task next(TaskStore store) throws IOException;
+
+    /**
+     * The last journal record already contained in the file (0 if unknown).
+     */
+    long getJournalSeq();
+
+    /**
+     * The highest task id handed out when the file was written, or -1 if the
+     * file is from before tasks had ids (its tasks get new ids as they are read).
+     */
+    long getLastTaskId();
+
+    /**
+     * How far into the file we are, for progress reporting.
+     */
+    long getBytesRead();
+
+    long getContentLength();
+}
@@ -0,0 +1,133 @@
+package util;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.time.LocalDate;
+import model.Task;
+import model.TaskStore;
+
+/**
+ * This adapter teaches Gson how to save and load a Task.
+ * A Task is a view of a TaskStore row now, so Gson can't just copy its fields;
+ * this writes the same JSON Gson used to write for the old plain-field Task
+ * (including the "isDeleted" name, and leaving out null values), plus the task id
+ * and, for tasks in the trash, the day they were deleted.
+ * Tasks saved before there were ids get a new one when they are read.
+ *
+ * Reading adds a row to a task store, and a store never gives its rows back, so
+ * there is no default: Gson's {@link #read(JsonReader)} only works on an adapter
+ * made with a store, and {@link #read(JsonReader, TaskStore)} takes one each time.
+ */
+public class TaskTypeAdapter extends TypeAdapter<Task> {
+
+    private final LocalDateAdapter dateAdapter = new LocalDateAdapter();
+    private final TaskStore store; // Where read(JsonReader) puts tasks; null if only for writing
+
+    /**
+     * An adapter for writing tasks, and for reading them with an explicit store.
+     */
+    public TaskTypeAdapter() {
+        this(null);
+    }
+
+    /**
+     * An adapter that reads tasks into the given store, for a Gson that reads them
+     * (journal records, for one).
+     */
+    public TaskTypeAdapter(TaskStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public void write(final JsonWriter jsonWriter, final Task task) throws IOException {
+        if (task == null) {
+            jsonWriter.nullValue();
+            return;
+        }
+        jsonWriter.beginObject();
+        jsonWriter.name("id").value(task.getId());
+        writeString(jsonWriter, "title", task.getTitle());
+        writeString(jsonWriter, "description", task.getDescription());
+        LocalDate dueDate = task.getDueDate();
+        if (dueDate != null) {
+            jsonWriter.name("dueDate");
+            dateAdapter.write(jsonWriter, dueDate);
+        }
+        writeString(jsonWriter, "category", task.getCategory());
+        writeString(jsonWriter, "priority", task.getPriority());
+        jsonWriter.name("completed").value(task.isCompleted());
+        jsonWriter.name("isDeleted").value(task.isDeleted());
+        LocalDate deletedOn = task.getDeletedOn();
+        if (deletedOn != null) {
+            jsonWriter.name("deletedOn");
+            dateAdapter.write(jsonWriter, deletedOn);
+        }
+        jsonWriter.endObject();
+    }
+
+    @Override
+    public Task read(final JsonReader jsonReader) throws IOException {
+        if (store == null) {
+            throw new IllegalStateException("This task adapter is for writing only, no store to read into");
+        }
+        return read(jsonReader, store);
+    }
+
+    /**
+     * Reads a task into the given store.
+     */
+    public Task read(final JsonReader jsonReader, final TaskStore store) throws IOException {
+        if (jsonReader.peek() == JsonToken.NULL) {
+            jsonReader.nextNull();
+            return null;
+        }
+        long id = 0; // No id in the file: the store hands out a new one
+        String title = null;
+        String description = null;
+        LocalDate dueDate = null;
+        String category = null;
+        String priority = null;
+        boolean completed = false;
+        boolean deleted = false;
+        LocalDate deletedOn = null;
+
+        jsonReader.beginObject();
+        while (jsonReader.hasNext()) {
+            switch (jsonReader.nextName()) {
+                case "id": id = jsonReader.nextLong(); break;
+                case "title": title = readString(jsonReader); break;
+                case "description": description = readString(jsonReader); break;
+                case "dueDate": dueDate = dateAdapter.read(jsonReader); break;
+                case "category": category = readString(jsonReader); break;
+                case "priority": priority = readString(jsonReader); break;
+                case "completed": completed = jsonReader.nextBoolean(); break;
+                case "isDeleted": deleted = jsonReader.nextBoolean(); break;
+                case "deletedOn": deletedOn = dateAdapter.read(jsonReader); break;
+                default: jsonReader.skipValue(); // Unknown field from a newer version
+            }
+        }
+        jsonReader.endObject();
+
+        // Straight into the store: no temporary Task fields to fill in and copy
+        int row = store.addRow(id, title, description, dueDate, category, priority, completed, deleted);
+        store.setDeletedOn(row, deletedOn); // Saved without a day (older file): stays dated today
+        return new Task(store, row);
+    }
+
+    private static void writeString(JsonWriter jsonWriter, String name, String value) throws IOException {
+        if (value != null) {
+            jsonWriter.name(name).value(value);
+        }
+    }
+
+    private static String readString(JsonReader jsonReader) throws IOException {
+        if (jsonReader.peek() == JsonToken.NULL) {
+            jsonReader.nextNull();
+            return null;
+        }
+        return jsonReader.nextString();
+    }
+}
@@ -0,0 +1,122 @@
+package util;
+
+import index.TaskIndex;
+import javafx.application.Platform;
+import metrics.Counter;
+import metrics.LatencyHistogram;
+import metrics.Metrics;
+import model.Task;
+import model.TaskList;
+import model.TaskStore;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Empties the trash of tasks that were deleted more than the retention period
+ * ago (-Dtodo.trash.retentionDays, default 30).
+ *
+ * A background timer starts a purge now and then. The task list belongs to the
+ * JavaFX thread, so the removing itself happens there, but in batches of
+ * {@link #BATCH_SIZE} with the event queue running in between, so a big purge
+ * never freezes the window. The expired tasks are found through the index's
+ * deleted bitmap, and each batch hands their rows back to the task store,
+ * which reuses them for new tasks and compacts the text they leave behind.
+ * Once the purge is done the save file is rewritten without them (which also
+ * empties the journal of the removals). Purge times and counts go to the
+ * metrics registry.
+ */
+public class TrashPurger {
+
+    private static final int RETENTION_DAYS = Integer.getInteger("todo.trash.retentionDays", 30);
+    private static final int BATCH_SIZE = Integer.getInteger("todo.trash.purgeBatch", 2_000);
+    private static final long INTERVAL_MINUTES = Long.getLong("todo.trash.purgeIntervalMinutes", 60);
+
+    private static final LatencyHistogram purgeTime = Metrics.histogram("trash.purge");
+    private static final Counter purgedCount = Metrics.counter("trash.purged");
+
+    private final TaskList tasks;
+    private final TaskIndex index;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "trash-purge");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private boolean running; // JavaFX thread only
+
+    public TrashPurger(TaskList tasks, TaskIndex index) {
+        this.tasks = tasks;
+        this.index = index;
+    }
+
+    /**
+     * Purges once shortly after start-up and then every purge interval.
+     */
+    public void start() {
+        timer.scheduleWithFixedDelay(() -> Platform.runLater(this::purge), 1, INTERVAL_MINUTES * 60, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Starts a purge unless one is already running. Must be called on the JavaFX thread.
+     */
+    public void purge() {
+        if (running) {
+            return;
+        }
+        LocalDate cutoff = LocalDate.now().minusDays(RETENTION_DAYS);
+        List<Task> expired = index.deletedBefore(cutoff);
+        if (expired.isEmpty()) {
+            return;
+        }
+        running = true;
+        purgeBatch(expired, cutoff, 0, 0, System.nanoTime());
+    }
+
+    private void purgeBatch(List<Task> expired, LocalDate cutoff, int from, int purged, long start) {
+        // 1. Wait for a running bulk edit to finish, the purge is not part of it
+        if (tasks.isBatchOpen()) {
+            Platform.runLater(() -> purgeBatch(expired, cutoff, from, purged, start));
+            return;
+        }
+
+        // 2. The next slice, minus tasks restored since the purge started
+        int to = Math.min(from + BATCH_SIZE, expired.size());
+        List<Task> batch = expired.subList(from, to);
+        batch.removeIf(task -> !task.isDeleted() || !task.getDeletedOn().isBefore(cutoff));
+        tasks.removeAll(batch);
+        releaseRows(batch);
+        int purgedNow = purged + batch.size();
+        int next = from + batch.size();
+
+        // 3. More to do: give the event queue a turn first
+        if (next < expired.size()) {
+            Platform.runLater(() -> purgeBatch(expired, cutoff, next, purgedNow, start));
+            return;
+        }
+
+        // 4. Done: rewrite the save file without the purged tasks
+        running = false;
+        if (purgedNow > 0) {
+            DataManager.saveTasks(tasks);
+        }
+        purgedCount.add(purgedNow);
+        purgeTime.recordSince(start);
+    }
+
+    /**
+     * Hands the rows of a batch back to their stores, one call per store.
+     */
+    private static void releaseRows(List<Task> batch) {
+        Map<TaskStore, List<Task>> byStore = new IdentityHashMap<>();
+        for (Task task : batch) {
+            byStore.computeIfAbsent(task.getStore(), store -> new ArrayList<>()).add(task);
+        }
+        byStore.forEach((store, storeTasks) -> store.releaseRows(storeTasks.stream().mapToInt(Task::getRow).toArray()));
+    }
+}